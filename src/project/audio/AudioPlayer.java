@@ -92,6 +92,7 @@ public class AudioPlayer
 		soundExecutor.execute(() -> {
 			if (useCache && cachedClips.containsKey(source.toString()))
 				player = cachedClips.get(source.toString());
+			else
 			{
 				player = new AudioClip(source.toString());
 				if (useCache)
@@ -100,6 +101,16 @@ public class AudioPlayer
 		});
 	}
 
+	/**
+	 * Laed die Sounddatei an der gegebenen Quelle im Hintergrund in den Cache,
+	 * sodass diese bei der ersten Wiedergabe nicht mehr geladen werden muss.
+	 * @param source Sounddatei
+	 */
+	public static void preload(URL source)
+	{
+		soundExecutor.execute(() -> cachedClips.computeIfAbsent(source.toString(), AudioClip::new));
+	}
+
 	/**
 	 * Gibt die Verzoegerung an, mit der die Audiodatei wiedergegeben wird
 	 * @return Verzoegerung in Sekunden
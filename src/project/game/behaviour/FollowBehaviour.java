@@ -25,13 +25,18 @@
 
 package project.game.behaviour;
 
+import project.game.data.FlowField;
 import project.game.data.GameActor;
+import project.game.data.IncrementalPathPlanner;
 import project.game.data.Level;
+import project.game.data.PathFindingService;
+import project.game.data.PathResult;
 import project.gui.dynamics.StepController;
 import project.util.Direction;
 import project.util.PathUtil;
 
 import java.awt.Point;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Zielgerichtetes Verfolgungsverhalten<br>
@@ -43,6 +48,11 @@ import java.awt.Point;
  */
 public class FollowBehaviour extends TargetedBehaviour
 {
+	/**
+	 * Standardwert der maximalen Anzahl an Punkten, welche bei einer Pfadsuche ueberprueft werden
+	 */
+	public static final int DEFAULT_MAX_EXPANSIONS = 10000;
+
 	private int beginDistance;
 
 	private int endDistance;
@@ -57,12 +67,26 @@ public class FollowBehaviour extends TargetedBehaviour
 
 	private int maxDistance;
 
+	private int maxExpansions;
+
 	private int pathIndex;
 
+	private PathFindingService pathFindingService;
+
+	private IncrementalPathPlanner pathPlanner;
+
+	private CompletableFuture<PathResult> pendingPath;
+
+	private int pendingPathCost;
+
+	private Point pendingPathStart;
+
 	private Point[] pathToTarget;
 
 	private long requiredDistance;
 
+	private boolean usesFlowField;
+
 	private StepController verticalMovementController;
 
 	private double verticalSpeed;
@@ -78,6 +102,7 @@ public class FollowBehaviour extends TargetedBehaviour
 		super(controlledActor, level);
 		horizontalMovementController = new StepController();
 		verticalMovementController = new StepController();
+		maxExpansions = DEFAULT_MAX_EXPANSIONS;
 	}
 
 	@Override
@@ -108,7 +133,17 @@ public class FollowBehaviour extends TargetedBehaviour
 		if (lastCheckActorLocation != null)
 		{
 			if (!lastCheckActorLocation.equals(getControlledActor().getCenter()))
-				recalculate = true;
+			{
+				/*
+				Ein asynchron berechneter Pfad wird weiter verfolgt, solange der Aktor auf diesem liegt
+				 */
+				int index = usesFlowField || pathFindingService == null || pathToTarget == null ? -1 :
+				            PathUtil.pathIndex(pathToTarget, getControlledActor().getCenter());
+				if (index >= 0)
+					pathIndex = index;
+				else
+					recalculate = true;
+			}
 		}
 
 		if (pathToTarget == null)
@@ -130,27 +165,83 @@ public class FollowBehaviour extends TargetedBehaviour
 		else if (!PathUtil.pathContains(pathToTarget, getControlledActor().getCenter()))
 			recalculate = true;
 
+		//Uebernehme asynchron berechneten Pfad
+
+		if (pendingPath != null && pendingPath.isDone())
+		{
+			if (!pendingPath.isCompletedExceptionally())
+				acceptAsynchronousResult(pendingPath.join(), targetDist);
+			pendingPath = null;
+		}
+
+		/*
+		Eine ausstehende Anfrage wird nicht ersetzt. Erst nach Eingang ihres Ergebnisses
+		wird erneut geprueft, ob das Ziel oder der Aktor den Pfad verlassen haben.
+		 */
+		if (pendingPath != null)
+			recalculate = false;
+
 		//Berechne neuen Pfad
 
 		if (recalculate)
 		{
-			pathIndex = 0;
-			Point[] newPath = getLevel().getMap().findPath(
-					getControlledActor().getCenter(),
-					getTarget().getCenter(),
-					getControlledActor().getBounds().width,
-					getControlledActor().getBounds().height);
-			if (newPath != null && ((pathToTarget != null && PathUtil.pathLength(newPath, 1, 2) > maxDistance) ||
-			                        (pathToTarget == null && PathUtil.pathLength(newPath, 1, 2) > beginDistance)))
+			int maxPathCost = pathToTarget != null ? maxDistance : beginDistance;
+			if (usesFlowField)
 			{
-				lastCheckPoint = getTarget().getCenter();
-				requiredDistance = newPath.length - beginDistance;
-				pathToTarget = null;
+				FlowField flowField = getLevel().getMap().getFlowField(
+						getControlledActor().getBounds().width,
+						getControlledActor().getBounds().height);
+				flowField.update(
+						getTarget().getCenter(),
+						pathToTarget != null ? Math.max(maxDistance, beginDistance) : beginDistance);
+				acceptPath(flowField.getPath(getControlledActor().getCenter()));
 			}
-			else
+			else if (pathFindingService != null)
+			{
+				/*
+				Der bisherige Pfad wird weiter verfolgt, bis der neue Pfad berechnet wurde.
+				Begrenzte Suchen verwenden den Suchbaum der vorhergehenden Suche weiter.
+				 */
+				pendingPathCost = maxPathCost;
+				pendingPathStart = getControlledActor().getCenter();
+				if (maxPathCost < Integer.MAX_VALUE)
+					pendingPath = pathFindingService.findPath(
+							this,
+							getPathPlanner(),
+							getControlledActor().getCenter(),
+							getTarget().getCenter(),
+							maxExpansions,
+							maxPathCost);
+				else
+					pendingPath = pathFindingService.findHierarchicalPath(
+							this,
+							getLevel().getMap(),
+							getControlledActor().getCenter(),
+							getTarget().getCenter(),
+							getControlledActor().getBounds().width,
+							getControlledActor().getBounds().height);
+			}
+			else if (maxPathCost < Integer.MAX_VALUE)
 			{
-				pathToTarget = newPath;
+				/*
+				Der Suchbaum der vorhergehenden Suche wird weiterverwendet, sodass nach einer
+				Bewegung des Ziels nur der veraenderte Teil des Pfades gesucht werden muss.
+				Die Suche wird abgebrochen, sobald feststeht, dass der Pfad zu lang ist
+				oder zu viele Punkte ueberprueft wurden.
+				 */
+				PathResult result = getPathPlanner().findPath(
+						getControlledActor().getCenter(),
+						getTarget().getCenter(),
+						maxExpansions,
+						maxPathCost);
+				acceptResult(result, maxPathCost, targetDist);
 			}
+			else
+				acceptPath(getLevel().getMap().findHierarchicalPath(
+						getControlledActor().getCenter(),
+						getTarget().getCenter(),
+						getControlledActor().getBounds().width,
+						getControlledActor().getBounds().height));
 		}
 
 		//Verfolge Pfad
@@ -241,6 +332,15 @@ public class FollowBehaviour extends TargetedBehaviour
 		lastCheckActorLocation = getControlledActor().getCenter();
 	}
 
+	/**
+	 * Gibt den Dienst an, mit welchem Pfade asynchron berechnet werden
+	 * @return Dienst zur Pfadsuche oder null, wenn Pfade in der Gameloop berechnet werden
+	 */
+	public PathFindingService getPathFindingService()
+	{
+		return pathFindingService;
+	}
+
 	/**
 	 * Gibt die Startdistanz an, bei welcher die Verfolgung beginnt
 	 * @return Verfolgungsstartdistanz
@@ -277,6 +377,15 @@ public class FollowBehaviour extends TargetedBehaviour
 		return maxDistance;
 	}
 
+	/**
+	 * Gibt die maximale Anzahl an Punkten an, welche bei einer Pfadsuche ueberprueft werden
+	 * @return Maximale Anzahl ueberpruefter Punkte
+	 */
+	public int getMaxExpansions()
+	{
+		return maxExpansions;
+	}
+
 	/**
 	 * Gibt die vertikale Geschwindigkeit des Aktors an
 	 * @return Vertikale Geschwindigkeit in Schritten pro Sekunde
@@ -305,6 +414,21 @@ public class FollowBehaviour extends TargetedBehaviour
 		this.beginDistance = beginDistance;
 	}
 
+	/**
+	 * Setzt den Dienst, mit welchem Pfade asynchron berechnet werden.
+	 * Waehrend ein neuer Pfad berechnet wird, verfolgt der Aktor seinen bisherigen Pfad.
+	 * Wird kein Distanzfeld verwendet und ist kein Dienst gesetzt, werden Pfade in der
+	 * Gameloop berechnet.
+	 * @param pathFindingService Dienst zur Pfadsuche oder null
+	 */
+	public void setPathFindingService(final PathFindingService pathFindingService)
+	{
+		if (this.pathFindingService != null)
+			this.pathFindingService.cancel(this);
+		pendingPath = null;
+		this.pathFindingService = pathFindingService;
+	}
+
 	/**
 	 * Setzt die Distanz, bis zu welcher das Ziel verfolgt wird
 	 * @param endDistance Zieldistanz
@@ -324,6 +448,26 @@ public class FollowBehaviour extends TargetedBehaviour
 		this.horizontalSpeed = horizontalSpeed;
 	}
 
+	/**
+	 * Gibt an, ob der Pfad zum Ziel aus dem gemeinsamen Distanzfeld der Karte bestimmt wird
+	 * @return true, wenn das Distanzfeld verwendet wird, sonst false
+	 */
+	public boolean isUsingFlowField()
+	{
+		return usesFlowField;
+	}
+
+	/**
+	 * Setzt, ob der Pfad zum Ziel aus dem gemeinsamen Distanzfeld der Karte bestimmt wird,
+	 * anstatt fuer jeden Aktor eine eigene Pfadsuche durchzufuehren.
+	 * Dies ist sinnvoll, wenn viele Aktoren dasselbe Ziel verfolgen.
+	 * @param usesFlowField true, wenn das Distanzfeld verwendet werden soll
+	 */
+	public void setUsesFlowField(final boolean usesFlowField)
+	{
+		this.usesFlowField = usesFlowField;
+	}
+
 	/**
 	 * Setzt die maximale Distanz, die der Aktor waehrend der Verfolgung
 	 * zum Ziel besitzen kann, bevor die Verfolgung beendet wird.
@@ -334,6 +478,18 @@ public class FollowBehaviour extends TargetedBehaviour
 		this.maxDistance = maxDistance;
 	}
 
+	/**
+	 * Setzt die maximale Anzahl an Punkten, welche bei einer Pfadsuche ueberprueft werden.
+	 * Wird diese ueberschritten, folgt der Aktor weiter seinem bisherigen Pfad und die
+	 * Suche wird im naechsten Schritt fortgesetzt.
+	 * Gilt nur fuer Verfolgungen mit begrenzter Distanz.
+	 * @param maxExpansions Maximale Anzahl ueberpruefter Punkte
+	 */
+	public void setMaxExpansions(final int maxExpansions)
+	{
+		this.maxExpansions = maxExpansions;
+	}
+
 	/**
 	 * Setzt die vertikale Geschwindigkeit des Aktors.
 	 * Veraenderungen werden erst nach einem Neustart des Verhaltens aktiv
@@ -344,6 +500,22 @@ public class FollowBehaviour extends TargetedBehaviour
 		this.verticalSpeed = verticalSpeed;
 	}
 
+	/**
+	 * Setzt das Ziel fuer das Verhalten.
+	 * Eine ausstehende Anfrage fuer das bisherige Ziel wird abgebrochen.
+	 * @param actor Ziel fuer das Verhalten
+	 */
+	@Override
+	public void setTarget(final GameActor actor)
+	{
+		if (actor != getTarget() && pathFindingService != null)
+		{
+			pathFindingService.cancel(this);
+			pendingPath = null;
+		}
+		super.setTarget(actor);
+	}
+
 	@Override
 	public void startBehaviour()
 	{
@@ -360,10 +532,93 @@ public class FollowBehaviour extends TargetedBehaviour
 	public void stopBehaviour()
 	{
 		super.stopBehaviour();
+		if (pathFindingService != null)
+			pathFindingService.cancel(this);
+		pendingPath = null;
 		horizontalMovementController.stop();
 		verticalMovementController.stop();
 	}
 
+	/**
+	 * Gibt die inkrementelle Pfadsuche des Aktors zurueck und erstellt diese bei Bedarf
+	 * @return inkrementelle Pfadsuche
+	 */
+	private IncrementalPathPlanner getPathPlanner()
+	{
+		if (pathPlanner == null)
+			pathPlanner = new IncrementalPathPlanner(
+					getLevel().getMap(),
+					getControlledActor().getBounds().width,
+					getControlledActor().getBounds().height);
+		return pathPlanner;
+	}
+
+	/**
+	 * Uebernimmt einen neu berechneten Pfad, falls dieser nicht laenger als
+	 * die maximale Distanz ist.
+	 * @param newPath neuer Pfad oder null
+	 */
+	private void acceptPath(Point[] newPath)
+	{
+		pathIndex = 0;
+		if (newPath != null && ((pathToTarget != null && PathUtil.pathLength(newPath, 1, 2) > maxDistance) ||
+		                        (pathToTarget == null && PathUtil.pathLength(newPath, 1, 2) > beginDistance)))
+		{
+			lastCheckPoint = getTarget().getCenter();
+			requiredDistance = newPath.length - beginDistance;
+			pathToTarget = null;
+		}
+		else
+		{
+			pathToTarget = newPath;
+		}
+	}
+
+	/**
+	 * Uebernimmt das Ergebnis einer asynchronen Suche.
+	 * Hat sich der Aktor seit der Anfrage bewegt, wird der Pfad nur uebernommen,
+	 * wenn die aktuelle Position auf dem neuen Pfad liegt.
+	 * Andernfalls wird im naechsten Schritt ein neuer Pfad angefragt.
+	 * @param result Ergebnis der Suche
+	 * @param targetDist aktuelle Distanz zum Ziel
+	 */
+	private void acceptAsynchronousResult(PathResult result, int targetDist)
+	{
+		Point center = getControlledActor().getCenter();
+		if (center.equals(pendingPathStart) || result.getPath() == null)
+		{
+			acceptResult(result, pendingPathCost, targetDist);
+			return;
+		}
+		int index = PathUtil.pathIndex(result.getPath(), center);
+		if (index < 0)
+			return;
+		acceptResult(result, pendingPathCost, targetDist);
+		if (pathToTarget != null)
+			pathIndex = index;
+	}
+
+	/**
+	 * Uebernimmt das Ergebnis einer begrenzten Suche.
+	 * Wurde die Suche wegen zu vieler ueberpruefter Punkte abgebrochen, wird der
+	 * bisherige Pfad weiter verfolgt und die Suche im naechsten Schritt fortgesetzt
+	 * oder wiederholt.
+	 * @param result Ergebnis der Suche
+	 * @param maxPathCost maximale Kosten der Suche
+	 * @param targetDist aktuelle Distanz zum Ziel
+	 */
+	private void acceptResult(PathResult result, int maxPathCost, int targetDist)
+	{
+		if (result.getStatus() == PathResult.Status.BUDGET_EXCEEDED)
+			return;
+		if (result.getStatus() == PathResult.Status.COST_EXCEEDED)
+		{
+			lastCheckPoint = getTarget().getCenter();
+			requiredDistance = Math.max(targetDist, maxPathCost + 1) - beginDistance;
+		}
+		acceptPath(result.getPath());
+	}
+
 	@Override
 	protected void skipExecution(final double time)
 	{
@@ -66,6 +66,7 @@ public class EnemyController extends ActorController<Enemy> implements GameActor
 		followBehaviour.setEndDistance(controlledActor.getBaseAttack().getAttackRange());
 		followBehaviour.setHorizontalSpeed(controlledActor.getSpeed() * 2);
 		followBehaviour.setVerticalSpeed(controlledActor.getSpeed());
+		followBehaviour.setUsesFlowField(true);
 		followBehaviour.startBehaviour();
 
 		randomMovementBehaviour = new RandomMovementBehaviour(controlledActor, level);
@@ -113,7 +114,7 @@ public class EnemyController extends ActorController<Enemy> implements GameActor
 
 		attackController.updateTime(time);
 		if (playerDist <= controlledActor.getBaseAttack().getAttackRange() && attackController.requiresUpdate() &&
-		    level.getMap().canSee(enemyCenter, playerCenter))
+		    level.getPerception().canSeePlayer(enemyCenter))
 			for (int i = 0; i < attackController.getNumberOfSteps(); i++)
 				attackPlayer();
 	}
@@ -30,8 +30,8 @@ import project.game.behaviour.FollowBehaviour;
 import project.game.data.Enemy;
 import project.game.data.GameActor;
 import project.game.data.Level;
-import project.game.data.Map;
 import project.game.data.MapObject;
+import project.game.data.PathFindingService;
 import project.game.data.Player;
 import project.game.data.PlayerDelegate;
 import project.game.data.SkillConfiguration;
@@ -46,7 +46,6 @@ import project.gui.dynamics.StepController;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.Arrays;
-import java.util.Optional;
 
 /**
  * Klasse zur Steuerung eines Spielers
@@ -55,6 +54,11 @@ import java.util.Optional;
  */
 public class PlayerController extends ActorController<Player> implements PlayerDelegate
 {
+	/**
+	 * Maximale Kosten eines Pfades, ueber welchen ein angegriffener Gegner verfolgt wird
+	 */
+	private static final int MAX_FOLLOW_DISTANCE = 160;
+
 	private StepController attackController;
 
 	private AutoAttackBehaviour autoAttackBehaviour;
@@ -99,8 +103,9 @@ public class PlayerController extends ActorController<Player> implements PlayerD
 		followBehaviour.setHorizontalSpeed(controlledActor.getSpeed() * 2);
 		followBehaviour.setVerticalSpeed(controlledActor.getSpeed());
 		followBehaviour.setEndDistance(controlledActor.getBaseAttack().getAttackRange());
-		followBehaviour.setBeginDistance(Integer.MAX_VALUE);
-		followBehaviour.setMaxDistance(Integer.MAX_VALUE);
+		followBehaviour.setBeginDistance(MAX_FOLLOW_DISTANCE);
+		followBehaviour.setMaxDistance(MAX_FOLLOW_DISTANCE);
+		followBehaviour.setPathFindingService(PathFindingService.getDefault());
 
 		autoAttackBehaviour = new AutoAttackBehaviour(controlledActor, level);
 		autoAttackBehaviour.setConfiguration(controlledActor.getBaseAttack());
@@ -140,7 +145,7 @@ public class PlayerController extends ActorController<Player> implements PlayerD
 				.getRate())
 		{
 			if (!skill1.requiresFocus() ||
-			    (currentEnemy != null && level.getMap().canSee(controlledActor.getCenter(), currentEnemy.getCenter())))
+			    (currentEnemy != null && level.getPerception().canSeePlayer(currentEnemy.getCenter())))
 			{
 				skill1lastExecutionTime = lastUpdateTime;
 				skill1.getSkillExecutor().setTarget(mapView);
@@ -168,7 +173,7 @@ public class PlayerController extends ActorController<Player> implements PlayerD
 				.getRate())
 		{
 			if (!skill2.requiresFocus() ||
-			    (currentEnemy != null && level.getMap().canSee(controlledActor.getCenter(), currentEnemy.getCenter())))
+			    (currentEnemy != null && level.getPerception().canSeePlayer(currentEnemy.getCenter())))
 			{
 				skill2lastExecutionTime = lastUpdateTime;
 				skill2.getSkillExecutor().setTarget(mapView);
@@ -196,7 +201,7 @@ public class PlayerController extends ActorController<Player> implements PlayerD
 				.getRate())
 		{
 			if (!skill3.requiresFocus() ||
-			    (currentEnemy != null && level.getMap().canSee(controlledActor.getCenter(), currentEnemy.getCenter())))
+			    (currentEnemy != null && level.getPerception().canSeePlayer(currentEnemy.getCenter())))
 			{
 				skill3lastExecutionTime = lastUpdateTime;
 				skill3.getSkillExecutor().setTarget(mapView);
@@ -224,7 +229,7 @@ public class PlayerController extends ActorController<Player> implements PlayerD
 				.getRate())
 		{
 			if (!skill4.requiresFocus() ||
-			    (currentEnemy != null && level.getMap().canSee(controlledActor.getCenter(), currentEnemy.getCenter())))
+			    (currentEnemy != null && level.getPerception().canSeePlayer(currentEnemy.getCenter())))
 			{
 				skill4lastExecutionTime = lastUpdateTime;
 				skill4.getSkillExecutor().setTarget(mapView);
@@ -455,7 +460,7 @@ public class PlayerController extends ActorController<Player> implements PlayerD
 			if (Math.abs(currentEnemy.getCenter().x - controlledActor.getCenter().x)
 			    + Math.abs(currentEnemy.getCenter().y - controlledActor.getCenter().y) * 2
 			    <= controlledActor.getBaseAttack().getAttackRange()
-			    && level.getMap().canSee(controlledActor.getCenter(), currentEnemy.getCenter())
+			    && level.getPerception().canSeePlayer(currentEnemy.getCenter())
 			    && attackController.requiresUpdate()
 			    && currentEnemy.isAlive())
 			{
@@ -506,8 +511,7 @@ public class PlayerController extends ActorController<Player> implements PlayerD
 	private Enemy findNearestVisibleEnemy(int maxDist)
 	{
 		Point playerCenter = controlledActor.getCenter();
-		Map   map          = level.getMap();
-		Optional<Enemy> nearestEnemy = Arrays.stream(level.getEnemies())
+		Enemy[] candidates = Arrays.stream(level.getEnemies())
 				.filter(Enemy::isAlive)
 				.filter(enemy -> {
 					double dx = enemy.getCenter().x - playerCenter.x;
@@ -515,11 +519,24 @@ public class PlayerController extends ActorController<Player> implements PlayerD
 					dy *= 2;
 					return Math.sqrt(dx * dx + dy * dy) <= maxDist;
 				})
-				.filter(enemy -> map.canSee(enemy.getCenter(), playerCenter))
-				.min((o1, o2) -> Double.compare(
-						o1.getCenter().distance(playerCenter),
-						o2.getCenter().distance(playerCenter)));
-		return nearestEnemy.isPresent() ? nearestEnemy.get() : null;
+				.toArray(Enemy[]::new);
+
+		Point[]   centers = Arrays.stream(candidates).map(Enemy::getCenter).toArray(Point[]::new);
+		boolean[] visible = new boolean[candidates.length];
+		level.getPerception().canSeePlayer(centers, visible);
+
+		Enemy  nearestEnemy    = null;
+		double nearestDistance = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < candidates.length; i++)
+		{
+			double distance = centers[i].distance(playerCenter);
+			if (visible[i] && distance < nearestDistance)
+			{
+				nearestEnemy = candidates[i];
+				nearestDistance = distance;
+			}
+		}
+		return nearestEnemy;
 	}
 
 	/**
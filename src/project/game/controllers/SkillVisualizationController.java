@@ -27,6 +27,9 @@ package project.game.controllers;
 
 import project.audio.AudioPlayer;
 import project.game.data.GameActor;
+import project.game.ui.views.LightMap;
+import project.game.ui.views.LightSource;
+import project.game.ui.views.MapView;
 import project.gui.components.TComponent;
 import project.gui.components.TLabel;
 import project.gui.dynamics.animation.Animation;
@@ -45,6 +48,11 @@ import java.util.List;
  */
 public class SkillVisualizationController
 {
+	/**
+	 * Staerke der Lichtquelle eines Projektils
+	 */
+	private static final float PROJECTILE_LIGHT_INTENSITY = 0.3f;
+
 	private double      hitAnimationDuration;
 	private AudioPlayer hitPlayer;
 
@@ -234,6 +242,9 @@ public class SkillVisualizationController
 //			projectileLabel.setColor(skillProjectileColor);
 //			visualizationTarget.add(projectileLabel);
 			List<TLabel> projectileLabels = new ArrayList<>();
+			LightMap     lightMap         = visualizationTarget instanceof MapView ?
+			                                ((MapView) visualizationTarget).getLightMap() : null;
+			LightSource  projectileLight  = new LightSource(from.getCenter(), PROJECTILE_LIGHT_INTENSITY);
 			Animation projectileAnimation = new Animation((AnimationHandler) value -> {
 				TLabel projectileLabel = new TLabel();
 				String newValue = skillProjectiles[(int) (value * (skillProjectiles.length - 1))];
@@ -244,6 +255,11 @@ public class SkillVisualizationController
 				Point     point   = new Point();
 				point.x = from.getCenter().x + (int) ((to.getCenter().x - from.getCenter().x) * value);
 				point.y = from.getCenter().y + (int) ((to.getCenter().y - from.getCenter().y) * value);
+				if (lightMap != null)
+				{
+					projectileLight.setPosition(point);
+					lightMap.add(projectileLight);
+				}
 				point.x -= newSize.width / 2;
 				point.y -= newSize.height / 2;
 				projectileLabel.setColor(skillProjectileColor);
@@ -259,6 +275,8 @@ public class SkillVisualizationController
 			projectileAnimation.setDelay(delay);
 			projectileAnimation.setCompletionHandler(animation -> {
 				//projectileLabel.removeFromSuperview();
+				if (lightMap != null)
+					lightMap.remove(projectileLight);
 				if (hitPlayer != null)
 					hitPlayer.play();
 				if (onHit != null)
@@ -0,0 +1,93 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+/**
+ * Speicher fuer die Werte der Punkte einer Karte in einem einzigen,
+ * zeilenweise angeordneten byte-Feld.
+ * <br>
+ * Da die Werte einer Karte nur wenige Zustaende annehmen, genuegt ein Byte pro Punkt.
+ * Benachbarte Punkte einer Zeile liegen direkt hintereinander im Speicher, sodass
+ * zeilenweise Durchlaeufe sequentiell auf den Speicher zugreifen.
+ */
+public class ByteTerrainStorage implements TerrainStorage
+{
+	private final int    height;
+	private final byte[] values;
+	private final int    width;
+
+	/**
+	 * Erstellt einen neuen Speicher, in welchem alle Punkte den Wert 0 besitzen
+	 * @param width Breite in Punkten
+	 * @param height Hoehe in Punkten
+	 */
+	public ByteTerrainStorage(final int width, final int height)
+	{
+		this.width = width;
+		this.height = height;
+		values = new byte[width * height];
+	}
+
+	/**
+	 * Erstellt einen neuen Speicher mit den gegebenen Werten
+	 * @param points Werte der Punkte, [x][y]
+	 * @throws IllegalArgumentException wenn ein Wert nicht in einem Byte gespeichert werden kann
+	 */
+	public ByteTerrainStorage(final int[][] points)
+	{
+		this(points.length, points.length == 0 ? 0 : points[0].length);
+		for (int x = 0; x < width; x++)
+			for (int y = 0; y < height; y++)
+				set(x, y, points[x][y]);
+	}
+
+	@Override
+	public int get(final int x, final int y)
+	{
+		return values[y * width + x];
+	}
+
+	@Override
+	public int getHeight()
+	{
+		return height;
+	}
+
+	@Override
+	public int getWidth()
+	{
+		return width;
+	}
+
+	@Override
+	public void set(final int x, final int y, final int value)
+	{
+		if (value != (byte) value)
+			throw new IllegalArgumentException("Value " + value + " exceeds storage range.");
+		values[y * width + x] = (byte) value;
+	}
+}
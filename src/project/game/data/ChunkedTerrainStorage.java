@@ -0,0 +1,216 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Speicher fuer die Werte der Punkte einer Karte in Kacheln fester Groesse.
+ * <br>
+ * Kacheln, deren Punkte alle denselben Wert besitzen, verweisen auf eine gemeinsame,
+ * unveraenderliche Kachel dieses Wertes. Erst wenn ein einzelner Punkt einer solchen
+ * Kachel veraendert wird, erhaelt diese eine eigene Kopie (Copy-on-Write).
+ * <br>
+ * Entspricht die Kachelgroesse der Skalierung eines Levels, ist jede Kachel nach dem Laden
+ * einheitlich, sodass pro Kachel nur ein Verweis gespeichert wird.
+ * <br>
+ * Mehrere Threads duerfen gleichzeitig schreiben, sofern sie disjunkte Kacheln veraendern.
+ */
+public class ChunkedTerrainStorage implements TerrainStorage
+{
+	private final int      chunkColumns;
+	private final int      chunkHeightShift;
+	private final int      chunkWidthShift;
+	private final byte[][] chunks;
+	private final int      height;
+
+	/**
+	 * Gemeinsame Kacheln nach Wert + 128.
+	 * Eine gemeinsame Kachel wird an ihrem ersten Wert erkannt.
+	 */
+	private final AtomicReferenceArray<byte[]> uniformChunks;
+
+	private final int      width;
+
+	/**
+	 * Erstellt einen neuen Speicher, in welchem alle Punkte den Wert 0 besitzen
+	 * @param width Breite in Punkten
+	 * @param height Hoehe in Punkten
+	 * @param chunkWidth Breite einer Kachel, muss eine Zweierpotenz sein
+	 * @param chunkHeight Hoehe einer Kachel, muss eine Zweierpotenz sein
+	 * @throws IllegalArgumentException wenn die Kachelgroesse keine Zweierpotenz ist
+	 */
+	public ChunkedTerrainStorage(final int width, final int height, final int chunkWidth, final int chunkHeight)
+	{
+		if (Integer.bitCount(chunkWidth) != 1 || Integer.bitCount(chunkHeight) != 1)
+			throw new IllegalArgumentException("Chunk size must be a power of two.");
+		this.width = width;
+		this.height = height;
+		chunkWidthShift = Integer.numberOfTrailingZeros(chunkWidth);
+		chunkHeightShift = Integer.numberOfTrailingZeros(chunkHeight);
+		chunkColumns = (width + chunkWidth - 1) >> chunkWidthShift;
+		int chunkRows = (height + chunkHeight - 1) >> chunkHeightShift;
+
+		uniformChunks = new AtomicReferenceArray<>(256);
+		chunks = new byte[chunkColumns * chunkRows][];
+		Arrays.fill(chunks, getUniformChunk(0));
+	}
+
+	/**
+	 * Ersetzt alle eigenen Kacheln, deren Punkte denselben Wert besitzen,
+	 * durch die gemeinsame Kachel dieses Wertes.
+	 */
+	@Override
+	public void compact()
+	{
+		for (int i = 0; i < chunks.length; i++)
+		{
+			byte[] chunk = chunks[i];
+			if (isShared(chunk))
+				continue;
+			boolean uniform = true;
+			for (int j = 1; j < chunk.length && uniform; j++)
+				uniform = chunk[j] == chunk[0];
+			if (uniform)
+				chunks[i] = getUniformChunk(chunk[0]);
+		}
+	}
+
+	@Override
+	public void fill(final int x, final int y, final int width, final int height, final int value)
+	{
+		checkValue(value);
+		if (width <= 0 || height <= 0)
+			return;
+
+		/*
+		Vollstaendig ueberdeckte Kacheln verweisen auf die gemeinsame Kachel des Wertes,
+		in allen anderen Kacheln werden die Punkte einzeln gesetzt.
+		 */
+		for (int chunkY = y >> chunkHeightShift; chunkY <= (y + height - 1) >> chunkHeightShift; chunkY++)
+			for (int chunkX = x >> chunkWidthShift; chunkX <= (x + width - 1) >> chunkWidthShift; chunkX++)
+			{
+				int left   = max(chunkX << chunkWidthShift, x);
+				int top    = max(chunkY << chunkHeightShift, y);
+				int right  = min((chunkX + 1) << chunkWidthShift, x + width);
+				int bottom = min((chunkY + 1) << chunkHeightShift, y + height);
+				if (right - left == 1 << chunkWidthShift && bottom - top == 1 << chunkHeightShift)
+					chunks[chunkY * chunkColumns + chunkX] = getUniformChunk(value);
+				else
+					for (int row = top; row < bottom; row++)
+						for (int column = left; column < right; column++)
+							set(column, row, value);
+			}
+	}
+
+	@Override
+	public int get(final int x, final int y)
+	{
+		return chunks[(y >> chunkHeightShift) * chunkColumns + (x >> chunkWidthShift)]
+				[((y & ((1 << chunkHeightShift) - 1)) << chunkWidthShift) | (x & ((1 << chunkWidthShift) - 1))];
+	}
+
+	/**
+	 * Gibt die Anzahl der Kacheln an, welche eine eigene Kopie besitzen
+	 * @return Anzahl eigener Kacheln
+	 */
+	public int getAllocatedChunkCount()
+	{
+		int count = 0;
+		for (byte[] chunk : chunks)
+			if (!isShared(chunk))
+				count++;
+		return count;
+	}
+
+	@Override
+	public int getHeight()
+	{
+		return height;
+	}
+
+	@Override
+	public int getWidth()
+	{
+		return width;
+	}
+
+	@Override
+	public void set(final int x, final int y, final int value)
+	{
+		checkValue(value);
+		int    index = (y >> chunkHeightShift) * chunkColumns + (x >> chunkWidthShift);
+		int    local = ((y & ((1 << chunkHeightShift) - 1)) << chunkWidthShift) | (x & ((1 << chunkWidthShift) - 1));
+		byte[] chunk = chunks[index];
+		if (chunk[local] == value)
+			return;
+		if (isShared(chunk))
+		{
+			chunk = chunk.clone();
+			chunks[index] = chunk;
+		}
+		chunk[local] = (byte) value;
+	}
+
+	/**
+	 * Ueberprueft, ob ein Wert in einem Byte gespeichert werden kann
+	 */
+	private void checkValue(int value)
+	{
+		if (value != (byte) value)
+			throw new IllegalArgumentException("Value " + value + " exceeds storage range.");
+	}
+
+	/**
+	 * Gibt die gemeinsame Kachel des gegebenen Wertes zurueck und erstellt diese,
+	 * falls sie noch nicht existiert.
+	 */
+	private byte[] getUniformChunk(int value)
+	{
+		byte[] chunk = uniformChunks.get(value + 128);
+		if (chunk == null)
+		{
+			chunk = new byte[1 << (chunkWidthShift + chunkHeightShift)];
+			Arrays.fill(chunk, (byte) value);
+			if (!uniformChunks.compareAndSet(value + 128, null, chunk))
+				chunk = uniformChunks.get(value + 128);
+		}
+		return chunk;
+	}
+
+	/**
+	 * Gibt an, ob eine Kachel eine gemeinsame, unveraenderliche Kachel ist
+	 */
+	private boolean isShared(byte[] chunk)
+	{
+		return uniformChunks.get(chunk[0] + 128) == chunk;
+	}
+}
@@ -0,0 +1,202 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+package project.game.data;
+
+import project.util.BitMask;
+
+import static java.lang.Math.max;
+
+/**
+ * Freiraumkarte zur groessenabhaengigen Pfadsuche.
+ * <br>
+ * Die Begehbarkeit wird als Bitmaske mit einem Bit pro Punkt gespeichert. Fuer jede
+ * benoetigte Aktorgroesse wird zusaetzlich eine Bitmaske der Punkte gespeichert, an welchen
+ * ein Aktor dieser Groesse mit seiner linken oberen Ecke stehen kann, sodass die Begehbarkeit
+ * mit einem einzigen Bitzugriff geprueft werden kann. Die Masken werden wortweise berechnet,
+ * wobei jeweils 64 Punkte einer Zeile gleichzeitig bearbeitet werden.
+ * <br>
+ * Der Speicherbedarf betraegt somit ein Bit pro Punkt und Aktorgroesse. Aktoren, welche breiter
+ * als MAX_WIDTH sind, werden ueber die Summentabelle der Karte geprueft.
+ * <br>
+ * Bei Veraenderungen eines Punktes werden nur die Bits der Positionen neu berechnet,
+ * deren Aktorbegrenzung den Punkt enthaelt.
+ */
+class ClearanceMap
+{
+	/**
+	 * Groesste Aktorbreite, welche wortweise berechnet werden kann
+	 */
+	private static final int MAX_WIDTH = Long.SIZE;
+
+	/**
+	 * Begehbare Punkte
+	 */
+	private final BitMask       free;
+
+	private final int           height;
+	private final Map           map;
+
+	/**
+	 * Moegliche Positionen nach Aktorbreite - 1 und Aktorhoehe - 1
+	 */
+	private volatile BitMask[][] positions;
+
+	private final int           width;
+
+	/**
+	 * Erstellt die Freiraumkarte der gegebenen Karte
+	 * @param map Karte
+	 */
+	ClearanceMap(Map map)
+	{
+		this.map = map;
+		width = map.getWidth();
+		height = map.getHeight();
+		free = new BitMask(width, height);
+		positions = new BitMask[0][];
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				if (map.getPointUnchecked(x, y) == Map.EMPTY)
+					free.set(x, y);
+	}
+
+	/**
+	 * Gibt an, ob der gegebene Bereich vollstaendig innerhalb der Karte liegt
+	 * und keine unbegehbaren Punkte enthaelt.
+	 * @param x x-Koordinate der linken oberen Ecke
+	 * @param y y-Koordinate der linken oberen Ecke
+	 * @param width Breite des Bereichs
+	 * @param height Hoehe des Bereichs
+	 * @return true, wenn der Bereich begehbar ist, sonst false
+	 */
+	boolean fits(int x, int y, int width, int height)
+	{
+		if (x < 0 || y < 0 || x + width > this.width || y + height > this.height)
+			return false;
+		if (width <= 0 || height <= 0 || width > MAX_WIDTH)
+			return map.canMoveTo(x, y, width, height);
+		return getPositions(width, height).get(x, y);
+	}
+
+	/**
+	 * Berechnet die Werte nach einer Veraenderung der Begehbarkeit
+	 * des gegebenen Punktes neu.
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 */
+	synchronized void update(int x, int y)
+	{
+		if (map.getPointUnchecked(x, y) == Map.EMPTY)
+			free.set(x, y);
+		else
+			free.clear(x, y);
+		BitMask[][] positions = this.positions;
+		for (int w = 1; w <= positions.length; w++)
+		{
+			if (positions[w - 1] == null)
+				continue;
+			for (int h = 1; h <= positions[w - 1].length; h++)
+			{
+				BitMask mask = positions[w - 1][h - 1];
+				if (mask == null)
+					continue;
+				int left = x - w + 1;
+				for (int row = max(y - h + 1, 0); row <= y; row++)
+				{
+					long bits = computePositions(left, row, w, h);
+					for (int column = max(left, 0); column <= x; column++)
+					{
+						if ((bits >>> (column - left) & 1L) != 0)
+							mask.set(column, row);
+						else
+							mask.clear(column, row);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Berechnet fuer 64 Punkte einer Zeile ab der gegebenen Spalte, ob ein Aktor der
+	 * gegebenen Groesse mit seiner linken oberen Ecke an diesem Punkt stehen kann.
+	 * Punkte ausserhalb der Karte gelten als unbegehbar.
+	 * @return Wort, dessen Bit i angibt, ob der Aktor am Punkt (x + i, y) stehen kann
+	 */
+	private long computePositions(int x, int y, int w, int h)
+	{
+		/*
+		Begehbare Spalten ueber alle Zeilen des Aktors, 128 Punkte ab x
+		 */
+		long low  = -1L;
+		long high = -1L;
+		for (int row = y; row < y + h; row++)
+		{
+			low &= free.getBits(x, row);
+			high &= free.getBits(x + Long.SIZE, row);
+		}
+		long bits = low;
+		for (int shift = 1; shift < w; shift++)
+			bits &= low >>> shift | high << (Long.SIZE - shift);
+		return bits;
+	}
+
+	/**
+	 * Gibt die moeglichen Positionen fuer Aktoren der gegebenen Groesse zurueck und berechnet
+	 * diese, falls sie noch nicht benoetigt wurden.
+	 * @param w Breite des Aktors
+	 * @param h Hoehe des Aktors
+	 * @return Moegliche Positionen der linken oberen Ecke
+	 */
+	private BitMask getPositions(int w, int h)
+	{
+		BitMask[][] positions = this.positions;
+		if (w <= positions.length && positions[w - 1] != null && h <= positions[w - 1].length
+		    && positions[w - 1][h - 1] != null)
+			return positions[w - 1][h - 1];
+		synchronized (this)
+		{
+			positions = this.positions;
+			if (w <= positions.length && positions[w - 1] != null && h <= positions[w - 1].length
+			    && positions[w - 1][h - 1] != null)
+				return positions[w - 1][h - 1];
+			BitMask mask = new BitMask(width, height);
+			for (int y = 0; y + h <= height; y++)
+				for (int x = 0; x < width; x += Long.SIZE)
+					mask.orBits(x, y, computePositions(x, y, w, h));
+
+			BitMask[][] newPositions = new BitMask[max(positions.length, w)][];
+			System.arraycopy(positions, 0, newPositions, 0, positions.length);
+			BitMask[] sizes = newPositions[w - 1];
+			BitMask[] newSizes = new BitMask[sizes == null ? h : max(sizes.length, h)];
+			if (sizes != null)
+				System.arraycopy(sizes, 0, newSizes, 0, sizes.length);
+			newSizes[h - 1] = mask;
+			newPositions[w - 1] = newSizes;
+			this.positions = newPositions;
+			return mask;
+		}
+	}
+}
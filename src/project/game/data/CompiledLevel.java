@@ -0,0 +1,543 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.stream.IntStream;
+
+/**
+ * Vorverarbeitetes Level im Binaerformat.
+ * <br>
+ * Das Format enthaelt nach einem Kopf (Kennung, Version, Breite, Hoehe und Skalierung)
+ * die Listen der Objekte (Eingaenge, Ausgaenge, statische Gegner, bewegte Gegner, Schluessel)
+ * als Koordinaten der Quelle und anschliessend die Werte aller Punkte der Quelle zeilenweise
+ * mit einem Byte pro Punkt. Punkte, an welchen sich Objekte befinden, sind bereits leer.
+ * <br>
+ * Kompilierte Level werden neben der Properties-File mit der Endung .level abgelegt
+ * und beim Laden in den Speicher abgebildet. Existiert keine aktuelle kompilierte Datei,
+ * wird die Properties-File eingelesen und das Ergebnis beim ersten Laden zwischengespeichert.
+ * Level koennen mit dem {@link LevelCompiler} auch vorab kompiliert werden.
+ */
+public class CompiledLevel
+{
+	/**
+	 * Groesse der Kacheln der erstellten Karten
+	 */
+	private static final int CHUNK_HEIGHT = 4;
+	private static final int CHUNK_WIDTH  = 8;
+
+	/**
+	 * Dateiendung kompilierter Level
+	 */
+	public static final String EXTENSION = ".level";
+
+	/**
+	 * Verzeichnis des Caches im temporaeren Verzeichnis fuer Level, welche nicht neben
+	 * ihrer Properties-File abgelegt werden koennen
+	 */
+	private static final String CACHE_DIRECTORY = "underworld-levels";
+
+	/**
+	 * Reihenfolge der Objektlisten, entsprechend der Werte der Punkte
+	 */
+	private static final int[] FEATURES = {2, 3, 4, 5, 6};
+
+	/**
+	 * Kennung kompilierter Level ("UWLV")
+	 */
+	private static final int MAGIC = 0x55574C56;
+
+	private static final int VERSION = 1;
+
+	/**
+	 * Werte der Punkte der Quelle, zeilenweise
+	 */
+	private final ByteBuffer cells;
+
+	/**
+	 * Koordinaten der Objekte in der Quelle nach Objekttyp, abwechselnd x und y
+	 */
+	private final int[][] features;
+
+	private final int height;
+	private final int horizontalScale;
+	private final int verticalScale;
+	private final int width;
+
+	private CompiledLevel(final int width, final int height, final int horizontalScale, final int verticalScale,
+	                      final int[][] features, final ByteBuffer cells)
+	{
+		this.width = width;
+		this.height = height;
+		this.horizontalScale = horizontalScale;
+		this.verticalScale = verticalScale;
+		this.features = features;
+		this.cells = cells;
+	}
+
+	/**
+	 * Laed das Level der gegebenen Properties-File.
+	 * Existiert neben dieser oder im Cache ein kompiliertes Level, welches nicht aelter als die
+	 * Properties-File ist, wird dieses verwendet. Andernfalls wird die Properties-File gelesen
+	 * und das kompilierte Level fuer spaetere Aufrufe im Cache abgelegt.
+	 * @param source URL der Properties-File
+	 * @return geladenes Level
+	 * @throws IOException wenn weder das kompilierte Level noch die Properties-File gelesen werden konnte
+	 */
+	public static CompiledLevel load(final URL source) throws IOException
+	{
+		CompiledLevel level = readIfPresent(getCompiledSource(source), source);
+		if (level != null)
+			return level;
+
+		/*
+		Neben lokalen Properties-Files entspricht der Cache dem bereits gelesenen kompilierten Level
+		 */
+		Path cache = getCacheFile(source);
+		if (cache != null && getFile(source) == null)
+		{
+			level = readIfPresent(cache.toUri().toURL(), source);
+			if (level != null)
+				return level;
+		}
+
+		Properties properties = new Properties();
+		try (InputStream inputStream = source.openStream())
+		{
+			properties.load(inputStream);
+		}
+		level = parse(properties);
+
+		if (cache != null)
+		{
+			try
+			{
+				level.writeCache(cache);
+			}
+			catch (IOException | SecurityException ignored)
+			{
+				/*
+				Der Cache ist nicht beschreibbar, die Properties-File wird beim naechsten Mal erneut gelesen
+				 */
+			}
+		}
+		return level;
+	}
+
+	/**
+	 * Liest ein Level aus den Werten einer Properties-File.
+	 * Die Properties-File muss die Keys Width und Height besitzen, die Keys
+	 * HorizontalScaling und VerticalScaling sind optional.
+	 * @param properties Werte der Properties-File
+	 * @return gelesenes Level
+	 */
+	public static CompiledLevel parse(final Properties properties)
+	{
+		/*
+		Skalierung des Levels: x-Skalierung: 8x,
+		y-Skalierung: 4x, da Zeichen im Terminal ca. doppelt so hoch, wie breit sind.
+		 */
+		int hScale = Integer.parseInt(properties.getProperty("HorizontalScaling", "8"));
+		int vScale = Integer.parseInt(properties.getProperty("VerticalScaling", "4"));
+
+		int width  = Integer.parseInt(properties.getProperty("Width"));
+		int height = Integer.parseInt(properties.getProperty("Height"));
+
+		/*
+		Die Punkte werden parallel eingelesen, jeder Key beschreibt einen eigenen Punkt.
+		 */
+		byte[] cells = new byte[width * height];
+		properties.stringPropertyNames().parallelStream().forEach(key -> {
+			int separator = key.indexOf(',');
+			if (separator < 0)
+				return;
+			int x = Integer.parseInt(key.substring(0, separator));
+			int y = Integer.parseInt(key.substring(separator + 1));
+			if (x < 0 || y < 0 || x >= width || y >= height)
+				return;
+			cells[y * width + x] = (byte) (Integer.parseInt(properties.getProperty(key)) + 1);
+		});
+
+		/*
+		Objekte werden spaltenweise parallel gesucht. Die Reihenfolge der Spalten bleibt erhalten,
+		sodass diese der Reihenfolge der von der Karte gefundenen Objekte entspricht.
+		 */
+		int[][] features = new int[FEATURES.length][];
+		for (int i = 0; i < FEATURES.length; i++)
+		{
+			byte feature = (byte) FEATURES[i];
+			features[i] = IntStream.range(0, width).parallel().flatMap(
+					x -> IntStream.range(0, height)
+					              .filter(y -> cells[y * width + x] == feature)
+					              .flatMap(y -> IntStream.of(x, y)))
+			                       .toArray();
+		}
+		IntStream.range(0, height).parallel().forEach(y -> {
+			for (int i = y * width; i < (y + 1) * width; i++)
+				if (cells[i] > Map.WALL)
+					cells[i] = Map.EMPTY;
+		});
+
+		return new CompiledLevel(width, height, hScale, vScale, features, ByteBuffer.wrap(cells));
+	}
+
+	/**
+	 * Gibt die URL des kompilierten Levels neben der gegebenen Properties-File an
+	 */
+	private static URL getCompiledSource(final URL source)
+	{
+		try
+		{
+			return new URL(source, replaceExtension(new File(source.getPath()).getName()));
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Gibt die Datei an, in welcher das kompilierte Level der gegebenen Properties-File
+	 * zwischengespeichert wird.
+	 * Lokale Properties-Files erhalten das kompilierte Level direkt daneben, fuer alle anderen Quellen
+	 * (z.B. innerhalb eines Jar-Archivs) wird das temporaere Verzeichnis verwendet.
+	 * @return Datei des Caches oder null, wenn kein Cache verwendet werden kann
+	 */
+	private static Path getCacheFile(final URL source)
+	{
+		String fileName = replaceExtension(new File(source.getPath()).getName());
+		Path   file     = getFile(source);
+		if (file != null)
+			return file.resolveSibling(fileName);
+		try
+		{
+			return Paths.get(System.getProperty("java.io.tmpdir"), CACHE_DIRECTORY, fileName);
+		}
+		catch (InvalidPathException | SecurityException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Gibt die Datei einer URL an, falls diese auf eine lokale Datei verweist, sonst null
+	 */
+	private static Path getFile(final URL url)
+	{
+		if (!"file".equals(url.getProtocol()))
+			return null;
+		try
+		{
+			return Paths.get(url.toURI());
+		}
+		catch (URISyntaxException | IllegalArgumentException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Gibt den Zeitpunkt der letzten Aenderung der Quelle an oder 0, wenn dieser unbekannt ist
+	 */
+	private static long getLastModified(final URL source)
+	{
+		Path file = getFile(source);
+		if (file != null)
+			return file.toFile().lastModified();
+		try
+		{
+			URLConnection connection = source.openConnection();
+			connection.setUseCaches(false);
+			return connection.getLastModified();
+		}
+		catch (IOException e)
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * Liest das kompilierte Level an der gegebenen URL.
+	 * Lokale Dateien werden in den Speicher abgebildet, alle anderen Quellen werden vollstaendig gelesen.
+	 * @return gelesenes Level oder null, wenn das Level veraltet ist oder ein anderes Format besitzt
+	 */
+	private static CompiledLevel read(final URL compiledSource, final URL source) throws IOException
+	{
+		ByteBuffer buffer;
+		Path       file = getFile(compiledSource);
+		if (file != null)
+		{
+			if (getLastModified(source) > file.toFile().lastModified())
+				return null;
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+			{
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+		}
+		else
+		{
+			try (InputStream inputStream = compiledSource.openStream())
+			{
+				ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+				byte[]                data         = new byte[8192];
+				int                   count;
+				while ((count = inputStream.read(data)) >= 0)
+					outputStream.write(data, 0, count);
+				buffer = ByteBuffer.wrap(outputStream.toByteArray());
+			}
+		}
+
+		try
+		{
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+				return null;
+			int width  = buffer.getInt();
+			int height = buffer.getInt();
+			int hScale = buffer.getInt();
+			int vScale = buffer.getInt();
+
+			int[][] features = new int[FEATURES.length][];
+			for (int i = 0; i < FEATURES.length; i++)
+			{
+				features[i] = new int[buffer.getInt() * 2];
+				buffer.asIntBuffer().get(features[i]);
+				buffer.position(buffer.position() + features[i].length * 4);
+			}
+			if (buffer.remaining() != width * height)
+				throw new IOException("Compiled level " + compiledSource + " is truncated.");
+			return new CompiledLevel(width, height, hScale, vScale, features, buffer.slice());
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new IOException("Compiled level " + compiledSource + " is truncated.", e);
+		}
+	}
+
+	/**
+	 * Liest das kompilierte Level an der gegebenen URL, falls dieses existiert und aktuell ist
+	 * @return gelesenes Level oder null, wenn kein aktuelles kompiliertes Level gelesen werden konnte
+	 */
+	private static CompiledLevel readIfPresent(final URL compiledSource, final URL source)
+	{
+		if (compiledSource == null)
+			return null;
+		try
+		{
+			return read(compiledSource, source);
+		}
+		catch (IOException ignored)
+		{
+			/*
+			Kein kompiliertes Level vorhanden, lies die Properties-File
+			 */
+			return null;
+		}
+	}
+
+	/**
+	 * Ersetzt die Endung .properties eines Dateinamens durch .level
+	 */
+	static String replaceExtension(final String fileName)
+	{
+		int extension = fileName.lastIndexOf('.');
+		return (extension < 0 ? fileName : fileName.substring(0, extension)) + EXTENSION;
+	}
+
+	/**
+	 * Erstellt die Karte des Levels.
+	 * Jeder Punkt der Quelle entspricht einer Kachel der Groesse der Skalierung.
+	 * Objekte sind nicht auf der Karte enthalten.
+	 * @return neue Karte
+	 */
+	public Map createMap()
+	{
+		int mapWidth  = width * horizontalScale;
+		int mapHeight = height * verticalScale;
+
+		/*
+		Die Kacheln verweisen auf gemeinsame Kacheln, sodass der Speicherbedarf
+		unabhaengig von der Skalierung ist.
+		 */
+		TerrainStorage terrain = new ChunkedTerrainStorage(mapWidth, mapHeight, CHUNK_WIDTH, CHUNK_HEIGHT);
+
+		/*
+		Zeilen werden parallel gerastert, sofern jede Zeile eigene Kacheln beschreibt.
+		 */
+		IntStream rows = IntStream.range(0, height);
+		if (verticalScale % CHUNK_HEIGHT == 0)
+			rows = rows.parallel();
+		rows.forEach(y -> {
+			for (int x = 0; x < width; x++)
+			{
+				byte value = cells.get(y * width + x);
+				if (value != Map.EMPTY)
+					terrain.fill(x * horizontalScale, y * verticalScale, horizontalScale, verticalScale, value);
+			}
+		});
+		return new Map(terrain, horizontalScale, verticalScale);
+	}
+
+	/**
+	 * Gibt die Begrenzungen der bewegten Gegner zurueck
+	 * @return Begrenzungen der bewegten Gegner
+	 */
+	public Rectangle[] getDynamicEnemies()
+	{
+		return getFeatures(3);
+	}
+
+	/**
+	 * Gibt die Begrenzungen der Ausgaenge zurueck
+	 * @return Begrenzungen der Ausgaenge
+	 */
+	public Rectangle[] getFinish()
+	{
+		return getFeatures(1);
+	}
+
+	/**
+	 * Gibt die Begrenzungen der Schluessel zurueck
+	 * @return Begrenzungen der Schluessel
+	 */
+	public Rectangle[] getKeys()
+	{
+		return getFeatures(4);
+	}
+
+	/**
+	 * Gibt die Begrenzungen des ersten Eingangs zurueck
+	 * @return Begrenzungen des Eingangs oder null, wenn das Level keinen Eingang besitzt
+	 */
+	public Rectangle getStart()
+	{
+		Rectangle[] start = getFeatures(0);
+		return start.length == 0 ? null : start[0];
+	}
+
+	/**
+	 * Gibt die Begrenzungen der statischen Gegner zurueck
+	 * @return Begrenzungen der statischen Gegner
+	 */
+	public Rectangle[] getStaticEnemies()
+	{
+		return getFeatures(2);
+	}
+
+	/**
+	 * Schreibt das Level im Binaerformat in die gegebene Datei
+	 * @param target Zieldatei
+	 * @throws IOException wenn die Datei nicht geschrieben werden konnte
+	 */
+	public void write(final Path target) throws IOException
+	{
+		int size = 24 + FEATURES.length * 4 + width * height;
+		for (int[] coordinates : features)
+			size += coordinates.length * 4;
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(MAGIC).putInt(VERSION);
+		buffer.putInt(width).putInt(height).putInt(horizontalScale).putInt(verticalScale);
+		for (int[] coordinates : features)
+		{
+			buffer.putInt(coordinates.length / 2);
+			for (int coordinate : coordinates)
+				buffer.putInt(coordinate);
+		}
+		buffer.put(cells.duplicate());
+		buffer.flip();
+
+		try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+		                                            StandardOpenOption.WRITE,
+		                                            StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Legt das Level im Cache ab.
+	 * Das Level wird zunaechst in eine temporaere Datei geschrieben und anschliessend an die Stelle
+	 * des Caches verschoben, sodass gleichzeitig ladende Prozesse nie eine unvollstaendige
+	 * Datei in den Speicher abbilden.
+	 * @param target Datei des Caches
+	 * @throws IOException wenn der Cache nicht geschrieben werden konnte
+	 */
+	private void writeCache(final Path target) throws IOException
+	{
+		Path directory = target.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temporary = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+		try
+		{
+			write(temporary);
+			try
+			{
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Gibt die Begrenzungen aller Objekte des Typs mit dem gegebenen Index auf der Karte zurueck
+	 */
+	private Rectangle[] getFeatures(int index)
+	{
+		int[]       coordinates = features[index];
+		Rectangle[] bounds      = new Rectangle[coordinates.length / 2];
+		for (int i = 0; i < bounds.length; i++)
+			bounds[i] = new Rectangle(coordinates[2 * i] * horizontalScale, coordinates[2 * i + 1] * verticalScale,
+			                          horizontalScale, verticalScale);
+		return bounds;
+	}
+}
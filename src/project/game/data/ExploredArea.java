@@ -0,0 +1,384 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+import project.util.BitMask;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import static java.lang.Math.floorDiv;
+import static java.lang.Math.floorMod;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Vom Spieler bereits gesehene Punkte einer Karte.
+ * <br>
+ * Die Punkte werden als zeilenweise Bitmaske in Kacheln von 64 x 64 Punkten gespeichert,
+ * wobei jede Kachel aus 64 long-Werten besteht, von welchen jeder eine Zeile der Kachel enthaelt.
+ * Kacheln ohne gesehene Punkte werden nicht angelegt, vollstaendig gesehene Kacheln teilen sich
+ * eine gemeinsame Kachel. Speicher fuer einzelne Bits wird somit nur am Rand des erkundeten
+ * Bereichs benoetigt.
+ * <br>
+ * Bei der Serialisierung werden lediglich die Laengen der abwechselnd nicht gesehenen und gesehenen
+ * Abschnitte der zeilenweise durchlaufenen Karte gespeichert (Lauflaengenkodierung).
+ */
+public class ExploredArea implements Serializable
+{
+	/**
+	 * Kantenlaenge einer Kachel
+	 */
+	private static final int TILE_SIZE = 64;
+
+	/**
+	 * Gemeinsame Kachel aller vollstaendig gesehenen Kacheln. Darf nicht veraendert werden.
+	 */
+	private static final long[] FULL_TILE = createFullTile();
+
+	private final int height;
+
+	private final int width;
+
+	/**
+	 * Kacheln, zeilenweise. null fuer Kacheln ohne gesehene Punkte.
+	 */
+	private transient long[][] tiles;
+
+	private transient int tilesPerRow;
+
+	/**
+	 * Erstellt einen neuen, leeren erkundeten Bereich
+	 * @param width Breite der Karte
+	 * @param height Hoehe der Karte
+	 * @throws IllegalArgumentException wenn die Breite oder Hoehe negativ ist
+	 */
+	public ExploredArea(int width, int height)
+	{
+		if (width < 0 || height < 0)
+			throw new IllegalArgumentException("Area size must not be negative: " + width + "x" + height);
+		this.width = width;
+		this.height = height;
+		createTiles();
+	}
+
+	/**
+	 * Gibt die Anzahl gesehener Punkte an
+	 * @return Anzahl gesehener Punkte
+	 */
+	public synchronized int cardinality()
+	{
+		int count = 0;
+		for (long[] tile : tiles)
+			if (tile != null)
+				for (long word : tile)
+					count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * Gibt die Hoehe des Bereichs an
+	 * @return Hoehe der Karte
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Gibt einen Ausschnitt des erkundeten Bereichs als Bitmaske zurueck.
+	 * Der Ausschnitt darf ueber die Karte hinausgehen, Punkte ausserhalb gelten als nicht gesehen.
+	 * @param x x-Koordinate der linken oberen Ecke des Ausschnitts
+	 * @param y y-Koordinate der linken oberen Ecke des Ausschnitts
+	 * @param width Breite des Ausschnitts
+	 * @param height Hoehe des Ausschnitts
+	 * @return neue Maske: Punkt (i, j) ist gesetzt, wenn (x + i, y + j) gesehen wurde
+	 */
+	public synchronized BitMask getMask(int x, int y, int width, int height)
+	{
+		BitMask mask = new BitMask(width, height);
+		for (int row = max(-y, 0); row < min(height, this.height - y); row++)
+			for (int column = 0; column < width; column += 64)
+				mask.orBits(column, row, getBits(x + column, y + row));
+		return mask;
+	}
+
+	/**
+	 * Gibt die Breite des Bereichs an
+	 * @return Breite der Karte
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * Gibt an, ob der gegebene Punkt bereits gesehen wurde
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 * @return true, wenn der Punkt innerhalb der Karte liegt und gesehen wurde, sonst false
+	 */
+	public synchronized boolean isExplored(int x, int y)
+	{
+		return (getBits(x, y) & 1L) != 0;
+	}
+
+	/**
+	 * Fuegt alle in der gegebenen Maske gesetzten Punkte dem erkundeten Bereich hinzu.
+	 * Die Maske wird wortweise mit den Kacheln vereinigt, Woerter ohne gesetzte Punkte
+	 * werden uebersprungen.
+	 * @param mask Maske, zum Beispiel die sichtbaren Punkte eines Ausschnitts
+	 * @param x x-Koordinate des Punktes (0, 0) der Maske auf der Karte
+	 * @param y y-Koordinate des Punktes (0, 0) der Maske auf der Karte
+	 */
+	public synchronized void or(BitMask mask, int x, int y)
+	{
+		int minTileX = max(floorDiv(x, TILE_SIZE), 0);
+		int maxTileX = min(floorDiv(x + mask.getWidth() - 1, TILE_SIZE), tilesPerRow - 1);
+		int minTileY = max(floorDiv(y, TILE_SIZE), 0);
+		int maxTileY = min(floorDiv(y + mask.getHeight() - 1, TILE_SIZE), tileRows() - 1);
+		for (int tileY = minTileY; tileY <= maxTileY; tileY++)
+			for (int tileX = minTileX; tileX <= maxTileX; tileX++)
+			{
+				int    index = tileY * tilesPerRow + tileX;
+				long[] tile  = tiles[index];
+				if (tile == FULL_TILE)
+					continue;
+				long    columns = columnMask(tileX);
+				int     originX = tileX * TILE_SIZE;
+				int     originY = tileY * TILE_SIZE;
+				int     minRow  = max(y - originY, 0);
+				int     maxRow  = min(min(y + mask.getHeight(), height) - originY, TILE_SIZE);
+				boolean changed = false;
+				for (int row = minRow; row < maxRow; row++)
+				{
+					long bits = mask.getBits(originX - x, originY + row - y) & columns;
+					if (bits == 0)
+						continue;
+					if (tile == null)
+						tile = tiles[index] = new long[TILE_SIZE];
+					changed |= (tile[row] | bits) != tile[row];
+					tile[row] |= bits;
+				}
+				if (changed)
+					compact(tileX, tileY);
+			}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ExploredArea[" + width + "x" + height + ", " + cardinality() + " explored]";
+	}
+
+	/**
+	 * Gibt die Bits der innerhalb der Karte liegenden Spalten einer Kachel zurueck
+	 */
+	private long columnMask(int tileX)
+	{
+		int columns = width - tileX * TILE_SIZE;
+		return columns >= TILE_SIZE ? -1L : (1L << columns) - 1;
+	}
+
+	/**
+	 * Ersetzt eine Kachel durch die gemeinsame Kachel, wenn alle ihre Punkte gesehen wurden.
+	 * Kacheln am Rand der Karte werden nicht ersetzt.
+	 */
+	private void compact(int tileX, int tileY)
+	{
+		int    index = tileY * tilesPerRow + tileX;
+		long[] tile  = tiles[index];
+		if (tile == null || tile == FULL_TILE
+			|| (tileX + 1) * TILE_SIZE > width || (tileY + 1) * TILE_SIZE > height)
+			return;
+		for (long word : tile)
+			if (word != -1L)
+				return;
+		tiles[index] = FULL_TILE;
+	}
+
+	/**
+	 * Legt das leere Kachelraster an
+	 */
+	private void createTiles()
+	{
+		tilesPerRow = (width + TILE_SIZE - 1) / TILE_SIZE;
+		tiles = new long[tilesPerRow * ((height + TILE_SIZE - 1) / TILE_SIZE)][];
+	}
+
+	/**
+	 * Gibt 64 Punkte einer Zeile ab der gegebenen x-Koordinate zurueck,
+	 * Punkte ausserhalb der Karte sind nicht gesetzt.
+	 */
+	private long getBits(int x, int y)
+	{
+		int  tileX = floorDiv(x, TILE_SIZE);
+		int  bit   = floorMod(x, TILE_SIZE);
+		long low   = getWord(tileX, y) >>> bit;
+		return bit == 0 ? low : low | getWord(tileX + 1, y) << (TILE_SIZE - bit);
+	}
+
+	/**
+	 * Gibt die Zeile y der Kachelspalte tileX zurueck, ausserhalb der Karte 0
+	 */
+	private long getWord(int tileX, int y)
+	{
+		if (tileX < 0 || tileX >= tilesPerRow || y < 0 || y >= height)
+			return 0L;
+		long[] tile = tiles[(y / TILE_SIZE) * tilesPerRow + tileX];
+		return tile == null ? 0L : tile[y % TILE_SIZE];
+	}
+
+	/**
+	 * Liest den Bereich aus den gespeicherten Lauflaengen
+	 * @param in ObjectInputStream, aus welchem das Objekt gelesen wird
+	 * @throws IOException falls ein streambasierter Fehler auftritt oder die Lauflaengen ungueltig sind
+	 * @throws ClassNotFoundException falls ein Deserialisierungsfehler auftritt
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		createTiles();
+		long    cellCount = (long) width * height;
+		long    position  = 0;
+		boolean explored  = false;
+		while (position < cellCount)
+		{
+			long length = readLength(in);
+			if (length > cellCount - position)
+				throw new IOException("Run length exceeds area: " + length);
+			if (explored)
+				setRange(position, position + length);
+			position += length;
+			explored = !explored;
+		}
+		for (int index = 0; index < tiles.length; index++)
+			compact(index % tilesPerRow, index / tilesPerRow);
+	}
+
+	/**
+	 * Markiert die Punkte [from, to) der zeilenweise durchlaufenen Karte als gesehen
+	 */
+	private void setRange(long from, long to)
+	{
+		while (from < to)
+		{
+			int  y     = (int) (from / width);
+			int  x     = (int) (from % width);
+			int  end   = (int) min(min(to - (long) y * width, width), (x / TILE_SIZE + 1) * TILE_SIZE);
+			int  index = (y / TILE_SIZE) * tilesPerRow + x / TILE_SIZE;
+			long bits  = (end - x == TILE_SIZE ? -1L : (1L << (end - x)) - 1) << (x % TILE_SIZE);
+			if (tiles[index] == null)
+				tiles[index] = new long[TILE_SIZE];
+			tiles[index][y % TILE_SIZE] |= bits;
+			from += end - x;
+		}
+	}
+
+	/**
+	 * Gibt die Anzahl der Kachelzeilen an
+	 */
+	private int tileRows()
+	{
+		return tilesPerRow == 0 ? 0 : tiles.length / tilesPerRow;
+	}
+
+	/**
+	 * Schreibt die Laengen der abwechselnd nicht gesehenen und gesehenen Abschnitte,
+	 * beginnend mit einem nicht gesehenen Abschnitt. Innerhalb einer Zeile werden die Abschnitte
+	 * wortweise bestimmt.
+	 * @param out ObjectOutputStream, in welchen das Objekt geschrieben wird
+	 * @throws IOException falls ein streambasierter Fehler auftritt
+	 */
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+		boolean explored = false;
+		long    length   = 0;
+		for (int y = 0; y < height; y++)
+		{
+			int x = 0;
+			while (x < width)
+			{
+				long bits      = explored ? ~getBits(x, y) : getBits(x, y);
+				int  remaining = width - x;
+				int  run       = bits == 0 ? TILE_SIZE : Long.numberOfTrailingZeros(bits);
+				length += min(run, remaining);
+				x += min(run, remaining);
+				if (run < remaining)
+				{
+					writeLength(out, length);
+					length = 0;
+					explored = !explored;
+				}
+			}
+		}
+		writeLength(out, length);
+	}
+
+	/**
+	 * Erstellt die gemeinsame Kachel vollstaendig gesehener Kacheln
+	 */
+	private static long[] createFullTile()
+	{
+		long[] tile = new long[TILE_SIZE];
+		Arrays.fill(tile, -1L);
+		return tile;
+	}
+
+	/**
+	 * Liest eine Lauflaenge mit variabler Anzahl von Bytes (7 Bit je Byte)
+	 */
+	private static long readLength(ObjectInputStream in) throws IOException
+	{
+		long length = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int value = in.readUnsignedByte();
+			length |= (long) (value & 0x7F) << shift;
+			if ((value & 0x80) == 0)
+				return length;
+		}
+		throw new IOException("Malformed run length");
+	}
+
+	/**
+	 * Schreibt eine Lauflaenge mit variabler Anzahl von Bytes (7 Bit je Byte)
+	 */
+	private static void writeLength(ObjectOutputStream out, long length) throws IOException
+	{
+		while (length >= 0x80)
+		{
+			out.writeByte((int) (length & 0x7F) | 0x80);
+			length >>>= 7;
+		}
+		out.writeByte((int) length);
+	}
+}
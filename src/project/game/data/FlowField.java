@@ -0,0 +1,346 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+package project.game.data;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Distanzfeld (Flow Field) zu einem gemeinsamen Ziel fuer Aktoren einer festen Groesse.
+ * <br>
+ * Das Feld enthaelt fuer jeden Punkt innerhalb eines Fensters um seine Wurzel die Kosten
+ * des kuerzesten Pfades zur Wurzel (Dijkstra-Algorithmus mit Dial-Warteschlangen). Alle Aktoren,
+ * welche dasselbe Ziel verfolgen, koennen ihren Pfad durch Absteigen entlang dieser Kosten
+ * bestimmen, sodass die Suche nur einmal und nicht einmal pro Aktor erfolgt.
+ * <br>
+ * Das Feld wird nur neu berechnet, wenn sich das Ziel bewegt hat, groessere Kosten benoetigt
+ * werden oder die Begehbarkeit eines Punktes im Feld veraendert wurde. Die Neuberechnung erfolgt
+ * durch den ersten Aktor, welcher das Feld danach anfragt, alle weiteren Aktoren steigen nur noch
+ * entlang der Kosten ab. Der Aufwand einer Bewegung des Ziels ist somit unabhaengig von der Anzahl
+ * der verfolgenden Aktoren. Bei der Neuberechnung richtet sich die Groesse des Feldes nach den
+ * seit der vorherigen Berechnung angefragten Kosten, sodass das Feld auch wieder kleiner werden kann.
+ */
+public class FlowField
+{
+	private final int   actorHeight;
+	private final int   actorWidth;
+	private final Map   map;
+	private final int   verticalStepCost;
+
+	/**
+	 * Anzahl der Begehbarkeitsaenderungen der Karte, welche bereits beruecksichtigt wurden
+	 */
+	private int changeCount;
+
+	/**
+	 * Maximale Kosten der Pfade zum Ziel
+	 */
+	private int pathCost;
+
+	/**
+	 * Groesste seit der letzten Berechnung angefragte Kosten
+	 */
+	private int requestedCost;
+
+	/**
+	 * Ziel und Wurzel des Feldes
+	 */
+	private Point root;
+
+	/*
+	Fenster des Feldes auf der Karte
+	 */
+	private int left;
+	private int top;
+	private int windowHeight;
+	private int windowWidth;
+
+	/*
+	Kosten der Punkte des Fensters. Ein Punkt ist nur gueltig, wenn sein Stempel
+	der aktuellen Generation entspricht.
+	 */
+	private int[] cost;
+	private int   generation;
+	private int[] stamp;
+
+	/*
+	Warteschlangen fuer Kosten modulo (maximale Schrittkosten + 1) (Dial-Algorithmus).
+	Da ein Schritt hoechstens die maximalen Schrittkosten kostet, werden nie mehr
+	Kostenstufen gleichzeitig benoetigt.
+	 */
+	private final int[][] buckets;
+	private final int[]   bucketSizes;
+
+	/**
+	 * Erstellt ein neues, leeres Distanzfeld fuer Aktoren der gegebenen Groesse
+	 * @param map Karte
+	 * @param actorWidth Breite des Aktors
+	 * @param actorHeight Hoehe des Aktors
+	 */
+	FlowField(final Map map, final int actorWidth, final int actorHeight)
+	{
+		this.map = map;
+		this.actorWidth = max(actorWidth, 1);
+		this.actorHeight = max(actorHeight, 1);
+		verticalStepCost = max(map.getHorizontalScale() / map.getVerticalScale(), 1);
+		cost = new int[0];
+		stamp = new int[0];
+		buckets = new int[verticalStepCost + 1][64];
+		bucketSizes = new int[verticalStepCost + 1];
+	}
+
+	/**
+	 * Gibt die Kosten des kuerzesten Pfades vom gegebenen Punkt zum Ziel an.
+	 * @param point Punkt
+	 * @return Kosten oder Integer.MAX_VALUE, wenn das Ziel nicht innerhalb
+	 * der maximalen Kosten erreicht werden kann
+	 */
+	public synchronized int getCost(Point point)
+	{
+		if (root == null)
+			return Integer.MAX_VALUE;
+		int pointCost = getFieldCost(point.x, point.y);
+		return pointCost <= pathCost ? pointCost : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Bestimmt den kuerzesten Pfad vom gegebenen Punkt zum Ziel, indem jeweils zu dem
+	 * Nachbarpunkt mit den geringsten Kosten gewechselt wird.
+	 * @param fromPoint Ausgangspunkt
+	 * @return Pfad ohne den Ausgangspunkt oder null, wenn das Ziel nicht innerhalb
+	 * der maximalen Kosten erreicht werden kann
+	 */
+	public synchronized Point[] getPath(Point fromPoint)
+	{
+		if (root == null)
+			return null;
+		if (fromPoint.equals(root))
+			return getFieldCost(root.x, root.y) != Integer.MAX_VALUE ? new Point[]{ new Point(root) } : null;
+
+		int x           = fromPoint.x;
+		int y           = fromPoint.y;
+		int currentCost = getFieldCost(x, y);
+		if (currentCost > pathCost)
+			return null;
+
+		List<Point> path = new ArrayList<>(currentCost);
+		while (currentCost > 0)
+		{
+			int bestDirection = -1;
+			for (int direction = 0; direction < 4; direction++)
+			{
+				int neighbourCost = getFieldCost(x + Map.DIRECTION_X[direction], y + Map.DIRECTION_Y[direction]);
+				if (neighbourCost < currentCost)
+				{
+					currentCost = neighbourCost;
+					bestDirection = direction;
+				}
+			}
+			x += Map.DIRECTION_X[bestDirection];
+			y += Map.DIRECTION_Y[bestDirection];
+			path.add(new Point(x, y));
+		}
+		return path.toArray(new Point[path.size()]);
+	}
+
+	/**
+	 * Gibt das aktuelle Ziel des Feldes an
+	 * @return Ziel oder null, wenn das Feld noch nicht berechnet wurde
+	 */
+	public synchronized Point getRoot()
+	{
+		return root == null ? null : new Point(root);
+	}
+
+	/**
+	 * Setzt das Ziel des Feldes. Das Feld wird nur neu berechnet, wenn sich das Ziel bewegt
+	 * hat, Pfade mit hoeheren Kosten als bisher benoetigt werden oder sich die Begehbarkeit
+	 * eines Punktes im Feld veraendert hat.
+	 * Die Groesse des neu berechneten Feldes richtet sich nach den hoechsten seit der
+	 * vorherigen Berechnung angefragten Kosten.
+	 * @param root Ziel
+	 * @param maxCost Maximale Kosten, bis zu welchen Pfade benoetigt werden
+	 */
+	public synchronized void update(Point root, int maxCost)
+	{
+		maxCost = min(maxCost, map.getWidth() + map.getHeight() * verticalStepCost);
+		requestedCost = max(requestedCost, maxCost);
+		if (root.equals(this.root) && maxCost <= pathCost && !mapDidChange())
+			return;
+		pathCost = requestedCost;
+		requestedCost = 0;
+		this.root = new Point(root);
+		changeCount = map.getPassabilityChangeCount();
+		calculate();
+	}
+
+	/**
+	 * Berechnet die Kosten aller Punkte im Fenster um die Wurzel
+	 */
+	private void calculate()
+	{
+		int halfWidth  = pathCost;
+		int halfHeight = pathCost / verticalStepCost;
+
+		left = root.x - halfWidth;
+		top = root.y - halfHeight;
+		windowWidth = 2 * halfWidth + 1;
+		windowHeight = 2 * halfHeight + 1;
+
+		int cellCount = windowWidth * windowHeight;
+		if (cost.length < cellCount || cost.length > 4 * cellCount)
+		{
+			cost = new int[cellCount];
+			stamp = new int[cellCount];
+			generation = 0;
+		}
+		if (++generation == 0)
+		{
+			Arrays.fill(stamp, 0);
+			generation = 1;
+		}
+		Arrays.fill(bucketSizes, 0);
+
+		if (map.isOutOfBounds(root) || !isPassable(root.x, root.y))
+			return;
+
+		int rootCell = halfHeight * windowWidth + halfWidth;
+		stamp[rootCell] = generation;
+		cost[rootCell] = 0;
+		push(rootCell, 0);
+
+		for (int currentCost = 0; currentCost <= pathCost; currentCost++)
+		{
+			int   bucketIndex = currentCost % buckets.length;
+			int[] bucket      = buckets[bucketIndex];
+			for (int i = 0; i < bucketSizes[bucketIndex]; i++)
+			{
+				int cell = bucket[i];
+				if (cost[cell] != currentCost)
+					continue;
+				int x = cell % windowWidth;
+				int y = cell / windowWidth;
+				for (int direction = 0; direction < 4; direction++)
+				{
+					int nx = x + Map.DIRECTION_X[direction];
+					int ny = y + Map.DIRECTION_Y[direction];
+					if (nx < 0 || ny < 0 || nx >= windowWidth || ny >= windowHeight)
+						continue;
+					int neighbour     = ny * windowWidth + nx;
+					int neighbourCost = currentCost + (ny == y ? 1 : verticalStepCost);
+					if (neighbourCost > pathCost ||
+					    (stamp[neighbour] == generation && cost[neighbour] <= neighbourCost) ||
+					    !isPassable(nx + left, ny + top))
+						continue;
+					stamp[neighbour] = generation;
+					cost[neighbour] = neighbourCost;
+					push(neighbour, neighbourCost);
+				}
+			}
+			bucketSizes[bucketIndex] = 0;
+		}
+	}
+
+	/**
+	 * Gibt den Index eines Punktes im Fenster zurueck oder -1, wenn dieser ausserhalb liegt
+	 */
+	private int cell(int x, int y)
+	{
+		int wx = x - left;
+		int wy = y - top;
+		if (wx < 0 || wy < 0 || wx >= windowWidth || wy >= windowHeight)
+			return -1;
+		return wy * windowWidth + wx;
+	}
+
+	/**
+	 * Gibt die Kosten eines Punktes der Karte zur Wurzel des Feldes an
+	 */
+	private int getFieldCost(int x, int y)
+	{
+		int cell = cell(x, y);
+		return cell >= 0 && stamp[cell] == generation ? cost[cell] : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Gibt an, ob sich ein Aktor mit seinem Mittelpunkt am gegebenen Punkt befinden kann
+	 */
+	private boolean isPassable(int x, int y)
+	{
+		return map.fits(x - actorWidth / 2, y - actorHeight / 2, actorWidth, actorHeight);
+	}
+
+	/**
+	 * Ueberprueft, ob eine Begehbarkeitsaenderung der Karte seit der letzten Berechnung
+	 * das Feld betrifft. Ein unbegehbar gewordener Punkt betrifft das Feld, wenn ein Aktor
+	 * an einem Punkt des Feldes mit diesem ueberlappen wuerde, ein begehbar gewordener Punkt,
+	 * wenn der Aktor dadurch an einem Punkt des Fensters Platz findet.
+	 * @return true, wenn das Feld neu berechnet werden muss
+	 */
+	private boolean mapDidChange()
+	{
+		int[] changes = map.getPassabilityChanges(changeCount);
+		if (changes == null)
+			return true;
+		changeCount += changes.length;
+		for (int change : changes)
+		{
+			int x = change % map.getWidth();
+			int y = change / map.getWidth();
+
+			/*
+			Mittelpunkte, an welchen der Aktor den veraenderten Punkt ueberlappt
+			 */
+			int fromX = max(x - actorWidth + 1 + actorWidth / 2, left);
+			int toX   = min(x + actorWidth / 2, left + windowWidth - 1);
+			int fromY = max(y - actorHeight + 1 + actorHeight / 2, top);
+			int toY   = min(y + actorHeight / 2, top + windowHeight - 1);
+
+			boolean passable = map.getPointUnchecked(x, y) == Map.EMPTY;
+			for (int centerY = fromY; centerY <= toY; centerY++)
+				for (int centerX = fromX; centerX <= toX; centerX++)
+					if (passable ? isPassable(centerX, centerY) : getFieldCost(centerX, centerY) != Integer.MAX_VALUE)
+						return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Fuegt einen Punkt zur Warteschlange seiner Kosten hinzu
+	 */
+	private void push(int cell, int cellCost)
+	{
+		int bucketIndex = cellCost % buckets.length;
+		if (bucketSizes[bucketIndex] == buckets[bucketIndex].length)
+			buckets[bucketIndex] = Arrays.copyOf(buckets[bucketIndex], bucketSizes[bucketIndex] * 2);
+		buckets[bucketIndex][bucketSizes[bucketIndex]++] = cell;
+	}
+}
@@ -368,8 +368,7 @@ public abstract class GameActor extends MapObject implements Serializable
 
 		attackState = properties.getProperty("attack");
 
-		baseAttack = new SkillConfiguration();
-		baseAttack.load(properties, "base_");
+		baseAttack = loadSkillConfiguration("base_");
 	}
 
 	/**
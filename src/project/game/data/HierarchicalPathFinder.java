@@ -0,0 +1,726 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+package project.game.data;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.BooleanSupplier;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Hierarchische Pfadsuche (HPA*) fuer Aktoren einer festen Groesse.
+ * <br>
+ * Die Karte wird in Cluster aus CLUSTER_SIZE x CLUSTER_SIZE Quellpunkten
+ * (horizontalScale x verticalScale Kartenpunkte pro Quellpunkt) eingeteilt.
+ * An den Grenzen benachbarter Cluster werden Uebergaenge gesucht, welche
+ * gemeinsam mit den Strecken zwischen den Uebergaengen eines Clusters einen
+ * abstrakten Graphen bilden. Ein Pfad wird zuerst auf diesem Graphen gesucht
+ * und anschliessend nur fuer die gewaehlten Abschnitte innerhalb einzelner
+ * Cluster verfeinert.
+ * <br>
+ * Die Uebergaenge werden bei der Initialisierung erstellt, die Strecken innerhalb
+ * eines Clusters erst, wenn ein Cluster waehrend einer Suche erreicht wird.
+ * Aendert sich die Begehbarkeit eines Punktes, werden nur die betroffenen
+ * Cluster neu aufgebaut.
+ * <br>
+ * Suchen werden nacheinander ausgefuehrt. Veraenderungen der Karte werden ohne Sperre
+ * in einer Warteschlange vermerkt und erst zu Beginn der naechsten Suche uebernommen,
+ * sodass die Gameloop nie auf eine laufende Suche warten muss.
+ */
+class HierarchicalPathFinder
+{
+	/**
+	 * Knoten des abstrakten Graphen.
+	 * Ein Knoten liegt auf einem Uebergang zwischen zwei Clustern
+	 * oder ist ein temporaerer Start- oder Zielknoten.
+	 */
+	private static class Node
+	{
+		private final int        cluster;
+		private final List<Node> edgeTargets;
+		private       int[]      edgeCosts;
+		private       Node       partner;
+		private       int        partnerCost;
+		private       int        searchCost;
+		private       int        searchGeneration;
+		private       Node       searchParent;
+		private final int        x;
+		private final int        y;
+
+		private Node(final int x, final int y, final int cluster)
+		{
+			this.x = x;
+			this.y = y;
+			this.cluster = cluster;
+			this.edgeTargets = new ArrayList<>();
+			this.edgeCosts = new int[0];
+		}
+	}
+
+	/**
+	 * Eintrag der Prioritaetswarteschlange der abstrakten Suche
+	 */
+	private static class SearchEntry implements Comparable<SearchEntry>
+	{
+		private final int  cost;
+		private final int  estimate;
+		private final Node node;
+
+		private SearchEntry(final Node node, final int cost, final int estimate)
+		{
+			this.node = node;
+			this.cost = cost;
+			this.estimate = estimate;
+		}
+
+		@Override
+		public int compareTo(final SearchEntry o)
+		{
+			return Integer.compare(cost + estimate, o.cost + o.estimate);
+		}
+	}
+
+	/**
+	 * Kantenlaenge eines Clusters in Quellpunkten
+	 */
+	private static final int CLUSTER_SIZE = 4;
+
+	/**
+	 * Ab dieser Laenge werden fuer einen zusammenhaengenden Uebergang zwei Knoten
+	 * an den Enden anstatt eines Knotens in der Mitte erstellt.
+	 */
+	private static final int LONG_ENTRANCE = 8;
+
+	private final int             actorHeight;
+	private final int             actorWidth;
+	private final int             clusterHeight;
+	private final List<List<Node>> clusterNodes;
+	private final int             clusterWidth;
+	private final int             clustersX;
+	private final int             clustersY;
+	private final boolean[]       dirty;
+	private final Queue<Integer>  dirtyClusters;
+	private final AtomicIntegerArray dirtyQueued;
+	private final List<List<Node>> eastEntrances;
+	private final boolean[]       edgesValid;
+	private       int             expansions;
+	private final Map             map;
+	private       int             searchGeneration;
+	private final List<List<Node>> southEntrances;
+
+	/*
+	Arbeitsbereich fuer Suchen innerhalb eines Clusters
+	 */
+	private int[]  localCost;
+	private long[]    localHeap;
+	private int       localHeapSize;
+	private byte[]    localParent;
+	private boolean[] localPassable;
+	private int       localPassableCluster = -1;
+
+	/**
+	 * Erstellt den abstrakten Graphen fuer Aktoren der gegebenen Groesse
+	 * @param map Karte
+	 * @param actorWidth Breite des Aktors
+	 * @param actorHeight Hoehe des Aktors
+	 */
+	HierarchicalPathFinder(Map map, int actorWidth, int actorHeight)
+	{
+		this.map = map;
+		this.actorWidth = max(actorWidth, 1);
+		this.actorHeight = max(actorHeight, 1);
+		clusterWidth = CLUSTER_SIZE * map.getHorizontalScale();
+		clusterHeight = CLUSTER_SIZE * map.getVerticalScale();
+		clustersX = (map.getWidth() + clusterWidth - 1) / clusterWidth;
+		clustersY = (map.getHeight() + clusterHeight - 1) / clusterHeight;
+
+		int clusterCount = clustersX * clustersY;
+		clusterNodes = new ArrayList<>(clusterCount);
+		eastEntrances = new ArrayList<>(clusterCount);
+		southEntrances = new ArrayList<>(clusterCount);
+		for (int i = 0; i < clusterCount; i++)
+		{
+			clusterNodes.add(new ArrayList<>());
+			eastEntrances.add(new ArrayList<>());
+			southEntrances.add(new ArrayList<>());
+		}
+		dirty = new boolean[clusterCount];
+		dirtyClusters = new ConcurrentLinkedQueue<>();
+		dirtyQueued = new AtomicIntegerArray(clusterCount);
+		edgesValid = new boolean[clusterCount];
+
+		localCost = new int[clusterWidth * clusterHeight];
+		localParent = new byte[clusterWidth * clusterHeight];
+		localPassable = new boolean[clusterWidth * clusterHeight];
+		localHeap = new long[64];
+
+		for (int cy = 0; cy < clustersY; cy++)
+			for (int cx = 0; cx < clustersX; cx++)
+			{
+				buildEastEntrances(cx, cy);
+				buildSouthEntrances(cx, cy);
+			}
+	}
+
+	/**
+	 * Sucht einen Pfad zwischen den gegebenen Punkten.
+	 * Liegen Start- und Zielpunkt in demselben oder benachbarten Clustern,
+	 * wird die Suche auf der gesamten Karte durchgefuehrt.
+	 * @param from Ausgangspunkt
+	 * @param to Zielpunkt
+	 * @param cancelled Abbruchbedingung, welche vor jedem expandierten Knoten geprueft wird, oder null
+	 * @return Pfad ohne den Ausgangspunkt oder null, wenn kein Pfad existiert
+	 * oder die Suche abgebrochen wurde
+	 */
+	synchronized Point[] findPath(Point from, Point to, BooleanSupplier cancelled)
+	{
+		for (Integer cluster = dirtyClusters.poll(); cluster != null; cluster = dirtyClusters.poll())
+		{
+			dirtyQueued.set(cluster, 0);
+			dirty[cluster] = true;
+			localPassableCluster = -1;
+		}
+
+		if (map.isOutOfBounds(from) || map.isOutOfBounds(to))
+			return null;
+
+		int fromClusterX = from.x / clusterWidth;
+		int fromClusterY = from.y / clusterHeight;
+		int toClusterX   = to.x / clusterWidth;
+		int toClusterY   = to.y / clusterHeight;
+
+		if (abs(fromClusterX - toClusterX) <= 1 && abs(fromClusterY - toClusterY) <= 1)
+			return findMapPath(from, to, cancelled);
+
+		if (!isPassable(to.x, to.y))
+			return null;
+
+		rebuildDirtyClusters();
+
+		searchGeneration++;
+		expansions = 0;
+
+		Node start = new Node(from.x, from.y, fromClusterY * clustersX + fromClusterX);
+		Node goal  = new Node(to.x, to.y, toClusterY * clustersX + toClusterX);
+
+		/*
+		Kosten vom Zielpunkt zu den Knoten seines Clusters.
+		Da die Bewegungskosten symmetrisch sind, entsprechen diese den Kosten zum Zielpunkt.
+		 */
+		List<Node> goalClusterNodes = clusterNodes.get(goal.cluster);
+		int[]      goalCosts        = new int[goalClusterNodes.size()];
+		searchCluster(goal.cluster, goal.x, goal.y);
+		for (int i = 0; i < goalCosts.length; i++)
+			goalCosts[i] = getLocalCost(goal.cluster, goalClusterNodes.get(i));
+
+		PriorityQueue<SearchEntry> open = new PriorityQueue<>();
+
+		/*
+		Verbinde den Startpunkt mit den Knoten seines Clusters
+		 */
+		List<Node> startClusterNodes = clusterNodes.get(start.cluster);
+		searchCluster(start.cluster, start.x, start.y);
+		start.searchGeneration = searchGeneration;
+		start.searchCost = 0;
+		for (Node node : startClusterNodes)
+		{
+			int cost = getLocalCost(start.cluster, node);
+			if (cost < Integer.MAX_VALUE)
+				relax(open, start, node, cost, goal);
+		}
+
+		/*
+		Abstrakte A*-Suche
+		 */
+		while (!open.isEmpty())
+		{
+			SearchEntry entry = open.poll();
+			Node        node  = entry.node;
+			if (entry.cost > node.searchCost)
+				continue;
+			if (node == goal)
+			{
+				Point[] path = refinePath(goal);
+				return path != null ? path : findMapPath(from, to, cancelled);
+			}
+			if (cancelled != null && cancelled.getAsBoolean())
+				return null;
+			expansions++;
+
+			if (node.cluster == goal.cluster)
+			{
+				int index = goalClusterNodes.indexOf(node);
+				if (index >= 0 && goalCosts[index] < Integer.MAX_VALUE)
+					relax(open, node, goal, node.searchCost + goalCosts[index], goal);
+			}
+
+			if (node.partner != null)
+				relax(open, node, node.partner, node.searchCost + node.partnerCost, goal);
+
+			ensureEdges(node.cluster);
+			for (int i = 0; i < node.edgeTargets.size(); i++)
+				relax(open, node, node.edgeTargets.get(i), node.searchCost + node.edgeCosts[i], goal);
+		}
+		return null;
+	}
+
+	/**
+	 * Gibt die Anzahl der bei der letzten abstrakten Suche expandierten Knoten an.
+	 * @return Anzahl expandierter Knoten
+	 */
+	int getExpansionCount()
+	{
+		return expansions;
+	}
+
+	/**
+	 * Markiert die Cluster als veraltet, in welchen sich die Begehbarkeit
+	 * durch eine Veraenderung des gegebenen Kartenpunktes geaendert haben kann.
+	 * Diese werden vor der naechsten Suche neu aufgebaut.
+	 * Wartet nicht auf eine laufende Suche.
+	 * @param x x-Koordinate des veraenderten Punktes
+	 * @param y y-Koordinate des veraenderten Punktes
+	 */
+	void invalidate(int x, int y)
+	{
+		/*
+		Betroffen sind alle Mittelpunkte, deren Aktorbegrenzung den Punkt enthaelt
+		 */
+		int minX = max(x - actorWidth + 1 + actorWidth / 2, 0) / clusterWidth;
+		int maxX = min(x + actorWidth / 2, map.getWidth() - 1) / clusterWidth;
+		int minY = max(y - actorHeight + 1 + actorHeight / 2, 0) / clusterHeight;
+		int maxY = min(y + actorHeight / 2, map.getHeight() - 1) / clusterHeight;
+		for (int cy = minY; cy <= maxY; cy++)
+			for (int cx = minX; cx <= maxX; cx++)
+			{
+				/*
+				Jeder Cluster befindet sich hoechstens einmal in der Warteschlange,
+				sodass diese auch ohne Suchen nicht unbegrenzt waechst
+				 */
+				int cluster = cy * clustersX + cx;
+				if (dirtyQueued.compareAndSet(cluster, 0, 1))
+					dirtyClusters.add(cluster);
+			}
+	}
+
+	/**
+	 * Sucht Uebergaenge zwischen dem gegebenen Cluster und seinem rechten Nachbarn.
+	 * @param cx x-Index des Clusters
+	 * @param cy y-Index des Clusters
+	 */
+	private void buildEastEntrances(int cx, int cy)
+	{
+		int        cluster   = cy * clustersX + cx;
+		List<Node> entrances = eastEntrances.get(cluster);
+		for (Node node : entrances)
+		{
+			clusterNodes.get(cluster).remove(node);
+			clusterNodes.get(cluster + 1).remove(node.partner);
+		}
+		entrances.clear();
+
+		/*
+		Die verbleibenden Knoten beider Cluster koennen auf entfernte Uebergaenge verweisen
+		 */
+		edgesValid[cluster] = false;
+		if (cx + 1 < clustersX)
+			edgesValid[cluster + 1] = false;
+		if (cx + 1 >= clustersX)
+			return;
+
+		int x      = (cx + 1) * clusterWidth - 1;
+		int top    = cy * clusterHeight;
+		int bottom = min(top + clusterHeight, map.getHeight());
+
+		int runStart = -1;
+		for (int y = top; y <= bottom; y++)
+		{
+			boolean open = y < bottom && isPassable(x, y) && isPassable(x + 1, y);
+			if (open && runStart < 0)
+				runStart = y;
+			else if (!open && runStart >= 0)
+			{
+				int runEnd = y - 1;
+				if (runEnd - runStart + 1 >= LONG_ENTRANCE)
+				{
+					addEntrance(entrances, cluster, cluster + 1, x, runStart, x + 1, runStart, 1);
+					addEntrance(entrances, cluster, cluster + 1, x, runEnd, x + 1, runEnd, 1);
+				}
+				else
+				{
+					int mid = (runStart + runEnd) / 2;
+					addEntrance(entrances, cluster, cluster + 1, x, mid, x + 1, mid, 1);
+				}
+				runStart = -1;
+			}
+		}
+	}
+
+	/**
+	 * Sucht Uebergaenge zwischen dem gegebenen Cluster und seinem unteren Nachbarn.
+	 * @param cx x-Index des Clusters
+	 * @param cy y-Index des Clusters
+	 */
+	private void buildSouthEntrances(int cx, int cy)
+	{
+		int        cluster   = cy * clustersX + cx;
+		List<Node> entrances = southEntrances.get(cluster);
+		for (Node node : entrances)
+		{
+			clusterNodes.get(cluster).remove(node);
+			clusterNodes.get(cluster + clustersX).remove(node.partner);
+		}
+		entrances.clear();
+
+		/*
+		Die verbleibenden Knoten beider Cluster koennen auf entfernte Uebergaenge verweisen
+		 */
+		edgesValid[cluster] = false;
+		if (cy + 1 < clustersY)
+			edgesValid[cluster + clustersX] = false;
+		if (cy + 1 >= clustersY)
+			return;
+
+		int y     = (cy + 1) * clusterHeight - 1;
+		int left  = cx * clusterWidth;
+		int right = min(left + clusterWidth, map.getWidth());
+
+		int verticalStepCost = map.getHorizontalScale() / map.getVerticalScale();
+		int runStart         = -1;
+		for (int x = left; x <= right; x++)
+		{
+			boolean open = x < right && isPassable(x, y) && isPassable(x, y + 1);
+			if (open && runStart < 0)
+				runStart = x;
+			else if (!open && runStart >= 0)
+			{
+				int runEnd = x - 1;
+				if (runEnd - runStart + 1 >= LONG_ENTRANCE)
+				{
+					addEntrance(entrances, cluster, cluster + clustersX, runStart, y, runStart, y + 1, verticalStepCost);
+					addEntrance(entrances, cluster, cluster + clustersX, runEnd, y, runEnd, y + 1, verticalStepCost);
+				}
+				else
+				{
+					int mid = (runStart + runEnd) / 2;
+					addEntrance(entrances, cluster, cluster + clustersX, mid, y, mid, y + 1, verticalStepCost);
+				}
+				runStart = -1;
+			}
+		}
+	}
+
+	/**
+	 * Erstellt ein Knotenpaar fuer einen Uebergang zwischen zwei Clustern
+	 */
+	private void addEntrance(List<Node> entrances, int cluster, int neighbourCluster, int x, int y, int neighbourX,
+	                         int neighbourY, int cost)
+	{
+		Node node      = new Node(x, y, cluster);
+		Node neighbour = new Node(neighbourX, neighbourY, neighbourCluster);
+		node.partner = neighbour;
+		node.partnerCost = cost;
+		neighbour.partner = node;
+		neighbour.partnerCost = cost;
+		entrances.add(node);
+		clusterNodes.get(cluster).add(node);
+		clusterNodes.get(neighbourCluster).add(neighbour);
+		edgesValid[cluster] = false;
+		edgesValid[neighbourCluster] = false;
+	}
+
+	/**
+	 * Berechnet die Strecken zwischen den Knoten eines Clusters, falls diese
+	 * noch nicht vorhanden oder veraltet sind.
+	 * @param cluster Index des Clusters
+	 */
+	private void ensureEdges(int cluster)
+	{
+		if (edgesValid[cluster])
+			return;
+		List<Node> nodes = clusterNodes.get(cluster);
+		for (Node node : nodes)
+		{
+			node.edgeTargets.clear();
+			int[] costs = new int[nodes.size()];
+			int   count = 0;
+			searchCluster(cluster, node.x, node.y);
+			for (Node target : nodes)
+			{
+				if (target == node)
+					continue;
+				int cost = getLocalCost(cluster, target);
+				if (cost == Integer.MAX_VALUE)
+					continue;
+				node.edgeTargets.add(target);
+				costs[count++] = cost;
+			}
+			node.edgeCosts = Arrays.copyOf(costs, count);
+		}
+		edgesValid[cluster] = true;
+	}
+
+	/**
+	 * Distanzabschaetzung zwischen zwei Knoten.
+	 * Da nur horizontale und vertikale Schritte moeglich sind, entspricht die
+	 * gewichtete Manhattan-Distanz den Kosten auf einer freien Flaeche.
+	 */
+	private int estimate(Node node, Node goal)
+	{
+		return abs(goal.x - node.x) + abs(goal.y - node.y) * map.getHorizontalScale() / map.getVerticalScale();
+	}
+
+	/**
+	 * Sucht einen Pfad auf der gesamten Karte
+	 */
+	private Point[] findMapPath(Point from, Point to, BooleanSupplier cancelled)
+	{
+		return map.findPath(from, to, actorWidth, actorHeight, Integer.MAX_VALUE, Integer.MAX_VALUE, cancelled)
+		          .getPath();
+	}
+
+	/**
+	 * Gibt die Kosten zum gegebenen Knoten aus der letzten Suche innerhalb des Clusters zurueck
+	 */
+	private int getLocalCost(int cluster, Node node)
+	{
+		int left = (cluster % clustersX) * clusterWidth;
+		int top  = (cluster / clustersX) * clusterHeight;
+		return localCost[(node.y - top) * clusterWidth + node.x - left];
+	}
+
+	/**
+	 * Gibt an, ob sich ein Aktor mit seinem Mittelpunkt am gegebenen Punkt befinden kann
+	 */
+	private boolean isPassable(int x, int y)
+	{
+		return map.fits(x - actorWidth / 2, y - actorHeight / 2, actorWidth, actorHeight);
+	}
+
+	/**
+	 * Baut die Uebergaenge veralteter Cluster neu auf.
+	 * Die Strecken innerhalb der veralteten Cluster und ihrer Nachbarn werden
+	 * bei Bedarf neu berechnet.
+	 */
+	private void rebuildDirtyClusters()
+	{
+		for (int cluster = 0; cluster < dirty.length; cluster++)
+		{
+			if (!dirty[cluster])
+				continue;
+			dirty[cluster] = false;
+			int cx = cluster % clustersX;
+			int cy = cluster / clustersX;
+			buildEastEntrances(cx, cy);
+			buildSouthEntrances(cx, cy);
+			if (cx > 0)
+				buildEastEntrances(cx - 1, cy);
+			if (cy > 0)
+				buildSouthEntrances(cx, cy - 1);
+			edgesValid[cluster] = false;
+		}
+	}
+
+	/**
+	 * Verfeinert den gefundenen abstrakten Pfad zu einem Pfad auf der Karte.
+	 * Abschnitte zwischen zwei Clustern bestehen aus einem einzelnen Schritt,
+	 * Abschnitte innerhalb eines Clusters werden durch eine auf den Cluster
+	 * begrenzte Suche bestimmt.
+	 * @param goal Zielknoten
+	 * @return Pfad ohne Startpunkt oder null, wenn ein Abschnitt innerhalb eines Clusters
+	 * nicht mehr begehbar ist
+	 */
+	private Point[] refinePath(Node goal)
+	{
+		List<Node> abstractPath = new ArrayList<>();
+		for (Node node = goal; node != null; node = node.searchParent)
+			abstractPath.add(0, node);
+
+		List<Point> path = new ArrayList<>();
+		for (int i = 1; i < abstractPath.size(); i++)
+		{
+			Node from = abstractPath.get(i - 1);
+			Node to   = abstractPath.get(i);
+			if (from.partner == to)
+			{
+				path.add(new Point(to.x, to.y));
+				continue;
+			}
+			int cluster = to.cluster;
+			int left    = (cluster % clustersX) * clusterWidth;
+			int top     = (cluster / clustersX) * clusterHeight;
+			searchCluster(cluster, from.x, from.y);
+			if (getLocalCost(cluster, to) == Integer.MAX_VALUE)
+				return null;
+
+			int         x       = to.x;
+			int         y       = to.y;
+			List<Point> segment = new ArrayList<>();
+			while (x != from.x || y != from.y)
+			{
+				segment.add(new Point(x, y));
+				int direction = localParent[(y - top) * clusterWidth + x - left];
+				x -= Map.DIRECTION_X[direction];
+				y -= Map.DIRECTION_Y[direction];
+			}
+			for (int j = segment.size() - 1; j >= 0; j--)
+				path.add(segment.get(j));
+		}
+		return path.toArray(new Point[path.size()]);
+	}
+
+	/**
+	 * Aktualisiert die Kosten eines Knotens der abstrakten Suche
+	 */
+	private void relax(PriorityQueue<SearchEntry> open, Node from, Node to, int cost, Node goal)
+	{
+		if (to.searchGeneration == searchGeneration && to.searchCost <= cost)
+			return;
+		to.searchGeneration = searchGeneration;
+		to.searchCost = cost;
+		to.searchParent = from;
+		open.add(new SearchEntry(to, cost, estimate(to, goal)));
+	}
+
+	/**
+	 * Berechnet die Kosten von einem Punkt zu allen Punkten innerhalb eines Clusters
+	 * (Dijkstra-Algorithmus). Die Suche verlaesst den Cluster nicht.
+	 * Die Ergebnisse werden in localCost und localParent gespeichert.
+	 * @param cluster Index des Clusters
+	 * @param fromX x-Koordinate des Ausgangspunktes
+	 * @param fromY y-Koordinate des Ausgangspunktes
+	 */
+	private void searchCluster(int cluster, int fromX, int fromY)
+	{
+		int left   = (cluster % clustersX) * clusterWidth;
+		int top    = (cluster / clustersX) * clusterHeight;
+		int width  = min(clusterWidth, map.getWidth() - left);
+		int height = min(clusterHeight, map.getHeight() - top);
+
+		int verticalStepCost = map.getHorizontalScale() / map.getVerticalScale();
+
+		/*
+		Die Begehbarkeit wird fuer aufeinanderfolgende Suchen im selben Cluster nur einmal bestimmt
+		 */
+		if (localPassableCluster != cluster)
+		{
+			for (int y = 0; y < height; y++)
+				for (int x = 0; x < width; x++)
+					localPassable[y * clusterWidth + x] = isPassable(x + left, y + top);
+			localPassableCluster = cluster;
+		}
+
+		Arrays.fill(localCost, Integer.MAX_VALUE);
+		localHeapSize = 0;
+
+		int startCell = (fromY - top) * clusterWidth + fromX - left;
+		localCost[startCell] = 0;
+		localParent[startCell] = Map.NO_DIRECTION;
+		pushLocal(startCell, 0);
+
+		while (localHeapSize > 0)
+		{
+			long entry = popLocal();
+			int  cell  = (int) entry;
+			if ((int) (entry >>> 32) > localCost[cell])
+				continue;
+			int x = cell % clusterWidth;
+			int y    = cell / clusterWidth;
+			for (int direction = 0; direction < 4; direction++)
+			{
+				int nx = x + Map.DIRECTION_X[direction];
+				int ny = y + Map.DIRECTION_Y[direction];
+				if (nx < 0 || ny < 0 || nx >= width || ny >= height)
+					continue;
+				int neighbour = ny * clusterWidth + nx;
+				int cost      = localCost[cell] + (ny == y ? 1 : verticalStepCost);
+				if (cost >= localCost[neighbour] || !localPassable[neighbour])
+					continue;
+				localCost[neighbour] = cost;
+				localParent[neighbour] = (byte) direction;
+				pushLocal(neighbour, cost);
+			}
+		}
+	}
+
+	/**
+	 * Entnimmt den Eintrag mit den geringsten Kosten aus dem Heap der lokalen Suche.
+	 * @return Kosten (hoeherwertige 32 Bit) und Index (niederwertige 32 Bit) des Punktes
+	 */
+	private long popLocal()
+	{
+		long best  = localHeap[0];
+		long last  = localHeap[--localHeapSize];
+		int  index = 0;
+		int  half  = localHeapSize >>> 1;
+		while (index < half)
+		{
+			int child = 2 * index + 1;
+			if (child + 1 < localHeapSize && localHeap[child + 1] < localHeap[child])
+				child++;
+			if (localHeap[child] >= last)
+				break;
+			localHeap[index] = localHeap[child];
+			index = child;
+		}
+		if (localHeapSize > 0)
+			localHeap[index] = last;
+		return best;
+	}
+
+	/**
+	 * Fuegt einen Eintrag zum Heap der lokalen Suche hinzu.
+	 * Bereits enthaltene Eintraege desselben Punktes werden nicht entfernt,
+	 * sondern beim Entnehmen uebersprungen.
+	 * @param cell Index des Punktes
+	 * @param cost Kosten des Punktes
+	 */
+	private void pushLocal(int cell, int cost)
+	{
+		if (localHeapSize == localHeap.length)
+			localHeap = Arrays.copyOf(localHeap, localHeapSize * 2);
+		long entry = ((long) cost << 32) | cell;
+		int  index = localHeapSize++;
+		while (index > 0)
+		{
+			int parent = (index - 1) >>> 1;
+			if (localHeap[parent] <= entry)
+				break;
+			localHeap[index] = localHeap[parent];
+			index = parent;
+		}
+		localHeap[index] = entry;
+	}
+}
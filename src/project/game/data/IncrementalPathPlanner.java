@@ -0,0 +1,595 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Inkrementelle Pfadsuche fuer einen einzelnen, verfolgenden Aktor
+ * (nach Moving Target D* Lite und Fringe-Retrieving A*).
+ * <br>
+ * Der Suchbaum einer A*-Suche vom Aktor zum Ziel bleibt zwischen zwei Anfragen erhalten.
+ * Da die Distanzabschaetzung konsistent ist, sind die Kosten geschlossener Punkte
+ * unabhaengig vom Ziel exakt. Bewegt sich das Ziel, werden daher nur die offenen Punkte
+ * neu bewertet und die Suche wird fortgesetzt. Liegt das neue Ziel bereits im Suchbaum,
+ * ist keine weitere Ueberpruefung notwendig.
+ * <br>
+ * Bewegt sich der Aktor auf einen geschlossenen Punkt, welcher auf dem Pfad von der Wurzel
+ * zum Ziel liegt, ist der Rest dieses Pfades bereits ein kuerzester Pfad. Andernfalls wird
+ * der Suchbaum an der Position des Aktors neu verwurzelt: Der Teilbaum unterhalb dieser
+ * Position bleibt mit verschobenen Kosten erhalten, alle anderen Punkte werden verworfen
+ * und die Grenzpunkte des Teilbaums erneut geoeffnet.
+ * <br>
+ * Die Suche ist auf ein Fenster um den Aktor begrenzt. Verlaesst der Aktor dieses Fenster,
+ * wird die Suche neu begonnen. Veraendert sich die Begehbarkeit eines Punktes der Karte,
+ * etwa durch Wasser, welches ein Angriff hinterlaesst, wird die Suche nur dann neu begonnen,
+ * wenn ein Punkt des Suchbaums unbegehbar oder ein Punkt des Fensters begehbar geworden ist.
+ */
+public class IncrementalPathPlanner
+{
+	/**
+	 * Markierung fuer geschlossene Punkte in parentDirection
+	 */
+	private static final byte CLOSED = 0x10;
+
+	/*
+	Zugehoerigkeit eines Punktes zum Teilbaum der neuen Wurzel.
+	PENDING markiert Punkte des Teilbaums, welche sich im Heap befinden.
+	 */
+	private static final byte INSIDE  = 1;
+	private static final byte OUTSIDE = 2;
+	private static final byte PENDING = 3;
+
+	private final int actorHeight;
+	private final int actorWidth;
+	private final Map map;
+	private final int verticalStepCost;
+
+	/**
+	 * Anzahl der bei der letzten Fortsetzung der Suche ueberprueften Punkte
+	 */
+	private int expansionCount;
+
+	/**
+	 * Anzahl der Begehbarkeitsaenderungen der Karte, welche bereits beruecksichtigt wurden
+	 */
+	private int changeCount;
+
+	private int goalX;
+	private int goalY;
+	private int rootCell;
+
+	/*
+	Fenster der Suche auf der Karte. Alle Punkte, welche hoechstens windowCost vom Aktor
+	entfernt sind, liegen innerhalb des Fensters, solange sich der Aktor nicht weiter als
+	windowCost von dessen Mittelpunkt entfernt.
+	 */
+	private int centerX;
+	private int centerY;
+	private int left;
+	private int top;
+	private int windowCost;
+	private int windowHeight;
+	private int windowWidth;
+
+	/*
+	Zustand der Punkte des Fensters. Ein Punkt ist nur gueltig, wenn sein Stempel
+	der aktuellen Generation entspricht.
+	 */
+	private int[]  cost;
+	private int    generation;
+	private byte[] parentDirection;
+	private int[]  stamp;
+
+	/*
+	Gueltige Punkte der aktuellen Generation
+	 */
+	private int[] visited;
+	private int   visitedCount;
+
+	/*
+	Hilfsfelder zur Bestimmung des Teilbaums der neuen Wurzel
+	 */
+	private int[]  chain;
+	private byte[] membership;
+
+	/*
+	Offene Punkte, geordnet nach geschaetzten Gesamtkosten
+	 */
+	private final IndexedHeap heap;
+
+	/**
+	 * Erstellt eine neue inkrementelle Pfadsuche fuer einen Aktor der gegebenen Groesse
+	 * @param map Karte
+	 * @param actorWidth Breite des Aktors
+	 * @param actorHeight Hoehe des Aktors
+	 */
+	public IncrementalPathPlanner(final Map map, final int actorWidth, final int actorHeight)
+	{
+		this.map = map;
+		this.actorWidth = max(actorWidth, 1);
+		this.actorHeight = max(actorHeight, 1);
+		verticalStepCost = map.getHorizontalScale() / map.getVerticalScale();
+		rootCell = -1;
+		cost = new int[0];
+		parentDirection = new byte[0];
+		stamp = new int[0];
+		heap = new IndexedHeap();
+	}
+
+	/**
+	 * Sucht den Pfad vom gegebenen Start- zum gegebenen Zielpunkt und verwendet dabei
+	 * den Suchbaum der vorhergehenden Anfrage weiter.
+	 * Wird die maximale Anzahl ueberpruefter Punkte ueberschritten, bleibt der Suchbaum
+	 * erhalten, sodass die Suche bei der naechsten Anfrage fortgesetzt wird.
+	 * @param fromPoint Ausgangspunkt
+	 * @param toPoint Zielpunkt
+	 * @param maxExpansions maximale Anzahl in dieser Anfrage ueberpruefter Punkte
+	 * @param maxCost maximale Kosten des Pfades
+	 * @return Ergebnis mit dem Pfad ohne den Ausgangspunkt oder dem Grund,
+	 * aus welchem kein Pfad gefunden wurde
+	 */
+	public PathResult findPath(Point fromPoint, Point toPoint, int maxExpansions, int maxCost)
+	{
+		return findPath(fromPoint, toPoint, maxExpansions, maxCost, null);
+	}
+
+	/**
+	 * Sucht wie findPath(Point, Point, int, int) einen Pfad, prueft jedoch vor jedem
+	 * ueberprueften Punkt, ob die Suche abgebrochen wurde. Wie bei einer Ueberschreitung
+	 * der maximalen Anzahl ueberpruefter Punkte bleibt der Suchbaum erhalten.
+	 * @param cancelled Abbruchbedingung oder null
+	 * @return Ergebnis mit dem Pfad ohne den Ausgangspunkt oder dem Grund,
+	 * aus welchem kein Pfad gefunden wurde
+	 * @see #findPath(Point, Point, int, int)
+	 */
+	synchronized PathResult findPath(Point fromPoint, Point toPoint, int maxExpansions, int maxCost,
+	                                 BooleanSupplier cancelled)
+	{
+		if (!map.isReachable(fromPoint, toPoint, actorWidth, actorHeight))
+			return new PathResult(PathResult.Status.NOT_FOUND, null, 0);
+		if (distance(fromPoint.x, fromPoint.y, toPoint.x, toPoint.y) > maxCost)
+			return new PathResult(PathResult.Status.COST_EXCEEDED, null, 0);
+
+		boolean goalChanged = toPoint.x != goalX || toPoint.y != goalY;
+		goalX = toPoint.x;
+		goalY = toPoint.y;
+
+		if (rootCell < 0 || mapDidChange() || maxCost > windowCost ||
+		    abs(fromPoint.x - centerX) > windowCost || abs(fromPoint.y - centerY) * verticalStepCost > windowCost)
+			reset(fromPoint, max(maxCost, windowCost));
+		else if (goalChanged)
+			updateKeys();
+
+		int startCell = cell(fromPoint.x, fromPoint.y);
+		if (startCell != rootCell && (!isVisited(startCell) || !isClosed(startCell)))
+		{
+			reset(fromPoint, windowCost);
+			startCell = rootCell;
+		}
+
+		/*
+		Der Suchbaum wird erst neu verwurzelt, wenn der Pfad von der Wurzel zum Ziel
+		nicht ueber den Startpunkt verlaeuft.
+		 */
+		PathResult result = search(startCell, maxExpansions, maxCost, cancelled);
+		if (result != null)
+			return result;
+		int expansions = expansionCount;
+		reroot(startCell);
+		result = search(startCell, maxExpansions - expansions, maxCost, cancelled);
+		return new PathResult(result.getStatus(), result.getPath(), expansions + result.getExpansionCount());
+	}
+
+	int getActorHeight()
+	{
+		return actorHeight;
+	}
+
+	int getActorWidth()
+	{
+		return actorWidth;
+	}
+
+	Map getMap()
+	{
+		return map;
+	}
+
+	/**
+	 * Bestimmt den Pfad vom Start- zum Zielpunkt aus den Vorgaengerrichtungen
+	 * @return Pfad ohne den Startpunkt oder null, wenn der Pfad von der Wurzel zum Ziel
+	 * nicht ueber den Startpunkt verlaeuft
+	 */
+	private Point[] buildPath(int startCell, int goalCell)
+	{
+		if (goalCell == startCell)
+			return new Point[]{ new Point(goalX, goalY) };
+
+		int length = 0;
+		int cell   = goalCell;
+		while (cell != startCell)
+		{
+			if (cell == rootCell)
+				return null;
+			cell = parent(cell);
+			length++;
+		}
+
+		Point[] path = new Point[length];
+		cell = goalCell;
+		for (int i = length - 1; i >= 0; i--)
+		{
+			path[i] = new Point(left + cell % windowWidth, top + cell / windowWidth);
+			cell = parent(cell);
+		}
+		return path;
+	}
+
+	/**
+	 * Gibt den Index des Punktes im Fenster zurueck
+	 */
+	private int cell(int x, int y)
+	{
+		return (y - top) * windowWidth + x - left;
+	}
+
+	/**
+	 * Entfernt den offenen Punkt mit den geringsten geschaetzten Gesamtkosten
+	 * und markiert diesen als geschlossen.
+	 */
+	private int closeBest()
+	{
+		int best = heap.poll();
+		parentDirection[best] |= CLOSED;
+		return best;
+	}
+
+	/**
+	 * Konsistente Distanzabschaetzung (gewichtete Manhattan-Distanz)
+	 */
+	private int distance(int x1, int y1, int x2, int y2)
+	{
+		return abs(x1 - x2) + abs(y1 - y2) * verticalStepCost;
+	}
+
+	/**
+	 * Gibt an, ob sich der Aktor mit seinem Mittelpunkt am gegebenen Punkt
+	 * innerhalb des Fensters befinden kann
+	 */
+	private boolean isPassable(int x, int y)
+	{
+		return x >= left && y >= top && x < left + windowWidth && y < top + windowHeight &&
+		       map.fits(x - actorWidth / 2, y - actorHeight / 2, actorWidth, actorHeight);
+	}
+
+	private boolean isClosed(int cell)
+	{
+		return (parentDirection[cell] & CLOSED) != 0;
+	}
+
+	private boolean isVisited(int cell)
+	{
+		return stamp[cell] == generation;
+	}
+
+	/**
+	 * Ueberprueft, ob eine Begehbarkeitsaenderung der Karte seit der letzten Anfrage
+	 * den Suchbaum betrifft. Ein unbegehbar gewordener Punkt betrifft den Suchbaum, wenn
+	 * ein besuchter Punkt den Aktor mit diesem ueberlappen wuerde, ein begehbar gewordener
+	 * Punkt, wenn der Aktor dadurch an einem Punkt des Fensters Platz findet.
+	 * @return true, wenn die Suche neu begonnen werden muss
+	 */
+	private boolean mapDidChange()
+	{
+		int[] changes = map.getPassabilityChanges(changeCount);
+		if (changes == null)
+			return true;
+		changeCount += changes.length;
+		for (int change : changes)
+		{
+			int x = change % map.getWidth();
+			int y = change / map.getWidth();
+
+			/*
+			Mittelpunkte, an welchen der Aktor den veraenderten Punkt ueberlappt
+			 */
+			int fromX = max(x - actorWidth + 1 + actorWidth / 2, left);
+			int toX   = min(x + actorWidth / 2, left + windowWidth - 1);
+			int fromY = max(y - actorHeight + 1 + actorHeight / 2, top);
+			int toY   = min(y + actorHeight / 2, top + windowHeight - 1);
+
+			boolean passable = map.getPointUnchecked(x, y) == Map.EMPTY;
+			for (int centerY = fromY; centerY <= toY; centerY++)
+				for (int centerX = fromX; centerX <= toX; centerX++)
+					if (passable ? isPassable(centerX, centerY) : isVisited(cell(centerX, centerY)))
+						return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Fuegt einen Punkt zu den offenen Punkten hinzu
+	 */
+	private void open(int cell, int cost, int direction)
+	{
+		if (stamp[cell] != generation)
+		{
+			stamp[cell] = generation;
+			visited[visitedCount++] = cell;
+		}
+		this.cost[cell] = cost;
+		parentDirection[cell] = (byte) direction;
+		int distance = distance(left + cell % windowWidth, top + cell / windowWidth, goalX, goalY);
+		heap.add(cell, cost + distance, distance);
+	}
+
+	/**
+	 * Gibt den Vorgaenger eines Punktes im Suchbaum zurueck
+	 */
+	private int parent(int cell)
+	{
+		int direction = parentDirection[cell] & ~CLOSED;
+		return cell - Map.DIRECTION_Y[direction] * windowWidth - Map.DIRECTION_X[direction];
+	}
+
+	/**
+	 * Haengt einen Punkt ohne Wiederherstellung der Heap-Eigenschaft an den Heap an
+	 */
+	private void push(int cell)
+	{
+		int distance = distance(left + cell % windowWidth, top + cell / windowWidth, goalX, goalY);
+		heap.append(cell, cost[cell] + distance, distance);
+	}
+
+	/**
+	 * Verwurzelt den Suchbaum am gegebenen Punkt neu.
+	 * Die Kosten aller Punkte im Teilbaum der neuen Wurzel verringern sich um deren Kosten,
+	 * da ihr kuerzester Pfad bereits ueber die neue Wurzel verlaeuft. Alle anderen Punkte
+	 * werden verworfen. Geschlossene Punkte, welche an verworfene Punkte grenzen, werden
+	 * erneut geoeffnet.
+	 * @param newRoot Index der neuen, geschlossenen Wurzel
+	 */
+	private void reroot(int newRoot)
+	{
+		/*
+		Bestimme fuer jeden Punkt, ob die neue Wurzel auf dem Pfad zur alten Wurzel liegt
+		 */
+		membership[newRoot] = INSIDE;
+		for (int i = 0; i < visitedCount; i++)
+		{
+			int cell   = visited[i];
+			int length = 0;
+			while (membership[cell] == 0 && (parentDirection[cell] & ~CLOSED) != Map.NO_DIRECTION)
+			{
+				chain[length++] = cell;
+				cell = parent(cell);
+			}
+			byte result = membership[cell] == 0 ? OUTSIDE : membership[cell];
+			for (int j = 0; j < length; j++)
+				membership[chain[j]] = result;
+			membership[cell] = result;
+		}
+
+		/*
+		Punkte des Teilbaums, welche noch offen sind oder noch nicht erneut ueberprueft
+		wurden, muessen offen bleiben
+		 */
+		for (int index = 0; index < heap.size(); index++)
+			if (membership[heap.getCellAt(index)] == INSIDE)
+				membership[heap.getCellAt(index)] = PENDING;
+
+		/*
+		Uebernehme den Teilbaum in eine neue Generation
+		 */
+		int rootCost = cost[newRoot];
+		nextGeneration();
+		int keptCount = 0;
+		for (int i = 0; i < visitedCount; i++)
+		{
+			int cell = visited[i];
+			if (membership[cell] != OUTSIDE)
+			{
+				stamp[cell] = generation;
+				cost[cell] -= rootCost;
+				visited[keptCount++] = cell;
+			}
+			else
+				membership[cell] = 0;
+		}
+		visitedCount = keptCount;
+		rootCell = newRoot;
+		parentDirection[newRoot] = Map.NO_DIRECTION | CLOSED;
+
+		/*
+		Bestimme die neuen offenen Punkte. Erneut geoeffnete Punkte bleiben als geschlossen
+		markiert, da ihre Kosten bereits exakt sind.
+		 */
+		heap.clear();
+		for (int i = 0; i < visitedCount; i++)
+		{
+			int cell = visited[i];
+			if (membership[cell] == PENDING || !isClosed(cell) || bordersDiscardedPoint(cell))
+				push(cell);
+			membership[cell] = 0;
+		}
+		heap.heapify();
+	}
+
+	/**
+	 * Gibt an, ob ein begehbarer Nachbar des Punktes nicht Teil der aktuellen Generation ist
+	 */
+	private boolean bordersDiscardedPoint(int cell)
+	{
+		int x = left + cell % windowWidth;
+		int y = top + cell / windowWidth;
+		for (int direction = 0; direction < 4; direction++)
+		{
+			int nx = x + Map.DIRECTION_X[direction];
+			int ny = y + Map.DIRECTION_Y[direction];
+			if (!isPassable(nx, ny))
+				continue;
+			if (!isVisited(cell(nx, ny)))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Beginnt eine neue Suche mit einem Fenster um den gegebenen Punkt
+	 * @param root Position des Aktors
+	 * @param maxCost maximale Kosten, fuer welche das Fenster ausgelegt wird
+	 */
+	private void reset(Point root, int maxCost)
+	{
+		int horizontalRange = (int) min(2L * maxCost, map.getWidth());
+		int verticalRange   = (int) min(2L * maxCost / verticalStepCost, map.getHeight());
+
+		windowCost = maxCost;
+		changeCount = map.getPassabilityChangeCount();
+		centerX = root.x;
+		centerY = root.y;
+		left = max(root.x - horizontalRange, 0);
+		top = max(root.y - verticalRange, 0);
+		windowWidth = min(root.x + horizontalRange, map.getWidth() - 1) - left + 1;
+		windowHeight = min(root.y + verticalRange, map.getHeight() - 1) - top + 1;
+
+		int cellCount = windowWidth * windowHeight;
+		if (stamp.length < cellCount)
+		{
+			cost = new int[cellCount];
+			parentDirection = new byte[cellCount];
+			stamp = new int[cellCount];
+			visited = new int[cellCount];
+			chain = new int[cellCount];
+			membership = new byte[cellCount];
+			generation = 0;
+		}
+		nextGeneration();
+		visitedCount = 0;
+		heap.clear();
+		rootCell = cell(root.x, root.y);
+		open(rootCell, 0, Map.NO_DIRECTION);
+	}
+
+	/**
+	 * Setzt die A*-Suche fort, bis das Ziel geschlossen wurde.
+	 * Da die Kosten im Suchbaum von der Wurzel aus gemessen werden, erhoehen sich die maximalen
+	 * Kosten um die Kosten des Startpunktes. Existiert ein Pfad vom Startpunkt zum Ziel mit
+	 * hoechstens maxCost, existiert auch ein Pfad von der Wurzel mit hoechstens diesen Kosten.
+	 * @return Ergebnis der Suche oder null, wenn das Ziel erreicht wurde, der Pfad von der
+	 * Wurzel jedoch nicht ueber den Startpunkt verlaeuft
+	 */
+	private PathResult search(int startCell, int maxExpansions, int maxCost, BooleanSupplier cancelled)
+	{
+		int goalCell = cell(goalX, goalY);
+		long costBound = (long) maxCost + cost[startCell];
+		expansionCount = 0;
+		while (!isVisited(goalCell) || !isClosed(goalCell))
+		{
+			if (heap.isEmpty())
+				return new PathResult(PathResult.Status.NOT_FOUND, null, expansionCount);
+
+			/*
+			Der beste offene Punkt bleibt bei einem Abbruch offen,
+			damit die Suche spaeter fortgesetzt werden kann.
+			 */
+			if (heap.peekKey() > costBound)
+				return new PathResult(PathResult.Status.COST_EXCEEDED, null, expansionCount);
+			if (expansionCount >= maxExpansions)
+				return new PathResult(PathResult.Status.BUDGET_EXCEEDED, null, expansionCount);
+			if (cancelled != null && cancelled.getAsBoolean())
+				return new PathResult(PathResult.Status.CANCELLED, null, expansionCount);
+			expansionCount++;
+
+			int current     = closeBest();
+			int x           = left + current % windowWidth;
+			int y           = top + current / windowWidth;
+			int currentCost = cost[current];
+
+			for (int direction = 0; direction < 4; direction++)
+			{
+				int dx = Map.DIRECTION_X[direction];
+				int dy = Map.DIRECTION_Y[direction];
+				if (!isPassable(x + dx, y + dy))
+					continue;
+
+				int neighbour = current + dy * windowWidth + dx;
+				int stepCost  = currentCost + (dy == 0 ? 1 : verticalStepCost);
+
+				/*
+				Geschlossene Punkte besitzen bereits ihre exakten Kosten
+				 */
+				if (isVisited(neighbour))
+				{
+					if (isClosed(neighbour) || stepCost >= cost[neighbour])
+						continue;
+					cost[neighbour] = stepCost;
+					parentDirection[neighbour] = (byte) direction;
+					heap.decreaseKey(neighbour, stepCost + heap.getDistance(neighbour));
+				}
+				else
+					open(neighbour, stepCost, direction);
+			}
+		}
+		Point[] path = buildPath(startCell, goalCell);
+		return path == null ? null : new PathResult(PathResult.Status.FOUND, path, expansionCount);
+	}
+
+	/**
+	 * Bewertet alle offenen Punkte nach einer Bewegung des Ziels neu
+	 */
+	private void updateKeys()
+	{
+		for (int index = 0; index < heap.size(); index++)
+		{
+			int cell     = heap.getCellAt(index);
+			int distance = distance(left + cell % windowWidth, top + cell / windowWidth, goalX, goalY);
+			heap.setAt(index, cost[cell] + distance, distance);
+		}
+		heap.heapify();
+	}
+
+	/**
+	 * Beginnt eine neue Generation, sodass alle Punkte als nicht besucht gelten
+	 */
+	private void nextGeneration()
+	{
+		if (generation == Integer.MAX_VALUE)
+		{
+			Arrays.fill(stamp, 0);
+			generation = 0;
+		}
+		generation++;
+	}
+}
@@ -0,0 +1,338 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+
+/**
+ * Binaerer Min-Heap von Punktindizes fuer die Pfadsuchen der Karte.
+ * <br>
+ * Eintraege werden nach geschaetzten Gesamtkosten geordnet, bei gleichen Gesamtkosten wird
+ * der Eintrag mit den geringeren geschaetzten Restkosten bevorzugt. Die Position jedes
+ * Punktes im Heap wird in Seiten zu je PAGE_SIZE Punkten gespeichert, sodass die Kosten
+ * eines offenen Punktes in O(log n) verringert werden koennen. Eine Seite wird erst angelegt,
+ * wenn einer ihrer Punkte hinzugefuegt wird.
+ * <br>
+ * Die Position eines Punktes ist nur gueltig, solange sich dieser im Heap befindet.
+ * Ob dies der Fall ist, muss der Verwender selbst verwalten.
+ */
+final class IndexedHeap
+{
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Anzahl der Punkte einer Seite als Zweierpotenz
+	 */
+	private static final int PAGE_SHIFT = 8;
+	private static final int PAGE_MASK  = (1 << PAGE_SHIFT) - 1;
+	private static final int PAGE_SIZE  = 1 << PAGE_SHIFT;
+
+	/**
+	 * Anzahl angelegter Seiten
+	 */
+	private int     allocatedPages;
+
+	/**
+	 * Punktindizes der Eintraege
+	 */
+	private int[]   cells;
+
+	/**
+	 * Geschaetzte Restkosten der Eintraege
+	 */
+	private int[]   distances;
+
+	/**
+	 * Geschaetzte Gesamtkosten der Eintraege
+	 */
+	private int[]   keys;
+
+	/**
+	 * Position eines Punktes im Heap
+	 */
+	private int[][] positions;
+
+	/**
+	 * Anzahl der Eintraege
+	 */
+	private int     size;
+
+	IndexedHeap()
+	{
+		cells = new int[INITIAL_CAPACITY];
+		keys = new int[INITIAL_CAPACITY];
+		distances = new int[INITIAL_CAPACITY];
+		positions = new int[0][];
+	}
+
+	/**
+	 * Fuegt einen Punkt hinzu
+	 * @param cell Index des Punktes
+	 * @param key geschaetzte Gesamtkosten
+	 * @param distance geschaetzte Restkosten
+	 */
+	void add(int cell, int key, int distance)
+	{
+		append(cell, key, distance);
+		siftUp(size - 1);
+	}
+
+	/**
+	 * Haengt einen Punkt ohne Wiederherstellung der Heap-Eigenschaft an.
+	 * Nach dem Anhaengen mehrerer Punkte muss heapify aufgerufen werden.
+	 * @param cell Index des Punktes
+	 * @param key geschaetzte Gesamtkosten
+	 * @param distance geschaetzte Restkosten
+	 */
+	void append(int cell, int key, int distance)
+	{
+		if (size == cells.length)
+		{
+			cells = Arrays.copyOf(cells, size * 2);
+			keys = Arrays.copyOf(keys, size * 2);
+			distances = Arrays.copyOf(distances, size * 2);
+		}
+		int page = cell >>> PAGE_SHIFT;
+		if (page >= positions.length)
+			positions = Arrays.copyOf(positions, max(page + 1, positions.length * 2));
+		if (positions[page] == null)
+		{
+			positions[page] = new int[PAGE_SIZE];
+			allocatedPages++;
+		}
+		int index = size++;
+		cells[index] = cell;
+		keys[index] = key;
+		distances[index] = distance;
+		positions[page][cell & PAGE_MASK] = index;
+	}
+
+	/**
+	 * Entfernt alle Eintraege
+	 */
+	void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	 * Verringert die geschaetzten Gesamtkosten eines Punktes im Heap
+	 * @param cell Index des Punktes
+	 * @param key neue geschaetzte Gesamtkosten
+	 */
+	void decreaseKey(int cell, int key)
+	{
+		int index = positions[cell >>> PAGE_SHIFT][cell & PAGE_MASK];
+		keys[index] = key;
+		siftUp(index);
+	}
+
+	/**
+	 * Gibt die geschaetzten Restkosten eines Punktes im Heap zurueck
+	 * @param cell Index des Punktes
+	 * @return geschaetzte Restkosten
+	 */
+	int getDistance(int cell)
+	{
+		return distances[positions[cell >>> PAGE_SHIFT][cell & PAGE_MASK]];
+	}
+
+	/**
+	 * Gibt die geschaetzten Gesamtkosten eines Punktes im Heap zurueck
+	 * @param cell Index des Punktes
+	 * @return geschaetzte Gesamtkosten
+	 */
+	int getKey(int cell)
+	{
+		return keys[positions[cell >>> PAGE_SHIFT][cell & PAGE_MASK]];
+	}
+
+	/**
+	 * Gibt den Punkt an der gegebenen Position im Heap zurueck.
+	 * Die Reihenfolge der Positionen entspricht nicht der Reihenfolge der Entnahme.
+	 * @param index Position im Heap
+	 * @return Index des Punktes
+	 */
+	int getCellAt(int index)
+	{
+		return cells[index];
+	}
+
+	/**
+	 * Stellt die Heap-Eigenschaft fuer alle Eintraege wieder her
+	 */
+	void heapify()
+	{
+		for (int index = (size >>> 1) - 1; index >= 0; index--)
+			siftDown(index);
+	}
+
+	boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Gibt die geschaetzten Gesamtkosten des besten Eintrags zurueck
+	 * @return geringste geschaetzte Gesamtkosten
+	 */
+	int peekKey()
+	{
+		return keys[0];
+	}
+
+	/**
+	 * Entfernt den Eintrag mit den geringsten geschaetzten Gesamtkosten
+	 * @return Index des entfernten Punktes
+	 */
+	int poll()
+	{
+		int best = cells[0];
+		size--;
+		if (size > 0)
+		{
+			move(size, 0);
+			siftDown(0);
+		}
+		return best;
+	}
+
+	/**
+	 * Setzt die Schaetzungen des Eintrags an der gegebenen Position ohne Wiederherstellung
+	 * der Heap-Eigenschaft. Nach dem Setzen muss heapify aufgerufen werden.
+	 * @param index Position im Heap
+	 * @param key geschaetzte Gesamtkosten
+	 * @param distance geschaetzte Restkosten
+	 */
+	void setAt(int index, int key, int distance)
+	{
+		keys[index] = key;
+		distances[index] = distance;
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Begrenzt die Seiten und Felder auf die gegebene Anzahl an Seiten.
+	 * Ueberzaehlige Seiten werden freigegeben, vergroesserte Felder auf die Groesse
+	 * der Grenze verkleinert. Der Heap muss dabei leer sein.
+	 * @param maxRetainedPages Anzahl der Seiten, welche hoechstens behalten werden
+	 */
+	void trim(int maxRetainedPages)
+	{
+		size = 0;
+		if (allocatedPages > maxRetainedPages)
+		{
+			int retained = 0;
+			for (int page = 0; page < positions.length; page++)
+			{
+				if (positions[page] == null)
+					continue;
+				if (retained < maxRetainedPages)
+					retained++;
+				else
+					positions[page] = null;
+			}
+			allocatedPages = retained;
+		}
+		int capacity = max(INITIAL_CAPACITY, maxRetainedPages << PAGE_SHIFT);
+		if (cells.length > capacity)
+		{
+			cells = Arrays.copyOf(cells, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+			distances = Arrays.copyOf(distances, capacity);
+		}
+	}
+
+	/**
+	 * Vergleicht zwei Eintraege
+	 * @return true, wenn der erste Eintrag vor dem zweiten entnommen werden soll
+	 */
+	private boolean less(int index1, int index2)
+	{
+		return keys[index1] < keys[index2] ||
+		       keys[index1] == keys[index2] && distances[index1] < distances[index2];
+	}
+
+	/**
+	 * Verschiebt einen Eintrag
+	 * @param from alte Position
+	 * @param to neue Position
+	 */
+	private void move(int from, int to)
+	{
+		int cell = cells[from];
+		cells[to] = cell;
+		keys[to] = keys[from];
+		distances[to] = distances[from];
+		positions[cell >>> PAGE_SHIFT][cell & PAGE_MASK] = to;
+	}
+
+	private void siftDown(int index)
+	{
+		int half = size >>> 1;
+		while (index < half)
+		{
+			int child = 2 * index + 1;
+			if (child + 1 < size && less(child + 1, child))
+				child++;
+			if (!less(child, index))
+				break;
+			swap(index, child);
+			index = child;
+		}
+	}
+
+	private void siftUp(int index)
+	{
+		while (index > 0)
+		{
+			int parent = (index - 1) >>> 1;
+			if (!less(index, parent))
+				break;
+			swap(index, parent);
+			index = parent;
+		}
+	}
+
+	private void swap(int index1, int index2)
+	{
+		int cell     = cells[index1];
+		int key      = keys[index1];
+		int distance = distances[index1];
+		move(index2, index1);
+		cells[index2] = cell;
+		keys[index2] = key;
+		distances[index2] = distance;
+		positions[cell >>> PAGE_SHIFT][cell & PAGE_MASK] = index2;
+	}
+}
@@ -28,9 +28,13 @@ package project.game.data;
 import java.awt.Rectangle;
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.util.Arrays;
-import java.util.Properties;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
 
 /**
  * Klasse zur Verwaltung des Datenmodells eines Levels
@@ -51,10 +55,16 @@ public class Level implements Serializable
 
 	private transient Rectangle[] exitBounds;
 
+	private ExploredArea exploredArea;
+
 	private Key[]   keys;
 
+	private transient LevelLoadingDelegate loadingDelegate;
+
 	private transient Map     map;
 
+	private transient PerceptionService perception;
+
 	private Player  player;
 
 	/**
@@ -80,10 +90,30 @@ public class Level implements Serializable
 	 * @throws IOException wenn die Quelldatei nicht vorhanden oder lesbar ist.
 	 */
 	public Level(final URL url, final String staticEnemySource, final String dynamicEnemySource) throws IOException
+	{
+		this(url, staticEnemySource, dynamicEnemySource, null);
+	}
+
+	/**
+	 * Erstellt ein neues Level mit der Karten-Properties-File an gegebener URL
+	 * und teilt den Fortschritt des Ladens dem gegebenen Delegate mit.
+	 * @param url Pfad zur Quelldatei
+	 * @param staticEnemySource Quelldatei fuer statische Gegner
+	 * @param dynamicEnemySource Quelldatei fuer dynamische Gegner
+	 * @param loadingDelegate Delegate fuer den Ladefortschritt oder null
+	 * @throws IOException wenn die Quelldatei nicht vorhanden oder lesbar ist.
+	 * @see #Level(URL, String, String)
+	 */
+	public Level(
+			final URL url,
+			final String staticEnemySource,
+			final String dynamicEnemySource,
+			final LevelLoadingDelegate loadingDelegate) throws IOException
 	{
 		source = url;
 		this.staticEnemySource = staticEnemySource;
 		this.dynamicEnemySource = dynamicEnemySource;
+		this.loadingDelegate = loadingDelegate;
 		load();
 	}
 
@@ -199,6 +229,29 @@ public class Level implements Serializable
 		return map;
 	}
 
+	/**
+	 * Gibt die vom Spieler bereits gesehenen Punkte der Karte zurueck.
+	 * Der erkundete Bereich wird mit dem Level gesichert.
+	 * @return erkundeter Bereich
+	 */
+	public ExploredArea getExploredArea()
+	{
+		if (exploredArea == null)
+			exploredArea = new ExploredArea(getMap().getWidth(), getMap().getHeight());
+		return exploredArea;
+	}
+
+	/**
+	 * Gibt den Dienst zur Wahrnehmung des Spielers zurueck.
+	 * @return Wahrnehmungsdienst des Levels
+	 */
+	public PerceptionService getPerception()
+	{
+		if (perception == null)
+			perception = new PerceptionService(this);
+		return perception;
+	}
+
 	/**
 	 * Gibt den Wert eines Punktes des Levels an.
 	 * Moegliche Werte:
@@ -253,51 +306,138 @@ public class Level implements Serializable
 		return getMap().getWidth();
 	}
 
+	/**
+	 * Setzt den Delegate, welcher ueber den Fortschritt des Ladens informiert wird.
+	 * Dieser wird beim erneuten Laden nach der Wiederherstellung eines gesicherten Levels verwendet.
+	 * @param loadingDelegate Delegate fuer den Ladefortschritt
+	 */
+	public void setLoadingDelegate(final LevelLoadingDelegate loadingDelegate)
+	{
+		this.loadingDelegate = loadingDelegate;
+	}
+
+	/**
+	 * Erstellt Objekte eines Typs parallel an den gegebenen Positionen
+	 * @param bounds Begrenzungen der Objekte
+	 * @param factory Erzeugung eines Objekts
+	 * @param array Erzeugung des Ergebnisfeldes
+	 * @return Objekte in der Reihenfolge der Begrenzungen
+	 * @throws IOException wenn ein Objekt nicht erstellt werden konnte
+	 */
+	private static <T extends MapObject> T[] createObjects(
+			Rectangle[] bounds,
+			ObjectFactory<T> factory,
+			IntFunction<T[]> array) throws IOException
+	{
+		try
+		{
+			return Arrays.stream(bounds).parallel().map(objectBounds -> {
+				try
+				{
+					T object = factory.create();
+					object.setLocation(objectBounds.getLocation());
+					return object;
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}).toArray(array);
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Wartet auf das Ergebnis eines Abschnitts des Ladevorgangs
+	 * @param task Abschnitt des Ladevorgangs
+	 * @return Ergebnis des Abschnitts
+	 * @throws IOException wenn der Abschnitt nicht abgeschlossen werden konnte
+	 */
+	private static <T> T join(ForkJoinTask<T> task) throws IOException
+	{
+		try
+		{
+			return task.join();
+		}
+		catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+	}
+
 	/**
 	 * Laed das Level aus der zur Initialisierung mitgeteilten Quellurl,
 	 * skaliert dieses hoch und initialisiert saemtliche Objekte, welche sich auf der
 	 * Karte befinden.
+	 * <br>
+	 * Die Abschnitte des Ladevorgangs werden, soweit sie voneinander unabhaengig sind,
+	 * parallel im gemeinsamen ForkJoinPool ausgefuehrt.
 	 * @throws IOException Wenn die Quelldatei nicht geladen werden konnte.
 	 */
 	private void load() throws IOException
 	{
 		if (source == null)
 			throw new NullPointerException("No Source Specified.");
-		Properties properties = new Properties();
-		properties.load(source.openStream());
-
 		/*
-		Skalierung des Levels: x-Skalierung: 8x,
-		y-Skalierung: 4x, da Zeichen im Terminal ca. doppelt so hoch, wie breit sind.
+		Das kompilierte Level wird bevorzugt, die Properties-File wird nur gelesen,
+		falls kein aktuelles kompiliertes Level vorhanden ist.
 		 */
+		CompiledLevel level = CompiledLevel.load(source);
+		reportProgress(0.2);
 
-		int hScale = Integer.parseInt(properties.getProperty("HorizontalScaling", "8"));
-		int vScale = Integer.parseInt(properties.getProperty("VerticalScaling", "4"));
-
-		int width  = Integer.parseInt(properties.getProperty("Width")) * hScale;
-		int height = Integer.parseInt(properties.getProperty("Height")) * vScale;
-
-		int[][] points = new int[width][height];
-
-		for (int y = 0; y < height; y++)
-			for (int x = 0; x < width; x++)
-			{
-				String value = properties.getProperty(x / 8 + "," + y / 4);
-				if (value == null)
-					points[x][y] = 0;
-				else
-					points[x][y] = Integer.parseInt(value) + 1;
-			}
+		/*
+		Erstelle eine neue Karte mit den eingelesenen Daten.
+		Objekte sind bereits entfernt, da diese nicht laenger benoetigt werden und beim Pathfinding und der
+		Sichtbarkeitsberechnung stoeren.
+		 */
+		ForkJoinTask<Map> mapTask = ForkJoinTask.adapt(level::createMap).fork();
 
 		/*
-		Erstelle eine neue Karte mit den eingelesenen Daten
+		Initialisiere Gegner und Schluessel, waehrend die Karte erstellt wird.
 		 */
-		this.map = new Map(points, 8, 4);
-		Rectangle start = map.getStart();
+		ForkJoinTask<Enemy[]> enemyTask = null;
+		if (enemies == null)
+		{
+			enemyTask = ForkJoinTask.adapt(() -> {
+				try
+				{
+					Enemy[] staticEnemies  = createObjects(
+							level.getStaticEnemies(), () -> Enemy.create(staticEnemySource), Enemy[]::new);
+					Enemy[] dynamicEnemies = createObjects(
+							level.getDynamicEnemies(), () -> Enemy.create(dynamicEnemySource), Enemy[]::new);
+					Enemy[] enemies = Arrays.copyOf(staticEnemies, staticEnemies.length + dynamicEnemies.length);
+					System.arraycopy(dynamicEnemies, 0, enemies, staticEnemies.length, dynamicEnemies.length);
+					return enemies;
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}).fork();
+		}
+
+		ForkJoinTask<Key[]> keyTask = null;
+		if (keys == null)
+		{
+			keyTask = ForkJoinTask.adapt(() -> {
+				try
+				{
+					return createObjects(level.getKeys(), Key::makeKey, Key[]::new);
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}).fork();
+		}
 
 		/*
 		Initialisiere Spieler
 		 */
+		Rectangle start = level.getStart();
 		if (player == null)
 		{
 			player = Player.makePlayer();
@@ -308,57 +448,60 @@ public class Level implements Serializable
 		}
 
 		/*
-		Initialisiere Gegner
+		Initialisiere wichtige Punkte auf der Karte
 		 */
-		if (enemies == null)
-		{
-			Rectangle[] staticEnemyBounds = map.getStaticEnemies();
-			Rectangle[] dynamicEnemyBounds = map.getDynamicEnemies();
-
-			enemies = new Enemy[staticEnemyBounds.length + dynamicEnemyBounds.length];
-
-			for (int i = 0, staticEnemyBoundsLength = staticEnemyBounds.length; i < staticEnemyBoundsLength; i++)
-			{
-				Rectangle enemyBounds = staticEnemyBounds[i];
-				Enemy     enemy       = Enemy.create(staticEnemySource);
-				enemy.setLocation(enemyBounds.getLocation());
-				enemies[i] = enemy;
-			}
+		entranceBounds = start;
+		exitBounds = level.getFinish();
 
-			for (int i = 0, dynamicEnemyBoundsLength = dynamicEnemyBounds.length; i < dynamicEnemyBoundsLength; i++)
-			{
-				Rectangle enemyBounds = dynamicEnemyBounds[i];
-				Enemy     enemy       = Enemy.create(dynamicEnemySource);
-				enemy.setLocation(enemyBounds.getLocation());
-				enemies[i + staticEnemyBounds.length] = enemy;
-			}
-		}
+		Map map = join(mapTask);
+		reportProgress(0.35);
+		if (enemyTask != null)
+			enemies = join(enemyTask);
+		if (keyTask != null)
+			keys = join(keyTask);
+		reportProgress(0.5);
 
 		/*
-		Initialisiere Schluessel.
+		Erstelle die Daten der Pfadsuche fuer alle Gegnergroessen,
+		sodass diese nicht waehrend der ersten Verfolgung erstellt werden muessen.
+		Die Daten verschiedener Groessen werden parallel erstellt.
 		 */
-		if (keys == null)
+		List<ForkJoinTask<?>> pathFindingTasks = Arrays.stream(enemies)
+				.map(enemy -> enemy.getBounds().getSize())
+				.distinct()
+				.map(size -> ForkJoinTask.adapt(() -> map.preparePathFinding(size.width, size.height)).fork())
+				.collect(Collectors.toList());
+		for (int i = 0; i < pathFindingTasks.size(); i++)
 		{
-			Rectangle[] keyBounds = map.getKeys();
-			keys = new Key[keyBounds.length];
-			for (int i = 0, keyBoundsLength = keyBounds.length; i < keyBoundsLength; i++)
-			{
-				Rectangle bounds = keyBounds[i];
-				Key       key    = Key.makeKey();
-				key.setLocation(bounds.getLocation());
-				keys[i] = key;
-			}
+			join(pathFindingTasks.get(i));
+			reportProgress(0.5 + 0.5 * (i + 1) / pathFindingTasks.size());
 		}
-		/*
-		Initialisiere wichtige Punkte auf der Karte
-		 */
-		entranceBounds = map.getStart();
-		exitBounds = map.getFinish();
 
-		/*
-		Entferne Objekte von der Karte, da diese nicht laenger benoetigt werden und beim Pathfinding und der
-		Sichtbarkeitsberechnung stoeren.
+		this.map = map;
+		reportProgress(1.0);
+	}
+
+	/**
+	 * Teilt dem Delegate den Fortschritt des Ladevorgangs mit
+	 * @param progress Fortschritt zwischen 0 und 1
+	 */
+	private void reportProgress(double progress)
+	{
+		if (loadingDelegate != null)
+			loadingDelegate.levelLoadingDidProgress(this, progress);
+	}
+
+	/**
+	 * Erzeugung eines Objekts des Levels
+	 * @param <T> Typ des Objekts
+	 */
+	private interface ObjectFactory<T>
+	{
+		/**
+		 * Erzeugt ein neues Objekt
+		 * @return neues Objekt
+		 * @throws IOException wenn die Konfiguration des Objekts nicht gelesen werden konnte
 		 */
-		map.removeFeatures();
+		T create() throws IOException;
 	}
 }
@@ -0,0 +1,72 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+package project.game.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Werkzeug zum Kompilieren von Leveln in das Binaerformat des {@link CompiledLevel}.
+ * <br>
+ * Aufruf: java project.game.data.LevelCompiler level_1.properties ...
+ */
+public final class LevelCompiler
+{
+	private LevelCompiler()
+	{
+	}
+
+	/**
+	 * Kompiliert alle gegebenen Properties-Files und legt die kompilierten Level
+	 * mit der Endung .level daneben ab.
+	 * @param args Pfade der Properties-Files
+	 * @throws IOException wenn eine Datei nicht gelesen oder geschrieben werden konnte
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length == 0)
+		{
+			System.err.println("Usage: java project.game.data.LevelCompiler <level.properties>...");
+			System.exit(1);
+		}
+		for (String arg : args)
+		{
+			Path       source     = Paths.get(arg);
+			Properties properties = new Properties();
+			try (InputStream inputStream = Files.newInputStream(source))
+			{
+				properties.load(inputStream);
+			}
+			Path target = source.resolveSibling(CompiledLevel.replaceExtension(source.getFileName().toString()));
+			CompiledLevel.parse(properties).write(target);
+			System.out.println(source + " -> " + target);
+		}
+	}
+}
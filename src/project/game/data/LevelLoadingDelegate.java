@@ -0,0 +1,44 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+/**
+ * Delegate zur Rueckmeldung ueber den Fortschritt des Ladens eines Levels.
+ * z.B. fuer die Anzeige eines Ladebalkens
+ * @see Level
+ */
+public interface LevelLoadingDelegate
+{
+	/**
+	 * Wird aufgerufen, wenn ein Abschnitt des Ladevorgangs abgeschlossen wurde.
+	 * Der Aufruf erfolgt in dem Thread, welcher das Level laed.
+	 * Das Level ist erst vollstaendig geladen, wenn der Fortschritt 1 erreicht.
+	 * @param level Level, welches geladen wird
+	 * @param progress Fortschritt zwischen 0 und 1
+	 */
+	void levelLoadingDidProgress(Level level, double progress);
+}
@@ -25,11 +25,15 @@
 
 package project.game.data;
 
+import project.util.BitMask;
+
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Stack;
+import java.util.function.BooleanSupplier;
 
 import static java.lang.Math.max;
 import static java.lang.Math.sqrt;
@@ -43,77 +47,26 @@ public class Map
 	/**
 	 * Innere Klasse zur Pfadberechnung
 	 * Zur Pfadberechnung wird der A*-Pathfinding-Algorithmus verwendet.
+	 * Saemtliche Zwischenergebnisse werden in einem PathFindingWorkspace
+	 * des aufrufenden Threads gespeichert, sodass waehrend der Suche keine
+	 * Objekte erzeugt werden muessen.
 	 */
+	//Benchmarks:
+	//650ms (linear search for insertion point, unoptimized)
+	//160ms (binary search for insertion point)
+	//ca. 10ms (binary search for insertion point, 2d array of closed points instead of list
+	//using a HashMap with x*height+y as key is slower
+	//binary heap with index per node: insert, remove and decrease key in O(log n), lookup in O(1)
+	//reused primitive arrays per thread instead of nodes and a new closed array for every search
 	private class PathFinder
 	{
-		/**
-		 * Pfadelement fuer Pathfinding
-		 * Speichert geschaetzte Distanzkosten zum Ziel,
-		 * Kosten fuer zurueckgelegte Distanz,
-		 * die vorherige PathFindingNode,
-		 * sowie die Position
-		 */
-		//Benchmarks:
-		//650ms (linear search for insertion point, unoptimized)
-		//160ms (binary search for insertion point)
-		//ca. 10ms (binary search for insertion point, 2d array of closed points instead of list
-		//using a HashMap with x*height+y as key is slower
-		private class PathFindingNode implements Comparable<PathFindingNode>
-		{
-			private int             distanceCost;
-			private PathFindingNode parent;
-			private int             stepCost;
-			private int             x;
-			private int             y;
-
-			/**
-			 * Erstellt eine neue PathFindingNode
-			 * @param x x-Position
-			 * @param y y-Position
-			 * @param stepCost Kosten fuer zurueckgelegte Strecke
-			 * @param distanceCost Kostenabschaetzung fuer nachfolgende Strecke
-			 * @param parent Vorherige PathFindingNode
-			 */
-			private PathFindingNode(final int x, final int y, final int stepCost, final int distanceCost, PathFindingNode parent)
-			{
-				this.x = x;
-				this.y = y;
-				this.stepCost = stepCost;
-				this.distanceCost = distanceCost;
-				this.parent = parent;
-			}
-
-			/**
-			 * Vergleichen zu anderer PathFindingNode zur Sortierung von PathFindingNodes in einer Prioritaetswarteschlange
-			 */
-			@Override
-			public int compareTo(final PathFindingNode o)
-			{
-				if (stepCost + distanceCost == o.stepCost + o.distanceCost)
-					return 0;
-				else if (stepCost + distanceCost > o.stepCost + o.distanceCost)
-					return 1;
-				else
-					return -1;
-			}
-
-			/**
-			 * Gibt den Punkt an, an welchem sich das Pfadelement befindet
-			 * @return (x, y)-Punkt
-			 */
-			private Point getPoint()
-			{
-				return new Point(x, y);
-			}
-
-		}
-
-		private final Point                 end;
-		private final Point                 start;
-		private       PathFindingNode[][]   closed;
-		private       int                   height;
-		private       List<PathFindingNode> open;
-		private       int                   width;
+		private       BooleanSupplier cancelled;
+		private final Point           end;
+		private final Point           start;
+		private       int             height;
+		private       int             maxCost;
+		private       int             maxExpansions;
+		private       int             width;
 
 		/**
 		 * Initialisiert einen neuen Pathfinder
@@ -124,76 +77,14 @@ public class Map
 		{
 			this.start = start;
 			this.end = end;
-			//an array takes more space but is up to 10 times faster than a list
-			this.closed = new PathFindingNode[getWidth()][getHeight()];
-			this.open = new ArrayList<>();
 			width = 1;
 			height = 1;
+			maxCost = Integer.MAX_VALUE;
+			maxExpansions = Integer.MAX_VALUE;
 		}
 
 		/**
-		 * Fuegt einen Pathfinding-Knoten zum Feld der ueberprueften Punkte hinzu
-		 * @param node Pathfinding-Knoten
-		 */
-		private void addClosed(PathFindingNode node)
-		{
-			//closed.add(node);
-			closed[node.x][node.y] = node;
-		}
-
-		/**
-		 * Fuegt einen Pathfinding-Knoten zur Prioritaetswarteschlange der offenen
-		 * (nicht ueberprueften Punkte) hinzu.
-		 * @param node neuer, offener Punkt
-		 */
-		private void addOpen(PathFindingNode node)
-		{
-			int n = open.size();
-			if (n == 0)
-			{
-				open.add(node);
-				return;
-			}
-			/*
-			Bineare Suche nach Einfuegepunkt
-			 (4x Geschwindigkeitssteigerung des Gesamtalgorithmus
-			 gegenueber linearer Suche)
-			 */
-			int left  = 0;
-			int right = n - 1;
-			while (left < right)
-			{
-				int mid  = (left + right) / 2;
-				int comp = node.compareTo(open.get(mid));
-				if (comp > 0)
-					left = mid + 1;
-				else if (comp < 0)
-					right = mid - 1;
-				else
-				{
-					right = mid;
-					left = mid;
-				}
-			}
-			if (open.get(left).compareTo(node) < 0)
-				left++;
-			open.add(left, node);
-		}
-
-		/**
-		 * Gibt den Pathfinding-Knoten zurueck, welcher die guenstigste Position
-		 * hat und noch nicht ueberprueft wurde. Die guenstigste Position wird
-		 * durch die Summe von Distanzestimation und zurueckgelegter Distanz berechnet.
-		 * Der Knoten, bei dem diese Summe am niedrigsten ist, wird zurueckgegeben.
-		 * @return Bestmoeglicher Pathfinding-Knoten
-		 */
-		private PathFindingNode bestOpen()
-		{
-			return open.get(0);
-		}
-
-		/**
-		 * Distanzabschaetzung zwischen zwei Punkten.
+		 * Distanzabschaetzung zwischen einem Punkt und dem Zielpunkt.
 		 * Als Annaeherung wird hier die euklidische Distanz gewaehlt.
 		 * Die tatsaechliche Distanz muss in jedem fall groesser als
 		 * die geschaetzte Distanz sein, da sonst die Wahl der optimalen
@@ -204,315 +95,451 @@ public class Map
 		 * Die Abschaetzung mittels euklidischer Distanz hat sich in den meisten
 		 * Faellen als besser erwiesen und fuehrte zu kuerzeren Pfaden.
 		 *
-		 * @param p1 erster punkt (x1; y1)
-		 * @param p2 zweiter punkt (x2; y2)
-		 * @return sqrt((x1 - x2)^2 + (y1 - y2)^2)
+		 * @param x x-Koordinate des Punktes
+		 * @param y y-Koordinate des Punktes
+		 * @return sqrt((x - xEnd)^2 + (y - yEnd)^2)
 		 */
-		private int distance(Point p1, Point p2)
+		private int distance(int x, int y)
 		{
-			double dx = p1.x - p2.x;
-			double dy = p1.y - p2.y * horizontalScale / verticalScale;
+			double dx = end.x - x;
+			double dy = (end.y - y) * horizontalScale / verticalScale;
 			return (int) sqrt(dx * dx + dy * dy);
 		}
 
 		/**
 		 * Sucht den Pfad von den bei der Initialisierung spezifizierten Punkten.
-		 * Implementierung des A*-Pathfinding-Algorithmus
-		 * @return Pfad von Startpunkt nach Endpunkt oder null,
-		 * wenn kein Pfad gefunden werden kann.
+		 * Implementierung des A*-Pathfinding-Algorithmus.
+		 * Die Suche wird abgebrochen, sobald mehr als maxExpansions Punkte ueberprueft wurden,
+		 * feststeht, dass kein Pfad mit Kosten bis maxCost existiert oder die Suche von aussen
+		 * abgebrochen wurde.
+		 * @return Ergebnis mit dem Pfad von Startpunkt nach Endpunkt oder dem Grund,
+		 * aus welchem kein Pfad gefunden wurde.
 		 */
-		private Point[] findPath()
+		private PathResult findPath()
 		{
-			//FIXME Pathfinding terminiert erst, wenn gesamte Map getestet wurde, wenn die Groesse des
-			//Objekts zu gross ist, um an die Position des
+			if (isOutOfBounds(start.x, start.y) || isOutOfBounds(end.x, end.y))
+				return new PathResult(PathResult.Status.NOT_FOUND, null, 0);
+
+			/*
+			Ist der Endpunkt nicht erreichbar, wuerde die Suche erst nach Ueberpruefung
+			aller erreichbaren Punkte beendet werden.
+			 */
+			if (!start.equals(end) && !getReachabilityIndex(width, height).isReachable(start.x, start.y, end.x, end.y))
+				return new PathResult(PathResult.Status.NOT_FOUND, null, 0);
+
+			PathFindingWorkspace workspace = workspaces.get();
+			workspace.prepare(getWidth() * getHeight());
+			try
+			{
+				return search(workspace);
+			}
+			finally
+			{
+				workspace.trim();
+			}
+		}
+
+		/**
+		 * Fuehrt die A*-Suche im gegebenen, vorbereiteten Arbeitsbereich aus.
+		 * @param workspace Arbeitsbereich des aufrufenden Threads
+		 * @return Ergebnis der Suche
+		 */
+		private PathResult search(PathFindingWorkspace workspace)
+		{
+			int mapWidth         = getWidth();
+			int verticalStepCost = horizontalScale / verticalScale;
+			int endCell          = end.y * mapWidth + end.x;
 
 			/*
 			Der Startpunkt wird der Liste nicht ueberpruefter Punkte hinzugefuegt
 			 */
-			addOpen(new PathFindingNode(start.x, start.y, 0, distance(end, start), null));
+			workspace.open(start.y * mapWidth + start.x, 0, distance(start.x, start.y), NO_DIRECTION);
+			int expansions = 0;
 
 			/*
 			Solange noch offene Punkte vorhanden sind, wird der Pfad weiter gesucht.
 			Sind keine offenen Punkte mehr vorhanden und der Endpunkt wurde noch nicht
 			erreicht, existiert kein Pfad zwischen Start- und Endposition
 			 */
-			while (!open.isEmpty())
+			while (!workspace.isOpenEmpty())
 			{
 				/*
-				Ueberpruefe die bestmoegliche, offene Position
+				Ueberpruefe die bestmoegliche, offene Position.
+				Diese wird aus der Liste offener Punkte entfernt und
+				den geschlossenen Punkten hinzugefuegt
 				 */
-				PathFindingNode current = bestOpen();
+				int current = workspace.closeBest();
 
 				/*
 				Abbruch, wenn Pfad gefunden
 				 */
-				if (current.x == end.x && current.y == end.y)
-				{
-					/*
-					Kehre die Reihenfolge des Pfades um
-					 */
-					Stack<PathFindingNode> inverseNodes = new Stack<>();
-					do
-					{
-						inverseNodes.push(current);
-						current = current.parent;
-					}
-					while (current != null && current.parent != null);
+				if (current == endCell)
+					return new PathResult(PathResult.Status.FOUND, buildPath(workspace, current, mapWidth), expansions);
 
-					List<Point> nodes = new ArrayList<>();
-					while (!inverseNodes.isEmpty())
-						nodes.add(inverseNodes.pop().getPoint());
-
-					if (System.getProperty("com.palleklewitz.underworld.map.showpaths", "false").equalsIgnoreCase("true"))
-					{
-						if (lastCalculatedPath != null)
-							for (Point point : lastCalculatedPath)
-								setPoint(point.x, point.y, EMPTY);
-						for (Point node : nodes)
-							setPoint(node.x, node.y, -1);
-						lastCalculatedPath = nodes.toArray(new Point[nodes.size()]);
-					}
-
-					/*
-					Gebe Pfad als Liste von Punkten zurueck
-					 */
-					return nodes.toArray(new Point[nodes.size()]);
-				}
+				int x           = current % mapWidth;
+				int y           = current / mapWidth;
+				int currentCost = workspace.getCost(current);
 
 				/*
-				Aktueller Punkt wurde nun ueberprueft, entferne aus Liste offener Punkte und
-				fuege den geschlossenen Punkten hinzu
+				Da die Distanzabschaetzung die tatsaechliche Distanz nie ueberschreitet,
+				besitzt jeder verbleibende Pfad mindestens die Kosten des besten offenen Punktes.
 				 */
-				removeOpen(current);
-				addClosed(current);
+				if (currentCost + distance(x, y) > maxCost)
+					return new PathResult(PathResult.Status.COST_EXCEEDED, null, expansions);
+				if (++expansions > maxExpansions)
+					return new PathResult(PathResult.Status.BUDGET_EXCEEDED, null, expansions);
+				if (cancelled != null && cancelled.getAsBoolean())
+					return new PathResult(PathResult.Status.CANCELLED, null, expansions);
 
 				/*
 				Suche nach erreichbaren Nachbarpositionen
 				 */
-				Point[] neighbours = getReachableNeighbours(current.getPoint());
-
-				for (Point point : neighbours)
+				for (int direction = 0; direction < 4; direction++)
 				{
+					int dx = DIRECTION_X[direction];
+					int dy = DIRECTION_Y[direction];
+					if (!fits(x + dx - width / 2, y + dy - height / 2, width, height))
+						continue;
+
+					int neighbour = current + dy * mapWidth + dx;
+
 					/*
 					Berechne zurueckgelegte Strecke
 					 */
-					int stepCost;
-					if (current.y == point.y)
-						stepCost = current.stepCost + 1;
-					else
-						stepCost = current.stepCost + horizontalScale / verticalScale;
+					int stepCost = currentCost + (dy == 0 ? 1 : verticalStepCost);
 
 					/*
-					Falls der Punkt schon ueberprueft wurde und die zurueckgelegte
-					Strecke bei der vorhergegangen ueberpruefung geringer war,
+					Falls der Punkt schon besucht wurde und die zurueckgelegte
+					Strecke bei der vorhergegangen Ueberpruefung geringer war,
 					muss der Punkt nicht mehr ueberprueft werden.
+					Ist der Punkt noch offen, wird seine Position im Heap aktualisiert,
+					wurde er schon geschlossen, wird er erneut geoeffnet.
 					 */
-					PathFindingNode neighbourNode = getClosed(point);
-					if (neighbourNode != null && stepCost >= neighbourNode.stepCost)
-						continue;
-
-					/*
-					Pruefe, ob der aktuelle Nachbar schon in der Liste offener Punkte ist und wenn ja,
-					pruefe, ob die aktuelle Strecke besser ist. Ist der Punkt nicht in der Liste
-					offener Punkte, wird er dieser hinzugefuegt. Ist er schon enthalten und ist ein besserer
-					Weg gefunden worden, so wird der Punkt ersetzt
-					 */
-					neighbourNode = getOpen(point);
-					if (neighbourNode == null)
-						addOpen(new PathFindingNode(point.x, point.y, stepCost, distance(end, point), current));
-					else if (neighbourNode.stepCost > stepCost)
+					if (workspace.isVisited(neighbour))
 					{
-						/*
-						Objekt wird entfernt und wieder hinzugefuegt, um die Ordnung aufrecht zu erhalten
-						 */
-						open.remove(neighbourNode);
-						neighbourNode.stepCost = stepCost;
-						addOpen(neighbourNode);
+						if (stepCost >= workspace.getCost(neighbour))
+							continue;
+						if (workspace.isClosed(neighbour))
+							workspace.open(neighbour, stepCost, distance(x + dx, y + dy), direction);
+						else
+							workspace.decreaseCost(neighbour, stepCost, direction);
 					}
+					else
+						workspace.open(neighbour, stepCost, distance(x + dx, y + dy), direction);
 				}
 			}
-			return null;
+			return new PathResult(PathResult.Status.NOT_FOUND, null, expansions);
 		}
 
 		/**
-		 * Gibt den Pathfinding-Knoten fuer den angegebenen Punkt zurueck oder null,
-		 * wenn kein Knoten am angegebenen Punkt vorhanden ist.
-		 * @param point zu pruefender Punkt
-		 * @return Knoten an gegebenen Punkt oder null
+		 * Setzt die Hoehe des Objektes, fuer welches der Pfad erstellt werden soll
+		 * @param height maximale Hoehe eines Ganges, welcher im Pfad enthalten sein kann
 		 */
-		private PathFindingNode getClosed(Point point)
+		private void setActorHeight(final int height)
 		{
-			return closed[point.x][point.y];
+			this.height = max(height, 1);
 		}
 
 		/**
-		 * Gibt den Pathfinding-Knoten am gegebenen Punkt zurueck oder null,
-		 * wenn kein Knoten am gegebenen Punkt vorhanden ist.
-		 * @param point zu pruefender Punkt
-		 * @return Knoten an gegebenen Punkt oder null
+		 * Setzt die Bedingung, unter welcher die Suche abgebrochen wird
+		 * @param cancelled Abbruchbedingung oder null
 		 */
-		private PathFindingNode getOpen(Point point)
+		private void setCancelled(final BooleanSupplier cancelled)
 		{
-			for (PathFindingNode n : open)
-				if (point.x == n.x && point.y == n.y)
-					return n;
-			return null;
+			this.cancelled = cancelled;
 		}
 
 		/**
-		 * Gibt die Nachbarn zurueck, die von gegebenen Punkt erreicht werden koennen.
-		 * Hierbei wird ueberprueft, ob Nachbarpunkte die Karte verlassen oder ob
-		 * Hindernisse vorhanden sind.
-		 * @param point zu pruefender Punkt
-		 * @return erreichbare Nachbarn des zu pruefenden Punktes
+		 * Setzt die maximalen Kosten eines Pfades
+		 * @param maxCost maximale Kosten
 		 */
-		private Point[] getReachableNeighbours(Point point)
+		private void setMaxCost(final int maxCost)
 		{
-			if (isOutOfBounds(point))
-				return new Point[0];
-			List<Point> neighbours = new ArrayList<>(4);
-			int         x          = point.x;
-			int         y          = point.y;
-
-			int baseX = point.x - width / 2;
-			int baseY = point.y - height / 2;
-
-			if (canMoveTo(new Rectangle(baseX - 1, baseY, width, height)))
-				neighbours.add(new Point(x - 1, y));
-			if (canMoveTo(new Rectangle(baseX, baseY - 1, width, height)))
-				neighbours.add(new Point(x, y - 1));
-			if (canMoveTo(new Rectangle(baseX + 1, baseY, width, height)))
-				neighbours.add(new Point(x + 1, y));
-			if (canMoveTo(new Rectangle(baseX, baseY + 1, width, height)))
-				neighbours.add(new Point(x, y + 1));
-
-			return neighbours.toArray(new Point[neighbours.size()]);
+			this.maxCost = maxCost;
 		}
 
 		/**
-		 * Entfernt einen Knoten aus der Liste der offenen Punkte
-		 * @param node zu entfernender Knoten
+		 * Setzt die maximale Anzahl an Punkten, welche waehrend der Suche ueberprueft werden
+		 * @param maxExpansions maximale Anzahl ueberpruefter Punkte
 		 */
-		private void removeOpen(PathFindingNode node)
+		private void setMaxExpansions(final int maxExpansions)
 		{
-			open.remove(node);
+			this.maxExpansions = maxExpansions;
 		}
 
 		/**
-		 * Setzt die Hoehe des Objektes, fuer welches der Pfad erstellt werden soll
-		 * @param height maximale Hoehe eines Ganges, welcher im Pfad enthalten sein kann
+		 * Setzt die Breite des Objektes, fuer welches der Pfad erstellt werden soll
+		 * @param width maximale Breite eines Ganges, welcher im Pfad enthalten sein kann
 		 */
-		private void setActorHeight(final int height)
+		private void setActorWidth(final int width)
 		{
-			this.height = max(height, 1);
+			this.width = max(width, 1);
 		}
 
 		/**
-		 * Setzt die Breite des Objektes, fuer welches der Pfad erstellt werden soll
-		 * @param width maximale Breite eines Ganges, welcher im Pfad enthalten sein kann
+		 * Erstellt den Pfad vom Startpunkt zum gegebenen Feld, indem die gespeicherten
+		 * Vorgaengerrichtungen zurueckverfolgt werden.
+		 * Der Startpunkt selbst ist nicht Teil des Pfades, ausser Start und Ziel sind identisch.
+		 * @param workspace Arbeitsbereich der Suche
+		 * @param endCell Index des Zielfeldes
+		 * @param mapWidth Breite der Karte
+		 * @return Pfad als Liste von Punkten
 		 */
-		private void setActorWidth(final int width)
+		private Point[] buildPath(PathFindingWorkspace workspace, int endCell, int mapWidth)
 		{
-			this.width = max(width, 1);
+			/*
+			Bestimme die Laenge des Pfades
+			 */
+			int length = 1;
+			int cell   = endCell;
+			while (true)
+			{
+				int direction = workspace.getParentDirection(cell);
+				if (direction == NO_DIRECTION)
+					break;
+				cell -= DIRECTION_Y[direction] * mapWidth + DIRECTION_X[direction];
+				if (workspace.getParentDirection(cell) == NO_DIRECTION)
+					break;
+				length++;
+			}
+
+			/*
+			Trage die Punkte in umgekehrter Reihenfolge ein
+			 */
+			Point[] path = new Point[length];
+			cell = endCell;
+			for (int i = length - 1; i >= 0; i--)
+			{
+				path[i] = new Point(cell % mapWidth, cell / mapWidth);
+				int direction = workspace.getParentDirection(cell);
+				if (direction != NO_DIRECTION)
+					cell -= DIRECTION_Y[direction] * mapWidth + DIRECTION_X[direction];
+			}
+
+			if (System.getProperty("com.palleklewitz.underworld.map.showpaths", "false").equalsIgnoreCase("true"))
+			{
+				if (lastCalculatedPath != null)
+					for (Point point : lastCalculatedPath)
+						setPoint(point.x, point.y, EMPTY);
+				for (Point node : path)
+					setPoint(node.x, node.y, -1);
+				lastCalculatedPath = path;
+			}
+
+			/*
+			Gebe Pfad als Liste von Punkten zurueck
+			 */
+			return path;
 		}
 	}
 
 	/**
-	 * Hilfsklasse zur Berechnung von sichtbaren Punkten von einem gegebenen Sichtpunkt aus.
-	 * Es wurde eine Hilfsklasse erstellt, damit Sichtbarkeitsdaten gecacht werden koennen und
-	 * somit mehrfache Berechnungen von gleichen Punkten eliminiert werden koennen.
+	 * Wiederverwendbarer Arbeitsbereich fuer die Pfadberechnung.
+	 * Kosten und Vorgaengerrichtungen werden pro Kartenpunkt (Index y * Breite + x)
+	 * in Seiten zu je PAGE_SIZE Punkten gespeichert.
+	 * Eine Seite wird erst angelegt, wenn die Suche einen ihrer Punkte erreicht,
+	 * der Speicherbedarf richtet sich somit nach dem durchsuchten Bereich und nicht
+	 * nach der Groesse der Karte.
+	 * Die Seiten werden nicht geleert: Jede Suche erhoeht einen Generationszaehler,
+	 * Eintraege mit einer aelteren Generation gelten als unbesucht. Somit ist das
+	 * Zuruecksetzen in O(1) moeglich.
+	 * Jeder Thread besitzt einen eigenen Arbeitsbereich. Belegt dieser nach einer Suche
+	 * mehr als MAX_RETAINED_PAGES Seiten, werden nur die von der letzten Suche verwendeten Seiten
+	 * bis zu dieser Grenze behalten, sodass folgende Suchen im selben Bereich keine Seiten neu anlegen.
 	 */
-	private class VisibilityCalculator
+	private static final class PathFindingWorkspace
 	{
-		private Rectangle calculationBounds;
-		private Point     pointOfVision;
-		//0: not calculated, 1: invisible, 2: visible
-		private byte[][]  visibilityData;
+		/**
+		 * Markierung fuer geschlossene (ueberpruefte) Felder in parentDirection
+		 */
+		private static final byte CLOSED = 0x10;
+
+		/**
+		 * Anzahl der Seiten, welche zwischen zwei Suchen hoechstens behalten werden
+		 */
+		private static final int MAX_RETAINED_PAGES = 1 << 10;
+
+		/**
+		 * Anzahl der Punkte einer Seite als Zweierpotenz
+		 */
+		private static final int PAGE_SHIFT = 8;
+		private static final int PAGE_MASK  = (1 << PAGE_SHIFT) - 1;
 
 		/**
-		 * Initialisiert eine neue Instanz zur Berechnung von Sichtbarkeiten
-		 * @param calculationBounds Begrenzungen des Viewports zur Verringerung des Rechenbedarfs
-		 * @param pointOfVision Punkt, von dem aus betrachtet wird
+		 * Anzahl angelegter Seiten
 		 */
-		private VisibilityCalculator(final Rectangle calculationBounds, final Point pointOfVision)
+		private int               allocatedPages;
+
+		/**
+		 * Zurueckgelegte Strecke pro Feld
+		 */
+		private int[][]           cost;
+
+		/**
+		 * Aktuelle Generation. Felder mit anderem Stempel wurden in der aktuellen Suche nicht besucht.
+		 */
+		private int               generation;
+
+		/**
+		 * Offene Felder, geordnet nach geschaetzten Gesamtkosten
+		 */
+		private final IndexedHeap heap;
+
+		/**
+		 * Richtung, aus welcher ein Feld erreicht wurde, sowie die Markierung CLOSED
+		 */
+		private byte[][]          parentDirection;
+
+		/**
+		 * Generation, in welcher ein Feld zuletzt besucht wurde
+		 */
+		private int[][]           stamp;
+
+		private PathFindingWorkspace()
 		{
-			this.calculationBounds = calculationBounds;
-			if (calculationBounds.getMaxX() >= getWidth())
-				calculationBounds.width = getWidth() - calculationBounds.x - 1;
-			if (calculationBounds.getMaxY() >= getHeight())
-				calculationBounds.height = getHeight() - calculationBounds.y - 1;
-			this.pointOfVision = pointOfVision;
-			if (calculationBounds.width < 0)
-				calculationBounds.width = 0;
-			if (calculationBounds.height < 0)
-				calculationBounds.height = 0;
-			visibilityData = new byte[calculationBounds.width][calculationBounds.height];
+			heap = new IndexedHeap();
 		}
 
 		/**
-		 * Berechnet die Sichtbarkeit zu gegebenem Punkt
-		 * gesehen von gegebenm Sichtbarkeitspunkt
-		 * @param toPoint zu pruefender Punkt
+		 * Entfernt das offene Feld mit den geringsten geschaetzten Gesamtkosten
+		 * und markiert dieses als geschlossen.
+		 * @return Index des geschlossenen Feldes
 		 */
-		private void calculateVisibilty(Point toPoint)
+		private int closeBest()
 		{
-			/*
-			Generiere parametrische Gerade:
-			(OV: Ortsvektor Sichtpunkt; VP: Vektor von Sichtpunkt zu getestetem Punkt)
-			OX:=OV+VP*x
-			mit 0<=x<=1
-			 */
-			double dx   = toPoint.x - pointOfVision.x;
-			double dy   = toPoint.y - pointOfVision.y;
-			double dist = sqrt(dx * dx + dy * dy);
+			int best = heap.poll();
+			parentDirection[best >>> PAGE_SHIFT][best & PAGE_MASK] |= CLOSED;
+			return best;
+		}
 
-			double unitDx = dx / dist;
-			double unitDy = dy / dist;
+		/**
+		 * Verringert die zurueckgelegte Strecke eines offenen Feldes.
+		 * @param cell Index des Feldes
+		 * @param cost neue Kosten
+		 * @param direction neue Vorgaengerrichtung
+		 */
+		private void decreaseCost(int cell, int cost, int direction)
+		{
+			int page  = cell >>> PAGE_SHIFT;
+			int local = cell & PAGE_MASK;
+			heap.decreaseKey(cell, heap.getKey(cell) - (this.cost[page][local] - cost));
+			this.cost[page][local] = cost;
+			parentDirection[page][local] = (byte) direction;
+		}
 
-			if (dist == 0)
-				visibilityData[pointOfVision.x - calculationBounds.x][pointOfVision.y - calculationBounds.y] = 2;
+		private int getCost(int cell)
+		{
+			return cost[cell >>> PAGE_SHIFT][cell & PAGE_MASK];
+		}
 
-			boolean interrupted = false;
+		private int getParentDirection(int cell)
+		{
+			return parentDirection[cell >>> PAGE_SHIFT][cell & PAGE_MASK] & ~CLOSED;
+		}
+
+		private boolean isClosed(int cell)
+		{
+			return (parentDirection[cell >>> PAGE_SHIFT][cell & PAGE_MASK] & CLOSED) != 0;
+		}
 
-			for (int i = 0; i < dist; i++)
+		private boolean isOpenEmpty()
+		{
+			return heap.isEmpty();
+		}
+
+		private boolean isVisited(int cell)
+		{
+			int[] page = stamp[cell >>> PAGE_SHIFT];
+			return page != null && page[cell & PAGE_MASK] == generation;
+		}
+
+		/**
+		 * Fuegt ein Feld zur Prioritaetswarteschlange der offenen Felder hinzu.
+		 * @param cell Index des Feldes
+		 * @param cost zurueckgelegte Strecke
+		 * @param distance geschaetzte Restkosten
+		 * @param direction Vorgaengerrichtung
+		 */
+		private void open(int cell, int cost, int distance, int direction)
+		{
+			int page  = cell >>> PAGE_SHIFT;
+			int local = cell & PAGE_MASK;
+			if (stamp[page] == null)
 			{
-				//int x      = (int) (unitDx * i + toPoint.x);
-				//int y      = (int) (unitDy * i + toPoint.y);
-				int x      = (int) (unitDx * i + pointOfVision.x);
-				int y      = (int) (unitDy * i + pointOfVision.y);
-				int arrayX = x - calculationBounds.x;
-				int arrayY = y - calculationBounds.y;
-				if (interrupted || getPoint(x, y) > 0)
-				{
-					visibilityData[arrayX][arrayY] = 1;
-					interrupted = true;
-				}
-				else
-					visibilityData[arrayX][arrayY] = 2;
+				stamp[page] = new int[1 << PAGE_SHIFT];
+				this.cost[page] = new int[1 << PAGE_SHIFT];
+				parentDirection[page] = new byte[1 << PAGE_SHIFT];
+				allocatedPages++;
 			}
-			visibilityData[toPoint.x - calculationBounds.x][toPoint.y - calculationBounds.y] = (byte) (interrupted ? 1 :
-					2);
+			stamp[page][local] = generation;
+			this.cost[page][local] = cost;
+			parentDirection[page][local] = (byte) direction;
+			heap.add(cell, cost + distance, distance);
 		}
 
 		/**
-		 * Ueberprueft die Sichtbarkeit aller Punkt von gegebenem Sichtbarkeitspunkt
-		 * @return bitmaske: [x][y] = true: Punkt ist sichtbar, false, wenn nicht
+		 * Bereitet den Arbeitsbereich fuer eine neue Suche vor.
+		 * @param cellCount Anzahl der Felder der zu durchsuchenden Karte
 		 */
-		private boolean[][] getVisiblePoints()
+		private void prepare(int cellCount)
 		{
-			boolean[][] output = new boolean[calculationBounds.width][calculationBounds.height];
-			for (int x = calculationBounds.x; x < calculationBounds.getMaxX(); x++)
-				for (int y = calculationBounds.y; y < calculationBounds.getMaxY(); y++)
+			int pageCount = (cellCount + PAGE_MASK) >>> PAGE_SHIFT;
+			if (stamp == null || stamp.length != pageCount)
+			{
+				stamp = new int[pageCount][];
+				cost = new int[pageCount][];
+				parentDirection = new byte[pageCount][];
+				allocatedPages = 0;
+				generation = 0;
+			}
+			if (generation == Integer.MAX_VALUE)
+			{
+				for (int[] page : stamp)
+					if (page != null)
+						Arrays.fill(page, 0);
+				generation = 0;
+			}
+			generation++;
+			heap.clear();
+		}
+
+		/**
+		 * Begrenzt den Arbeitsbereich nach einer Suche auf MAX_RETAINED_PAGES Seiten.
+		 * Hat die letzte Suche einen grossen Bereich durchsucht, werden bevorzugt die von dieser
+		 * verwendeten Seiten behalten und alle uebrigen freigegeben. Der Heap wird ebenso begrenzt.
+		 */
+		private void trim()
+		{
+			if (allocatedPages > MAX_RETAINED_PAGES)
+			{
+				int retained = 0;
+				for (int page = 0; page < stamp.length; page++)
 				{
-					int arrayX = x - calculationBounds.x;
-					int arrayY = y - calculationBounds.y;
-					if (visibilityData[arrayX][arrayY] == 0)
+					if (stamp[page] == null)
+						continue;
+					if (retained < MAX_RETAINED_PAGES && isPageUsed(page))
 					{
-						calculateVisibilty(new Point(x, y));
+						retained++;
+						continue;
 					}
-					output[arrayX][arrayY] = visibilityData[arrayX][arrayY] == 2;
+					stamp[page] = null;
+					cost[page] = null;
+					parentDirection[page] = null;
 				}
-			return output;
+				allocatedPages = retained;
+			}
+			heap.trim(MAX_RETAINED_PAGES);
+		}
+
+		/**
+		 * Gibt an, ob die aktuelle Suche einen Punkt der gegebenen Seite besucht hat
+		 */
+		private boolean isPageUsed(int page)
+		{
+			for (int value : stamp[page])
+				if (value == generation)
+					return true;
+			return false;
 		}
 	}
 
@@ -524,21 +551,103 @@ public class Map
 
 	public static final int WATER = -2;
 
+	/**
+	 * Verschiebung in x-Richtung fuer die Nachbarrichtungen links, oben, rechts und unten
+	 */
+	static final int[] DIRECTION_X = { -1, 0, 1, 0 };
+
+	/**
+	 * Verschiebung in y-Richtung fuer die Nachbarrichtungen links, oben, rechts und unten
+	 */
+	static final int[] DIRECTION_Y = { 0, -1, 0, 1 };
+
+	/**
+	 * Vorgaengerrichtung des Startpunktes einer Pfadsuche
+	 */
+	static final int NO_DIRECTION = 4;
+
+	/**
+	 * Arbeitsbereiche zur Pfadberechnung, einer pro Thread
+	 */
+	private static final ThreadLocal<PathFindingWorkspace> workspaces =
+			ThreadLocal.withInitial(PathFindingWorkspace::new);
+
+	/**
+	 * Freiraumkarte zur Pruefung der Begehbarkeit fuer Aktoren, wird bei Bedarf erstellt
+	 */
+	private volatile ClearanceMap clearanceMap;
+
+	/**
+	 * Summentabelle unbegehbarer Punkte fuer exakte Kollisionspruefungen, wird bei Bedarf erstellt
+	 */
+	private volatile SummedAreaTable summedAreaTable;
+
+	/**
+	 * Potentiell sichtbare Zellen, wird bei Bedarf erstellt
+	 */
+	private volatile PotentiallyVisibleSet potentiallyVisibleSet;
+
+	/**
+	 * Distanzfelder nach Aktorgroesse (Breite << 16 | Hoehe)
+	 */
+	private final java.util.Map<Integer, FlowField> flowFields = new HashMap<>();
+
+	/**
+	 * Erreichbarkeitsindizes nach Aktorgroesse (Breite << 16 | Hoehe)
+	 */
+	private final java.util.Map<Integer, ReachabilityIndex> reachabilityIndices = new HashMap<>();
+
+	/**
+	 * Hierarchische Pfadsuchen nach Aktorgroesse (Breite << 16 | Hoehe)
+	 */
+	private final java.util.Map<Integer, HierarchicalPathFinder> hierarchicalPathFinders = new HashMap<>();
+
+	/**
+	 * Anzahl der Punkte, deren letzte Begehbarkeitsaenderungen gespeichert werden (Zweierpotenz)
+	 */
+	private static final int PASSABILITY_LOG_SIZE = 64;
+
+	/**
+	 * Zuletzt in ihrer Begehbarkeit veraenderte Punkte (Index y * Breite + x) als Ringpuffer
+	 */
+	private final int[] passabilityLog = new int[PASSABILITY_LOG_SIZE];
+
+	/**
+	 * Anzahl der bisherigen Begehbarkeitsaenderungen
+	 */
+	private int passabilityChangeCount;
+
 	private int horizontalScale;
 	private Point[] lastCalculatedPath;
-	private int[][] points;
+	private TerrainStorage terrain;
 	private int verticalScale;
 
 	/**
-	 * Erstellt eine neue, leere Karte mit angegebener Breite und Hoehe
+	 * Anzahl der Veraenderungen der Karte.
+	 * Waehrend einer Veraenderung ist der Wert ungerade.
+	 */
+	private volatile int version;
+
+	/**
+	 * Zwischenspeicher berechneter Sichtbarkeiten nach Sichtpunkt und Version
+	 */
+	private final VisibilityCache visibilityCache = new VisibilityCache(this);
+
+	/**
+	 * Verfahren zur Berechnung sichtbarer Punkte
+	 */
+	private VisibilityStrategy visibilityStrategy = new ShadowcastingVisibility();
+
+	/**
+	 * Erstellt eine neue, leere Karte mit angegebener Breite und Hoehe.
+	 * Die Punkte werden in Kacheln gespeichert, welche erst bei einer Veraenderung
+	 * Speicher belegen.
 	 * @param width Breite der Karte
 	 * @param height Hoehe der Karte
 	 */
 	public Map(int width, int height)
 	{
-		points = new int[width][height];
-		verticalScale = 1;
-		horizontalScale = 1;
+		this(new ChunkedTerrainStorage(width, height, 8, 4), 1, 1);
 	}
 
 	/**
@@ -553,14 +662,29 @@ public class Map
 	/**
 	 * Erstellt eine neue Karte mit angegebenen Punkte mit dem Skalierungsfaktor (horizontalScale, verticalScale)
 	 * Die Skalierung der Werte muss schon vor Initialisierung der Karte stattgefunden haben und dient
-	 * lediglich zur Optimierung von Objektsuchen
+	 * lediglich zur Optimierung von Objektsuchen.
+	 * Die Werte werden in einen ByteTerrainStorage kopiert.
 	 * @param points Werte der Punkte auf der Karte
 	 * @param horizontalScale horizontale Skalierung
 	 * @param verticalScale vertikale Skalierung
 	 */
 	public Map(final int[][] points, int horizontalScale, int verticalScale)
 	{
-		this.points = points;
+		this(new ByteTerrainStorage(points), horizontalScale, verticalScale);
+	}
+
+	/**
+	 * Erstellt eine neue Karte mit den Punkten des gegebenen Speichers mit dem
+	 * Skalierungsfaktor (horizontalScale, verticalScale)
+	 * Die Skalierung der Werte muss schon vor Initialisierung der Karte stattgefunden haben und dient
+	 * lediglich zur Optimierung von Objektsuchen
+	 * @param terrain Speicher der Werte der Punkte auf der Karte
+	 * @param horizontalScale horizontale Skalierung
+	 * @param verticalScale vertikale Skalierung
+	 */
+	public Map(final TerrainStorage terrain, int horizontalScale, int verticalScale)
+	{
+		this.terrain = terrain;
 		this.horizontalScale = horizontalScale;
 		this.verticalScale = verticalScale;
 	}
@@ -573,7 +697,7 @@ public class Map
 	 */
 	public boolean canMoveTo(Point point)
 	{
-		return !isOutOfBounds(point) && points[point.x][point.y] == 0;
+		return !isOutOfBounds(point.x, point.y) && terrain.get(point.x, point.y) == 0;
 	}
 
 	/**
@@ -584,41 +708,73 @@ public class Map
 	 */
 	public boolean canMoveTo(Rectangle rectangle)
 	{
-		if (!canMoveTo(new Point(rectangle.x, rectangle.y)))
-			return false;
-		int right = rectangle.x + rectangle.width - 1;
-		if (!canMoveTo(new Point(right, rectangle.y)))
-			return false;
-		int bottom = rectangle.y + rectangle.height - 1;
-		return canMoveTo(new Point(rectangle.x, bottom)) && canMoveTo(new Point(right, bottom));
+		return canMoveTo(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
 	}
 
 	/**
-	 * Ueberprueft die Sichtbarkeit eines einzelnen Punkts von einem anderen Punkt
+	 * Ueberprueft die Sichtbarkeit eines einzelnen Punkts von einem anderen Punkt.
+	 * Die Sichtstrecke wird ganzzahlig nach Bresenham abgetastet und ist symmetrisch,
+	 * der Startpunkt darf keine Wand sein.
+	 * Die Methode kann aus beliebigen Threads aufgerufen werden.
 	 * @param fromPoint Startpunkt der Sichtstrecke
 	 * @param toPoint Endpunkt der Sichtstrecke
 	 * @return true, wenn die Sichtstrecke nicht durch Waende unterbrochen wird, sonst false
 	 */
 	public boolean canSee(Point fromPoint, Point toPoint)
 	{
-		double dx   = toPoint.x - fromPoint.x;
-		double dy   = toPoint.y - fromPoint.y;
-		double dist = sqrt(dx * dx + dy * dy);
-
-		double unitDx = dx / dist;
-		double unitDy = dy / dist;
+		if (isWall(fromPoint.x, fromPoint.y))
+			return false;
+		/*
+		Die potentiell sichtbaren Zellen schliessen nur Sichtlinien zwischen nahen, freien Punkten aus
+		 */
+		PotentiallyVisibleSet potentiallyVisibleSet = this.potentiallyVisibleSet;
+		if (potentiallyVisibleSet != null
+		    && !potentiallyVisibleSet.isPotentiallyVisible(fromPoint.x, fromPoint.y, toPoint.x, toPoint.y))
+			return false;
+		return isLineFree(fromPoint.x, fromPoint.y, toPoint.x, toPoint.y);
+	}
 
-		if (dist == 0)
-			return true;
+	/**
+	 * Ueberprueft die Sichtbarkeit mehrerer Punkte von einem gemeinsamen Startpunkt.
+	 * Das Ergebnis entspricht canSee(fromPoint, targets[i]) fuer jeden Zielpunkt.
+	 * Ist der Startpunkt eine Wand, werden keine Sichtstrecken abgetastet.
+	 * Die Methode kann aus beliebigen Threads aufgerufen werden.
+	 * @param fromPoint Startpunkt der Sichtstrecken
+	 * @param targets Endpunkte der Sichtstrecken
+	 * @param visible Ausgabe: visible[i] = true, wenn targets[i] sichtbar ist
+	 * @throws IllegalArgumentException wenn die Ausgabe weniger Elemente als Zielpunkte hat
+	 */
+	public void canSee(Point fromPoint, Point[] targets, boolean[] visible)
+	{
+		if (visible.length < targets.length)
+			throw new IllegalArgumentException(
+					"Output has " + visible.length + " elements for " + targets.length + " targets.");
+		if (isWall(fromPoint.x, fromPoint.y))
+		{
+			Arrays.fill(visible, 0, targets.length, false);
+			return;
+		}
+		int fromX = fromPoint.x;
+		int fromY = fromPoint.y;
 
-		for (int i = 0; i < dist; i++)
+		/*
+		Die potentiell sichtbaren Zellen des Startpunktes werden nur einmal gesucht
+		 */
+		PotentiallyVisibleSet                potentiallyVisibleSet = this.potentiallyVisibleSet;
+		PotentiallyVisibleSet.CellVisibility cell                  = null;
+		if (potentiallyVisibleSet != null)
+			cell = potentiallyVisibleSet.peek(fromX, fromY);
+		for (int i = 0; i < targets.length; i++)
 		{
-			double x = unitDx * i + fromPoint.x;
-			double y = unitDy * i + fromPoint.y;
-			if (getPoint((int) x, (int) y) > 0)
-				return false;
+			int toX = targets[i].x;
+			int toY = targets[i].y;
+			if (cell != null)
+				visible[i] = potentiallyVisibleSet.contains(cell, toX, toY);
+			else
+				visible[i] = potentiallyVisibleSet == null
+				             || potentiallyVisibleSet.isPotentiallyVisible(fromX, fromY, toX, toY);
+			visible[i] = visible[i] && isLineFree(fromX, fromY, toX, toY);
 		}
-		return true;
 	}
 
 	/**
@@ -630,7 +786,7 @@ public class Map
 	public Point[] findPath(Point fromPoint, Point toPoint)
 	{
 		PathFinder pathFinder = new PathFinder(fromPoint, toPoint);
-		return pathFinder.findPath();
+		return pathFinder.findPath().getPath();
 	}
 
 	/**
@@ -650,9 +806,75 @@ public class Map
 		PathFinder pathFinder = new PathFinder(fromPoint, toPoint);
 		pathFinder.setActorWidth(width);
 		pathFinder.setActorHeight(height);
+		return pathFinder.findPath().getPath();
+	}
+
+	/**
+	 * Sucht einen moeglichst kurzen Pfad zwischen den gegebenen Punkten mit begrenztem Aufwand.
+	 * Die Suche wird beendet, sobald mehr als maxExpansions Punkte ueberprueft wurden
+	 * oder feststeht, dass kein Pfad existiert, dessen Kosten (1 pro horizontalem Schritt,
+	 * horizontalScale / verticalScale pro vertikalem Schritt) maxCost nicht ueberschreiten.
+	 * @param fromPoint Ausgangspunkt
+	 * @param toPoint Zielpunkt
+	 * @param width Breite des Aktors
+	 * @param height Hoehe des Aktors
+	 * @param maxExpansions maximale Anzahl ueberpruefter Punkte
+	 * @param maxCost maximale Kosten des Pfades
+	 * @return Ergebnis der Suche mit Pfad oder Grund des Abbruchs
+	 */
+	public PathResult findPath(Point fromPoint, Point toPoint, int width, int height, int maxExpansions, int maxCost)
+	{
+		return findPath(fromPoint, toPoint, width, height, maxExpansions, maxCost, null);
+	}
+
+	/**
+	 * Sucht wie findPath(Point, Point, int, int, int, int) einen Pfad, prueft jedoch vor
+	 * jedem ueberprueften Punkt, ob die Suche abgebrochen wurde.
+	 * @param cancelled Abbruchbedingung oder null
+	 * @return Ergebnis der Suche mit Pfad oder Grund des Abbruchs
+	 * @see #findPath(Point, Point, int, int, int, int)
+	 */
+	PathResult findPath(Point fromPoint, Point toPoint, int width, int height, int maxExpansions, int maxCost,
+	                    BooleanSupplier cancelled)
+	{
+		PathFinder pathFinder = new PathFinder(fromPoint, toPoint);
+		pathFinder.setActorWidth(width);
+		pathFinder.setActorHeight(height);
+		pathFinder.setMaxExpansions(maxExpansions);
+		pathFinder.setMaxCost(maxCost);
+		pathFinder.setCancelled(cancelled);
 		return pathFinder.findPath();
 	}
 
+	/**
+	 * Sucht einen Pfad zwischen den gegebenen Punkten ueber einen abstrakten Graphen
+	 * aus Uebergaengen zwischen Clustern von Quellpunkten (HPA*).
+	 * Der gefundene Pfad ist nicht zwingend der kuerzeste, die Suche betrachtet auf
+	 * grossen Karten jedoch nur einen Bruchteil der Punkte.
+	 * Fuer nahe beieinander liegende Punkte wird findPath verwendet.
+	 * @param fromPoint Ausgangspunkt
+	 * @param toPoint Zielpunkt
+	 * @param width Breite des Aktors
+	 * @param height Hoehe des Aktors
+	 * @return Pfad oder null, wenn kein Pfad exisitert
+	 */
+	public Point[] findHierarchicalPath(Point fromPoint, Point toPoint, int width, int height)
+	{
+		return findHierarchicalPath(fromPoint, toPoint, width, height, null);
+	}
+
+	/**
+	 * Sucht wie findHierarchicalPath(Point, Point, int, int) einen Pfad, bricht die Suche
+	 * jedoch ab, sobald die gegebene Abbruchbedingung erfuellt ist.
+	 * @param cancelled Abbruchbedingung oder null
+	 * @return Pfad oder null, wenn kein Pfad existiert oder die Suche abgebrochen wurde
+	 * @see #findHierarchicalPath(Point, Point, int, int)
+	 */
+	Point[] findHierarchicalPath(Point fromPoint, Point toPoint, int width, int height, BooleanSupplier cancelled)
+	{
+		return getHierarchicalPathFinder(width, height).findPath(fromPoint, toPoint, cancelled);
+	}
+
 	/**
 	 * Gibt die Begrenzungen von dynamischen Gegnern zurueck
 	 * @return Begrenzungen dynamischer Gegner
@@ -671,16 +893,29 @@ public class Map
 		return findFeatures(3);
 	}
 
+	/**
+	 * Gibt das Distanzfeld fuer Aktoren der gegebenen Groesse zurueck.
+	 * Alle Aktoren gleicher Groesse teilen sich ein Feld.
+	 * @param width Breite des Aktors
+	 * @param height Hoehe des Aktors
+	 * @return Distanzfeld
+	 */
+	public FlowField getFlowField(int width, int height)
+	{
+		int key = max(width, 1) << 16 | max(height, 1);
+		synchronized (flowFields)
+		{
+			return flowFields.computeIfAbsent(key, k -> new FlowField(this, k >>> 16, k & 0xFFFF));
+		}
+	}
+
 	/**
 	 * Gibt die Hoehe der Karte an
 	 * @return Hoehe der Karte
 	 */
 	public int getHeight()
 	{
-		if (getWidth() == 0)
-			return 0;
-		else
-			return points[0].length;
+		return terrain.getHeight();
 	}
 
 	/**
@@ -711,10 +946,10 @@ public class Map
 	 */
 	public int getPoint(int x, int y)
 	{
-		if (isOutOfBounds(new Point(x, y)))
+		if (isOutOfBounds(x, y))
 			return -1;
 		else
-			return points[x][y];
+			return terrain.get(x, y);
 	}
 
 	/**
@@ -727,7 +962,7 @@ public class Map
 		{
 			for (int y = 0; y < getHeight(); y+=verticalScale)
 			{
-				if (points[x][y] == 2)
+				if (terrain.get(x, y) == 2)
 					return new Rectangle(x, y, horizontalScale, verticalScale);
 			}
 		}
@@ -756,12 +991,28 @@ public class Map
 	 * Gibt eine Bitmaske der sichtbaren Punkte zurueck.
 	 * @param inRect Begrenzungen der Berechnung
 	 * @param fromVisionPoint Sichtpunkt
-	 * @return Bitmaske: [x][y] = true, wenn Punkt sichtbar.
+	 * @return Bitmaske: (x, y) ist gesetzt, wenn der Punkt (inRect.x + x, inRect.y + y) sichtbar ist
+	 */
+	public BitMask getVisiblePoints(Rectangle inRect, Point fromVisionPoint)
+	{
+		if (inRect.getMaxX() >= getWidth())
+			inRect.width = getWidth() - inRect.x - 1;
+		if (inRect.getMaxY() >= getHeight())
+			inRect.height = getHeight() - inRect.y - 1;
+		if (inRect.width < 0)
+			inRect.width = 0;
+		if (inRect.height < 0)
+			inRect.height = 0;
+		return visibilityCache.getVisiblePoints(inRect, fromVisionPoint, visibilityStrategy);
+	}
+
+	/**
+	 * Gibt das Verfahren zur Berechnung sichtbarer Punkte an
+	 * @return Verfahren zur Sichtbarkeitsberechnung
 	 */
-	public boolean[][] getVisiblePoints(Rectangle inRect, Point fromVisionPoint)
+	public VisibilityStrategy getVisibilityStrategy()
 	{
-		VisibilityCalculator calc = new VisibilityCalculator(inRect, fromVisionPoint);
-		return calc.getVisiblePoints();
+		return visibilityStrategy;
 	}
 
 	/**
@@ -770,7 +1021,7 @@ public class Map
 	 */
 	public int getWidth()
 	{
-		return points.length;
+		return terrain.getWidth();
 	}
 
 	/**
@@ -780,7 +1031,37 @@ public class Map
 	 */
 	public boolean isOutOfBounds(Point p)
 	{
-		return p.x < 0 || p.y < 0 || p.x >= getWidth() || p.y >= getHeight();
+		return isOutOfBounds(p.x, p.y);
+	}
+
+	/**
+	 * Gibt an, ob ein Aktor der gegebenen Groesse vom Ausgangspunkt zum Zielpunkt gelangen kann.
+	 * Die Abfrage benoetigt keine Pfadsuche, sondern verwendet die Zusammenhangskomponenten der Karte.
+	 * @param fromPoint Ausgangspunkt
+	 * @param toPoint Zielpunkt
+	 * @param width Breite des Aktors
+	 * @param height Hoehe des Aktors
+	 * @return false, wenn der Zielpunkt sicher nicht erreicht werden kann, sonst true
+	 */
+	public boolean isReachable(Point fromPoint, Point toPoint, int width, int height)
+	{
+		if (isOutOfBounds(fromPoint) || isOutOfBounds(toPoint))
+			return false;
+		return fromPoint.equals(toPoint) ||
+		       getReachabilityIndex(width, height).isReachable(fromPoint.x, fromPoint.y, toPoint.x, toPoint.y);
+	}
+
+	/**
+	 * Erstellt den Erreichbarkeitsindex und den abstrakten Graphen der hierarchischen
+	 * Pfadsuche fuer Aktoren der gegebenen Groesse, sodass diese nicht bei der ersten
+	 * Suche erstellt werden muessen.
+	 * @param width Breite des Aktors
+	 * @param height Hoehe des Aktors
+	 */
+	public void preparePathFinding(int width, int height)
+	{
+		getReachabilityIndex(width, height);
+		getHierarchicalPathFinder(width, height);
 	}
 
 	/**
@@ -791,10 +1072,28 @@ public class Map
 	 */
 	public void removeFeatures()
 	{
-		for (int x = 0; x < points.length; x++)
-			for (int y = 0; y < points[x].length; y++)
-				if (points[x][y] > 1)
-					points[x][y] = 0;
+		version++;
+		for (int y = 0; y < terrain.getHeight(); y++)
+			for (int x = 0; x < terrain.getWidth(); x++)
+				if (terrain.get(x, y) > 1)
+					terrain.set(x, y, EMPTY);
+		terrain.compact();
+		potentiallyVisibleSet = null;
+		synchronized (reachabilityIndices)
+		{
+			reachabilityIndices.clear();
+		}
+		synchronized (hierarchicalPathFinders)
+		{
+			hierarchicalPathFinders.clear();
+		}
+		synchronized (passabilityLog)
+		{
+			clearanceMap = null;
+			summedAreaTable = null;
+			passabilityChangeCount += PASSABILITY_LOG_SIZE;
+		}
+		version++;
 	}
 
 	/**
@@ -805,8 +1104,377 @@ public class Map
 	 */
 	public void setPoint(int x, int y, int value)
 	{
-		if (!isOutOfBounds(new Point(x, y)) && x > 0 && y > 0 && x < getWidth() - 1 && y < getHeight() - 1)
-			points[x][y] = value;
+		if (!isOutOfBounds(x, y) && x > 0 && y > 0 && x < getWidth() - 1 && y < getHeight() - 1)
+		{
+			if (terrain.get(x, y) == value)
+				return;
+			boolean wasFree    = terrain.get(x, y) == EMPTY;
+			boolean wasOpaque  = terrain.get(x, y) > 0;
+			version++;
+			terrain.set(x, y, value);
+			PotentiallyVisibleSet potentiallyVisibleSet = this.potentiallyVisibleSet;
+			if (potentiallyVisibleSet != null && wasOpaque != (value > 0))
+				potentiallyVisibleSet.invalidate(x, y);
+			if (wasFree != (value == EMPTY))
+				passabilityDidChange(x, y);
+			version++;
+		}
+	}
+
+	/**
+	 * Setzt das Verfahren zur Berechnung sichtbarer Punkte.
+	 * Standardmaessig wird symmetrisches Shadowcasting verwendet.
+	 * @param visibilityStrategy Verfahren zur Sichtbarkeitsberechnung
+	 * @see ShadowcastingVisibility
+	 * @see RayCastingVisibility
+	 */
+	public void setVisibilityStrategy(final VisibilityStrategy visibilityStrategy)
+	{
+		if (visibilityStrategy == null)
+			throw new NullPointerException("Visibility strategy must not be null.");
+		this.visibilityStrategy = visibilityStrategy;
+		visibilityCache.clear();
+	}
+
+	/**
+	 * Ueberprueft, ob der gegebene Bereich erreicht werden kann.
+	 * Hierzu wird die Anzahl unbegehbarer Punkte des Bereichs aus der
+	 * Summentabelle bestimmt, sodass auch schmale Hindernisse innerhalb
+	 * des Bereichs erkannt werden.
+	 * @param x x-Koordinate der linken oberen Ecke
+	 * @param y y-Koordinate der linken oberen Ecke
+	 * @param width Breite des Bereichs
+	 * @param height Hoehe des Bereichs
+	 * @return true, wenn der Bereich erreicht werden kann, sonst false
+	 */
+	boolean canMoveTo(int x, int y, int width, int height)
+	{
+		SummedAreaTable summedAreaTable = this.summedAreaTable;
+		if (summedAreaTable == null)
+			summedAreaTable = createSummedAreaTable();
+		return summedAreaTable.isFree(x, y, width, height);
+	}
+
+	/**
+	 * Ueberprueft, ob der gegebene Bereich vollstaendig begehbar ist.
+	 * Das Ergebnis entspricht canMoveTo, es wird jedoch die Freiraumkarte verwendet,
+	 * welche fuer die Pfadsuche nur einen Feldzugriff pro Pruefung benoetigt.
+	 * @param x x-Koordinate der linken oberen Ecke
+	 * @param y y-Koordinate der linken oberen Ecke
+	 * @param width Breite des Bereichs
+	 * @param height Hoehe des Bereichs
+	 * @return true, wenn der Bereich erreicht werden kann, sonst false
+	 */
+	boolean fits(int x, int y, int width, int height)
+	{
+		ClearanceMap clearanceMap = this.clearanceMap;
+		if (clearanceMap == null)
+			clearanceMap = createClearanceMap();
+		return clearanceMap.fits(x, y, width, height);
+	}
+
+	/**
+	 * Gibt den Wert eines Punktes ohne Ueberpruefung der Koordinaten an.
+	 * Der Punkt muss innerhalb der Karte liegen.
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 * @return Wert des Punktes
+	 */
+	int getPointUnchecked(int x, int y)
+	{
+		return terrain.get(x, y);
+	}
+
+	/**
+	 * Gibt die potentiell sichtbaren Zellen der Karte zurueck und erstellt diese bei Bedarf
+	 * @return Menge potentiell sichtbarer Zellen
+	 */
+	PotentiallyVisibleSet getPotentiallyVisibleSet()
+	{
+		PotentiallyVisibleSet potentiallyVisibleSet = this.potentiallyVisibleSet;
+		if (potentiallyVisibleSet == null)
+		{
+			synchronized (this)
+			{
+				potentiallyVisibleSet = this.potentiallyVisibleSet;
+				if (potentiallyVisibleSet == null)
+					this.potentiallyVisibleSet = potentiallyVisibleSet = new PotentiallyVisibleSet(this);
+			}
+		}
+		return potentiallyVisibleSet;
+	}
+
+	/**
+	 * Gibt die Anzahl der bisherigen Veraenderungen der Karte an.
+	 * Der Wert steigt bei jeder Veraenderung monoton an, hierdurch koennen aus der Karte
+	 * berechnete Daten auf Aktualitaet geprueft werden.
+	 * <br>
+	 * Der Wert wird zu Beginn und am Ende jeder Veraenderung erhoeht und ist waehrend
+	 * einer Veraenderung ungerade. Eine Berechnung auf einem anderen Thread ist somit nur
+	 * dann gueltig, wenn der Wert vor der Berechnung gerade war und sich danach nicht
+	 * veraendert hat.
+	 * @return Anzahl der Veraenderungen
+	 */
+	public int getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Gibt die Anzahl der bisherigen Begehbarkeitsaenderungen an
+	 * @return Anzahl der Begehbarkeitsaenderungen
+	 * @see #getPassabilityChanges(int)
+	 */
+	int getPassabilityChangeCount()
+	{
+		synchronized (passabilityLog)
+		{
+			return passabilityChangeCount;
+		}
+	}
+
+	/**
+	 * Gibt die Punkte zurueck, deren Begehbarkeit sich seit der gegebenen Anzahl
+	 * an Begehbarkeitsaenderungen veraendert hat. Hierdurch koennen aus der Karte berechnete
+	 * Daten nur dann verworfen werden, wenn eine Aenderung diese betrifft.
+	 * @param changeCount Anzahl der Begehbarkeitsaenderungen bei der letzten Abfrage
+	 * @return Indizes (y * Breite + x) der veraenderten Punkte oder null, wenn diese
+	 * nicht mehr bekannt sind
+	 */
+	int[] getPassabilityChanges(int changeCount)
+	{
+		synchronized (passabilityLog)
+		{
+			int count = passabilityChangeCount - changeCount;
+			if (count < 0 || count > PASSABILITY_LOG_SIZE)
+				return null;
+			int[] changes = new int[count];
+			for (int i = 0; i < count; i++)
+				changes[i] = passabilityLog[changeCount + i & PASSABILITY_LOG_SIZE - 1];
+			return changes;
+		}
+	}
+
+	/**
+	 * Erstellt die Freiraumkarte und veroeffentlicht diese, falls sie nicht bereits existiert.
+	 * Die Karte wird ausserhalb jeder Sperre erstellt. Aendert sich waehrend der Erstellung
+	 * die Begehbarkeit eines Punktes, wird sie erneut erstellt, da passabilityDidChange die
+	 * noch nicht veroeffentlichte Karte nicht aktualisieren kann.
+	 * @return veroeffentlichte Freiraumkarte
+	 */
+	private ClearanceMap createClearanceMap()
+	{
+		while (true)
+		{
+			int          changeCount  = getPassabilityChangeCount();
+			ClearanceMap clearanceMap = new ClearanceMap(this);
+
+			/*
+			Die Veroeffentlichung erfolgt unter derselben Sperre, unter welcher passabilityDidChange
+			eine Aenderung vermerkt und die Freiraumkarte abfragt. Jede Aenderung wird somit
+			entweder vor der Veroeffentlichung bemerkt oder danach auf die Karte angewendet.
+			 */
+			synchronized (passabilityLog)
+			{
+				if (this.clearanceMap != null)
+					return this.clearanceMap;
+				if (changeCount == passabilityChangeCount)
+					return this.clearanceMap = clearanceMap;
+			}
+		}
+	}
+
+	/**
+	 * Erstellt die Summentabelle und veroeffentlicht diese, falls sie nicht bereits existiert.
+	 * Wie bei der Freiraumkarte wird die Tabelle erneut erstellt, wenn sich waehrend der
+	 * Erstellung die Begehbarkeit eines Punktes aendert.
+	 * @return veroeffentlichte Summentabelle
+	 * @see #createClearanceMap()
+	 */
+	private SummedAreaTable createSummedAreaTable()
+	{
+		while (true)
+		{
+			int             changeCount     = getPassabilityChangeCount();
+			SummedAreaTable summedAreaTable = new SummedAreaTable(this);
+			synchronized (passabilityLog)
+			{
+				if (this.summedAreaTable != null)
+					return this.summedAreaTable;
+				if (changeCount == passabilityChangeCount)
+					return this.summedAreaTable = summedAreaTable;
+			}
+		}
+	}
+
+	/**
+	 * Gibt den Erreichbarkeitsindex fuer Aktoren der gegebenen Groesse zurueck
+	 * und erstellt diesen, falls er noch nicht existiert.
+	 * @param width Breite des Aktors
+	 * @param height Hoehe des Aktors
+	 * @return Erreichbarkeitsindex
+	 */
+	private ReachabilityIndex getReachabilityIndex(int width, int height)
+	{
+		width = max(width, 1);
+		height = max(height, 1);
+		int key = width << 16 | height;
+		while (true)
+		{
+			int version;
+			synchronized (reachabilityIndices)
+			{
+				ReachabilityIndex index = reachabilityIndices.get(key);
+				if (index != null)
+					return index;
+				version = this.version;
+			}
+
+			/*
+			Der Index wird ausserhalb der Sperre erstellt, sodass Indizes verschiedener
+			Aktorgroessen gleichzeitig erstellt werden koennen.
+			 */
+			ReachabilityIndex index = new ReachabilityIndex(this, width, height);
+			synchronized (reachabilityIndices)
+			{
+				if (version == this.version)
+				{
+					ReachabilityIndex existing = reachabilityIndices.putIfAbsent(key, index);
+					return existing != null ? existing : index;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gibt die hierarchische Pfadsuche fuer Aktoren der gegebenen Groesse zurueck
+	 * und erstellt diese, falls sie noch nicht existiert.
+	 * @param width Breite des Aktors
+	 * @param height Hoehe des Aktors
+	 * @return Hierarchische Pfadsuche
+	 */
+	private HierarchicalPathFinder getHierarchicalPathFinder(int width, int height)
+	{
+		width = max(width, 1);
+		height = max(height, 1);
+		int key = width << 16 | height;
+		while (true)
+		{
+			int version;
+			synchronized (hierarchicalPathFinders)
+			{
+				HierarchicalPathFinder pathFinder = hierarchicalPathFinders.get(key);
+				if (pathFinder != null)
+					return pathFinder;
+				version = this.version;
+			}
+
+			/*
+			Die Pfadsuche wird ausserhalb der Sperre erstellt, sodass Pfadsuchen verschiedener
+			Aktorgroessen gleichzeitig erstellt werden koennen.
+			 */
+			HierarchicalPathFinder pathFinder = new HierarchicalPathFinder(this, width, height);
+			synchronized (hierarchicalPathFinders)
+			{
+				if (version == this.version)
+				{
+					HierarchicalPathFinder existing = hierarchicalPathFinders.putIfAbsent(key, pathFinder);
+					return existing != null ? existing : pathFinder;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ueberprueft, ob ein Punkt ausserhalb der Karte liegt
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 * @return true, wenn der Punkt ausserhalb der Karte liegt, sonst false
+	 */
+	boolean isOutOfBounds(int x, int y)
+	{
+		return x < 0 || y < 0 || x >= getWidth() || y >= getHeight();
+	}
+
+	/**
+	 * Gibt an, ob zwischen zwei Punkten keine Wand liegt.
+	 * Die Punkte der Strecke werden nach Bresenham ohne Gleitkommaarithmetik bestimmt, die
+	 * Endpunkte selbst werden nicht geprueft. Die Strecke wird unabhaengig von der Reihenfolge
+	 * der Endpunkte immer in derselben Richtung abgetastet, sodass das Ergebnis symmetrisch ist.
+	 */
+	private boolean isLineFree(int fromX, int fromY, int toX, int toY)
+	{
+		if (fromX > toX || fromX == toX && fromY > toY)
+			return isLineFree(toX, toY, fromX, fromY);
+
+		int dx    = toX - fromX;
+		int dy    = Math.abs(toY - fromY);
+		int stepY = fromY < toY ? 1 : -1;
+		int error = dx - dy;
+		int x     = fromX;
+		int y     = fromY;
+		while (true)
+		{
+			int doubledError = 2 * error;
+			if (doubledError > -dy)
+			{
+				error -= dy;
+				x++;
+			}
+			if (doubledError < dx)
+			{
+				error += dx;
+				y += stepY;
+			}
+			if (x == toX && y == toY)
+				return true;
+			if (isWall(x, y))
+				return false;
+		}
+	}
+
+	/**
+	 * Gibt an, ob der gegebene Punkt die Sicht versperrt. Punkte ausserhalb der Karte
+	 * versperren die Sicht nicht.
+	 */
+	private boolean isWall(int x, int y)
+	{
+		return !isOutOfBounds(x, y) && getPointUnchecked(x, y) > 0;
+	}
+
+	/**
+	 * Wird aufgerufen, wenn ein Punkt begehbar oder unbegehbar geworden ist.
+	 * Wird eine Wand zu Wasser, aendert sich die Begehbarkeit nicht.
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 */
+	private void passabilityDidChange(int x, int y)
+	{
+		ClearanceMap    clearanceMap;
+		SummedAreaTable summedAreaTable;
+		synchronized (passabilityLog)
+		{
+			passabilityLog[passabilityChangeCount++ & PASSABILITY_LOG_SIZE - 1] = y * getWidth() + x;
+			clearanceMap = this.clearanceMap;
+			summedAreaTable = this.summedAreaTable;
+		}
+		if (clearanceMap != null)
+			clearanceMap.update(x, y);
+		if (summedAreaTable != null)
+			summedAreaTable.update(x, y);
+		if (terrain.get(x, y) == EMPTY)
+		{
+			synchronized (reachabilityIndices)
+			{
+				for (ReachabilityIndex reachabilityIndex : reachabilityIndices.values())
+					reachabilityIndex.pointDidBecomePassable(x, y);
+			}
+		}
+		synchronized (hierarchicalPathFinders)
+		{
+			for (HierarchicalPathFinder pathFinder : hierarchicalPathFinders.values())
+				pathFinder.invalidate(x, y);
+		}
 	}
 
 	/**
@@ -819,7 +1487,7 @@ public class Map
 		List<Rectangle> features = new ArrayList<>();
 		for (int x = 0; x < getWidth(); x+=horizontalScale)
 			for (int y = 0; y < getHeight(); y += verticalScale)
-				if (points[x][y] == identifier)
+				if (terrain.get(x, y) == identifier)
 					features.add(new Rectangle(x, y, horizontalScale, verticalScale));
 		return features.toArray(new Rectangle[features.size()]);
 	}
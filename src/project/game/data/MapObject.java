@@ -32,7 +32,6 @@ import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.net.URL;
@@ -46,7 +45,9 @@ import java.util.Properties;
  * Wird eine Subklasse erstellt, so muss diese saemtliche Eigenschaften, die nicht wiederhergestellt
  * werden muessen, als transient-Felder gespeichert werden, da die Serialisierung eines solchen Objekts
  * minimal klein gehalten werden muss. Auf die Properties kann mithilfe der Instanzvariable properties
- * zur Initialisierung zugegriffen werden.
+ * zur Initialisierung zugegriffen werden. Diese werden von allen Objekten derselben Quelle gemeinsam
+ * verwendet und duerfen nicht veraendert werden. Skill-Konfigurationen sind mit loadSkillConfiguration
+ * zu erstellen.
  *
  * @see Key
  * @see Enemy
@@ -75,6 +76,12 @@ public abstract class MapObject implements Serializable
 	 */
 	protected transient Properties        properties;
 
+	/**
+	 * Gemeinsame Vorlage aller Objekte derselben Quelle zum Laden des Objekts.
+	 * Null, wenn das Objekt aus Properties erstellt wird.
+	 */
+	private   transient ObjectTemplate    template;
+
 	/**
 	 * Grundstatus des Objekts
 	 */
@@ -120,13 +127,13 @@ public abstract class MapObject implements Serializable
 
 		this.source = source;
 
-		properties = new Properties();
-		InputStream stream = source.openStream();
-		properties.load(stream);
+		template = ObjectTemplate.forSource(source);
+		properties = template.getProperties();
 
 		restore();
 
 		properties = null;
+		template = null;
 	}
 
 	/**
@@ -234,6 +241,21 @@ public abstract class MapObject implements Serializable
 		setBounds(bounds);
 	}
 
+	/**
+	 * Erstellt eine Skill-Konfiguration mit dem gegebenen Praefix aus den Properties des Objekts.
+	 * Existiert eine Vorlage, wird deren bereits eingelesene Konfiguration kopiert.
+	 * @param prefix Property-Prefix
+	 * @return neue Skill-Konfiguration
+	 */
+	protected SkillConfiguration loadSkillConfiguration(String prefix)
+	{
+		if (template != null)
+			return template.createSkillConfiguration(prefix);
+		SkillConfiguration configuration = new SkillConfiguration();
+		configuration.load(properties, prefix);
+		return configuration;
+	}
+
 	/**
 	 * Stellt das Objekt aus der Properties-File properties
 	 * wieder her. Ist zu ueberschreiben, wenn eine Subklasse erstellt wird,
@@ -266,12 +288,13 @@ public abstract class MapObject implements Serializable
 	{
 		in.defaultReadObject();
 
-		properties = new Properties();
-		properties.load(source.openStream());
+		template = ObjectTemplate.forSource(source);
+		properties = template.getProperties();
 
 		restore();
 
 		properties = null;
+		template = null;
 	}
 
 }
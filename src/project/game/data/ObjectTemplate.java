@@ -0,0 +1,113 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unveraenderliche Vorlage eines Objekts eines Levels.
+ * <br>
+ * Jede Properties-File wird nur einmalig gelesen, alle Objekte derselben Quelle
+ * verwenden dieselbe Vorlage. Skill-Konfigurationen werden ebenfalls nur einmalig
+ * eingelesen und fuer jedes Objekt mit einem eigenen SkillExecutor kopiert.
+ * <br>
+ * Die Properties einer Vorlage werden gemeinsam verwendet und duerfen nicht veraendert werden.
+ */
+final class ObjectTemplate
+{
+	/**
+	 * Vorlagen nach Quellurl.
+	 * Als Schluessel dient die Zeichenkette der URL, da URL.equals Hostnamen aufloest.
+	 */
+	private static final java.util.Map<String, ObjectTemplate> templates = new ConcurrentHashMap<>();
+
+	/**
+	 * Gibt die Vorlage fuer die Properties-File an der gegebenen Quelle zurueck.
+	 * Die Datei wird nur beim ersten Aufruf gelesen.
+	 * @param source Ort der Properties-File
+	 * @return Vorlage
+	 * @throws IOException wenn die Datei nicht existiert oder nicht gelesen werden kann
+	 */
+	static ObjectTemplate forSource(URL source) throws IOException
+	{
+		ObjectTemplate template = templates.get(source.toString());
+		if (template != null)
+			return template;
+
+		Properties properties = new Properties();
+		try (InputStream stream = source.openStream())
+		{
+			properties.load(stream);
+		}
+		template = new ObjectTemplate(properties);
+		ObjectTemplate existing = templates.putIfAbsent(source.toString(), template);
+		return existing != null ? existing : template;
+	}
+
+	private final Properties properties;
+
+	/**
+	 * Eingelesene Skill-Konfigurationen nach Praefix
+	 */
+	private final java.util.Map<String, SkillConfiguration> skillConfigurations = new ConcurrentHashMap<>();
+
+	private ObjectTemplate(Properties properties)
+	{
+		this.properties = properties;
+	}
+
+	/**
+	 * Erstellt eine Skill-Konfiguration mit dem gegebenen Praefix.
+	 * Die Werte werden nur beim ersten Aufruf eingelesen, jede Konfiguration
+	 * erhaelt jedoch einen eigenen SkillExecutor.
+	 * @param prefix Property-Prefix
+	 * @return neue Skill-Konfiguration
+	 */
+	SkillConfiguration createSkillConfiguration(String prefix)
+	{
+		SkillConfiguration template = skillConfigurations.computeIfAbsent(prefix, key -> {
+			SkillConfiguration configuration = new SkillConfiguration();
+			configuration.load(properties, key);
+			return configuration;
+		});
+		return new SkillConfiguration(template, properties, prefix);
+	}
+
+	/**
+	 * Gibt die gemeinsamen Properties der Vorlage zurueck.
+	 * Diese duerfen nicht veraendert werden.
+	 * @return Properties der Vorlage
+	 */
+	Properties getProperties()
+	{
+		return properties;
+	}
+}
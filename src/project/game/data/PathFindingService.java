@@ -0,0 +1,441 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+package project.game.data;
+
+import java.awt.Point;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Dienst zur asynchronen Pfadsuche.
+ * <br>
+ * Pfadsuchen werden von einem Pool von Hintergrundthreads ausgefuehrt, sodass die Gameloop
+ * nicht auf deren Ergebnis warten muss. Gleichzeitig ausstehende Anfragen mit demselben
+ * Start, Ziel und derselben Aktorgroesse werden nur einmal berechnet. Stellt ein Anfragender
+ * eine neue Anfrage, wird seine vorherige Anfrage verworfen und, falls diese von keinem
+ * anderen Anfragenden benoetigt wird, abgebrochen.
+ * <br>
+ * Ein Abbruch entfernt wartende Suchen. Bereits laufende Suchen pruefen vor jedem
+ * ueberprueften Punkt, ob sie abgebrochen wurden, und werden dann vorzeitig beendet.
+ * <br>
+ * Ergebnisse, waehrend deren Berechnung die Karte veraendert wurde, werden verworfen und
+ * neu berechnet, sodass jedes Ergebnis einem unveraenderten Zustand der Karte entspricht.
+ */
+public class PathFindingService
+{
+	/**
+	 * Schluessel einer Anfrage zur Erkennung gleicher Anfragen.
+	 * Enthaelt nur die Parameter der Suche, sodass gleiche Anfragen auch dann zusammengefasst
+	 * werden, wenn sie mit der inkrementellen Pfadsuche verschiedener Aktoren gestellt wurden.
+	 */
+	private static final class RequestKey
+	{
+		private final Point   from;
+		private final int     height;
+		private final boolean hierarchical;
+		private final Map     map;
+		private final int     maxCost;
+		private final int     maxExpansions;
+		private final Point   to;
+		private final int     width;
+
+		private RequestKey(final Map map, final Point from, final Point to, final int width, final int height,
+		                   final int maxExpansions, final int maxCost, final boolean hierarchical)
+		{
+			this.map = map;
+			this.from = new Point(from);
+			this.to = new Point(to);
+			this.width = width;
+			this.height = height;
+			this.maxExpansions = maxExpansions;
+			this.maxCost = maxCost;
+			this.hierarchical = hierarchical;
+		}
+
+		@Override
+		public boolean equals(final Object o)
+		{
+			if (this == o)
+				return true;
+			if (!(o instanceof RequestKey))
+				return false;
+			RequestKey other = (RequestKey) o;
+			return map == other.map && from.equals(other.from) && to.equals(other.to) && width == other.width &&
+			       height == other.height && maxExpansions == other.maxExpansions && maxCost == other.maxCost &&
+			       hierarchical == other.hierarchical;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(System.identityHashCode(map), from, to, width, height, maxExpansions, maxCost,
+			                    hierarchical);
+		}
+	}
+
+	/**
+	 * Ausstehende Suche, welche von einem oder mehreren Anfragenden benoetigt wird
+	 */
+	private static final class PendingSearch
+	{
+		/**
+		 * Wird gesetzt, sobald die Suche von keinem Anfragenden mehr benoetigt wird.
+		 * Die Suchschleifen pruefen diese Markierung vor jedem ueberprueften Punkt.
+		 */
+		private volatile boolean                       cancelled;
+		private final    RequestKey                    key;
+		private final    IncrementalPathPlanner        planner;
+		private          int                           requesterCount;
+		private final    CompletableFuture<PathResult> result;
+		private          Future<?>                     task;
+
+		private PendingSearch(final RequestKey key, final IncrementalPathPlanner planner)
+		{
+			this.key = key;
+			this.planner = planner;
+			this.result = new CompletableFuture<>();
+		}
+	}
+
+	/**
+	 * Anfrage eines einzelnen Anfragenden
+	 */
+	private static final class Subscription
+	{
+		private final CompletableFuture<PathResult> future;
+		private final PendingSearch                 search;
+
+		private Subscription(final PendingSearch search, final CompletableFuture<PathResult> future)
+		{
+			this.search = search;
+			this.future = future;
+		}
+	}
+
+	/**
+	 * Maximale Anzahl an Versuchen einer Suche, waehrend der sich die Karte veraendert
+	 */
+	private static final int MAX_ATTEMPTS = 4;
+
+	/**
+	 * Gemeinsam genutzter Dienst
+	 */
+	private static final PathFindingService defaultService =
+			new PathFindingService(Math.max(Runtime.getRuntime().availableProcessors() - 1, 1));
+
+	/**
+	 * Ausstehende Suchen
+	 */
+	private final java.util.Map<RequestKey, PendingSearch> pendingSearches = new HashMap<>();
+
+	/**
+	 * Letzte Anfrage jedes Anfragenden
+	 */
+	private final java.util.Map<Object, Subscription> subscriptions = new HashMap<>();
+
+	/**
+	 * Hintergrundthreads zur Ausfuehrung der Suchen
+	 */
+	private final ExecutorService workers;
+
+	/**
+	 * Erstellt einen neuen Dienst mit der gegebenen Anzahl an Hintergrundthreads
+	 * @param threadCount Anzahl an Hintergrundthreads
+	 */
+	public PathFindingService(int threadCount)
+	{
+		AtomicInteger threadNumber = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(threadCount, runnable -> {
+			Thread thread = new Thread(runnable, "PathFinder-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Gibt den gemeinsam genutzten Dienst zurueck.
+	 * Dieser verwendet einen Hintergrundthread weniger als Prozessoren vorhanden sind,
+	 * mindestens jedoch einen.
+	 * @return gemeinsamer Dienst
+	 */
+	public static PathFindingService getDefault()
+	{
+		return defaultService;
+	}
+
+	/**
+	 * Verwirft die ausstehende Anfrage des gegebenen Anfragenden.
+	 * Wird die Suche von keinem anderen Anfragenden benoetigt, wird diese abgebrochen.
+	 * @param requester Anfragender
+	 */
+	public synchronized void cancel(Object requester)
+	{
+		Subscription subscription = subscriptions.remove(requester);
+		if (subscription != null)
+			release(subscription);
+	}
+
+	/**
+	 * Sucht asynchron einen Pfad zwischen den gegebenen Punkten mit begrenztem Aufwand.
+	 * Eine vorherige, noch ausstehende Anfrage desselben Anfragenden wird verworfen.
+	 * @param requester Anfragender oder null, wenn die Anfrage keine vorherige Anfrage ersetzen soll
+	 * @param map Karte
+	 * @param fromPoint Ausgangspunkt
+	 * @param toPoint Zielpunkt
+	 * @param width Breite des Aktors
+	 * @param height Hoehe des Aktors
+	 * @param maxExpansions maximale Anzahl ueberpruefter Punkte
+	 * @param maxCost maximale Kosten des Pfades
+	 * @return Ergebnis der Suche, sobald diese beendet wurde
+	 * @see Map#findPath(Point, Point, int, int, int, int)
+	 */
+	public CompletableFuture<PathResult> findPath(Object requester, Map map, Point fromPoint, Point toPoint,
+	                                              int width, int height, int maxExpansions, int maxCost)
+	{
+		return submit(requester, new RequestKey(map, fromPoint, toPoint, width, height, maxExpansions, maxCost,
+		                                        false), null);
+	}
+
+	/**
+	 * Sucht asynchron einen Pfad zwischen den gegebenen Punkten ohne Begrenzung.
+	 * @param map Karte
+	 * @param fromPoint Ausgangspunkt
+	 * @param toPoint Zielpunkt
+	 * @param width Breite des Aktors
+	 * @param height Hoehe des Aktors
+	 * @return Ergebnis der Suche, sobald diese beendet wurde
+	 * @see Map#findPath(Point, Point, int, int)
+	 */
+	public CompletableFuture<PathResult> findPath(Map map, Point fromPoint, Point toPoint, int width, int height)
+	{
+		return findPath(null, map, fromPoint, toPoint, width, height, Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Sucht asynchron einen Pfad mit der gegebenen inkrementellen Pfadsuche, sodass deren
+	 * Suchbaum zwischen den Anfragen eines verfolgenden Aktors weiterverwendet wird.
+	 * Steht bereits eine gleiche Suche aus, wird deren Ergebnis verwendet.
+	 * Eine vorherige, noch ausstehende Anfrage desselben Anfragenden wird verworfen.
+	 * @param requester Anfragender oder null, wenn die Anfrage keine vorherige Anfrage ersetzen soll
+	 * @param planner inkrementelle Pfadsuche des Anfragenden
+	 * @param fromPoint Ausgangspunkt
+	 * @param toPoint Zielpunkt
+	 * @param maxExpansions maximale Anzahl ueberpruefter Punkte
+	 * @param maxCost maximale Kosten des Pfades
+	 * @return Ergebnis der Suche, sobald diese beendet wurde
+	 * @see IncrementalPathPlanner#findPath(Point, Point, int, int)
+	 */
+	public CompletableFuture<PathResult> findPath(Object requester, IncrementalPathPlanner planner, Point fromPoint,
+	                                              Point toPoint, int maxExpansions, int maxCost)
+	{
+		return submit(requester, new RequestKey(planner.getMap(), fromPoint, toPoint, planner.getActorWidth(),
+		                                        planner.getActorHeight(), maxExpansions, maxCost, false), planner);
+	}
+
+	/**
+	 * Sucht asynchron einen Pfad ueber die hierarchische Pfadsuche der Karte.
+	 * Eine vorherige, noch ausstehende Anfrage desselben Anfragenden wird verworfen.
+	 * @param requester Anfragender oder null, wenn die Anfrage keine vorherige Anfrage ersetzen soll
+	 * @param map Karte
+	 * @param fromPoint Ausgangspunkt
+	 * @param toPoint Zielpunkt
+	 * @param width Breite des Aktors
+	 * @param height Hoehe des Aktors
+	 * @return Ergebnis der Suche, sobald diese beendet wurde
+	 * @see Map#findHierarchicalPath(Point, Point, int, int)
+	 */
+	public CompletableFuture<PathResult> findHierarchicalPath(Object requester, Map map, Point fromPoint,
+	                                                          Point toPoint, int width, int height)
+	{
+		return submit(requester, new RequestKey(map, fromPoint, toPoint, width, height, Integer.MAX_VALUE,
+		                                        Integer.MAX_VALUE, true), null);
+	}
+
+	/**
+	 * Beendet die Hintergrundthreads des Dienstes.
+	 * Ausstehende Suchen werden nicht mehr ausgefuehrt.
+	 */
+	public void shutdown()
+	{
+		workers.shutdownNow();
+	}
+
+	/**
+	 * Fuehrt eine ausstehende Suche aus, sofern diese nicht bereits abgebrochen wurde.
+	 * <br>
+	 * Die Karte kann waehrend der Suche von der Gameloop veraendert werden. Veraendert sich
+	 * die Version der Karte waehrend der Suche, wird das Ergebnis verworfen und die Suche
+	 * wiederholt, nach MAX_ATTEMPTS Versuchen wird die Suche mit einem Fehler beendet.
+	 * @param pendingSearch auszufuehrende Suche
+	 */
+	private static void execute(PendingSearch pendingSearch)
+	{
+		RequestKey key = pendingSearch.key;
+		for (int attempt = 1; !pendingSearch.result.isDone() && !pendingSearch.cancelled; attempt++)
+		{
+			int        version = key.map.getVersion();
+			PathResult result  = null;
+			Throwable  error   = null;
+			try
+			{
+				result = search(pendingSearch);
+			}
+			catch (RuntimeException e)
+			{
+				error = e;
+			}
+			if ((version & 1) == 0 && version == key.map.getVersion())
+			{
+				if (error != null)
+					pendingSearch.result.completeExceptionally(error);
+				else
+					pendingSearch.result.complete(result);
+			}
+			else if (attempt >= MAX_ATTEMPTS)
+				pendingSearch.result.completeExceptionally(
+						new ConcurrentModificationException("Map changed during path search."));
+		}
+	}
+
+	/**
+	 * Fuehrt eine Suche aus. Die Suche wird vorzeitig beendet, sobald sie abgebrochen wurde.
+	 * @param pendingSearch auszufuehrende Suche
+	 * @return Ergebnis der Suche
+	 */
+	private static PathResult search(PendingSearch pendingSearch)
+	{
+		RequestKey      key       = pendingSearch.key;
+		BooleanSupplier cancelled = () -> pendingSearch.cancelled;
+		if (pendingSearch.planner != null)
+			return pendingSearch.planner.findPath(key.from, key.to, key.maxExpansions, key.maxCost, cancelled);
+		if (key.hierarchical)
+		{
+			Point[] path = key.map.findHierarchicalPath(key.from, key.to, key.width, key.height, cancelled);
+			if (path == null && pendingSearch.cancelled)
+				return new PathResult(PathResult.Status.CANCELLED, null, 0);
+			return new PathResult(path != null ? PathResult.Status.FOUND : PathResult.Status.NOT_FOUND, path, 0);
+		}
+		return key.map.findPath(key.from, key.to, key.width, key.height, key.maxExpansions, key.maxCost, cancelled);
+	}
+
+	/**
+	 * Gibt einen Anfragenden von einer Suche frei und bricht die Suche ab,
+	 * falls diese nicht mehr benoetigt wird.
+	 * @param subscription Anfrage
+	 */
+	private void release(Subscription subscription)
+	{
+		subscription.future.cancel(false);
+		PendingSearch search = subscription.search;
+		if (--search.requesterCount > 0 || search.result.isDone())
+			return;
+		if (pendingSearches.get(search.key) == search)
+			pendingSearches.remove(search.key);
+		/*
+		Eine bereits laufende Suche wird nicht unterbrochen, sondern prueft die Markierung
+		selbst und beendet sich beim naechsten ueberprueften Punkt.
+		 */
+		search.cancelled = true;
+		search.result.cancel(false);
+		if (search.task != null)
+			search.task.cancel(false);
+	}
+
+	/**
+	 * Stellt eine Anfrage, welche entweder einer ausstehenden, gleichen Suche angeschlossen
+	 * oder als neue Suche ausgefuehrt wird.
+	 * @param requester Anfragender oder null
+	 * @param key Parameter der Suche
+	 * @param planner inkrementelle Pfadsuche, mit welcher eine neue Suche ausgefuehrt wird, oder null
+	 * @return Ergebnis der Suche fuer diesen Anfragenden
+	 */
+	private synchronized CompletableFuture<PathResult> submit(Object requester, RequestKey key,
+	                                                          IncrementalPathPlanner planner)
+	{
+		if (requester != null)
+		{
+			Subscription previous = subscriptions.get(requester);
+			if (previous != null)
+			{
+				if (previous.search.key.equals(key) && !previous.future.isDone())
+					return previous.future;
+				subscriptions.remove(requester);
+				release(previous);
+			}
+		}
+
+		PendingSearch search = pendingSearches.get(key);
+		if (search == null)
+		{
+			PendingSearch newSearch = new PendingSearch(key, planner);
+			pendingSearches.put(key, newSearch);
+			newSearch.task = workers.submit(() -> {
+				try
+				{
+					execute(newSearch);
+				}
+				catch (Throwable t)
+				{
+					newSearch.result.completeExceptionally(t);
+				}
+				synchronized (this)
+				{
+					if (pendingSearches.get(key) == newSearch)
+						pendingSearches.remove(key);
+				}
+			});
+			search = newSearch;
+		}
+		search.requesterCount++;
+
+		/*
+		Jeder Anfragende erhaelt ein eigenes Ergebnis, sodass ein Abbruch durch einen
+		Anfragenden die Suche fuer andere Anfragende nicht beeinflusst.
+		 */
+		CompletableFuture<PathResult> future = search.result.thenApply(Function.identity());
+		if (requester != null)
+		{
+			Subscription subscription = new Subscription(search, future);
+			subscriptions.put(requester, subscription);
+			future.whenComplete((result, error) -> {
+				synchronized (this)
+				{
+					if (subscriptions.get(requester) == subscription)
+						subscriptions.remove(requester);
+				}
+			});
+		}
+		return future;
+	}
+}
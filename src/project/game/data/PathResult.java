@@ -0,0 +1,116 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+package project.game.data;
+
+import java.awt.Point;
+
+/**
+ * Ergebnis einer begrenzten Pfadsuche.
+ * Enthaelt neben dem gefundenen Pfad den Grund, aus welchem die Suche beendet wurde.
+ */
+public class PathResult
+{
+	/**
+	 * Grund der Beendigung einer Pfadsuche
+	 */
+	public enum Status
+	{
+		/**
+		 * Ein Pfad wurde gefunden
+		 */
+		FOUND,
+		/**
+		 * Es existiert kein Pfad zum Zielpunkt
+		 */
+		NOT_FOUND,
+		/**
+		 * Es existiert kein Pfad, dessen Kosten die maximalen Kosten nicht ueberschreiten
+		 */
+		COST_EXCEEDED,
+		/**
+		 * Die maximale Anzahl zu ueberpruefender Punkte wurde ueberschritten,
+		 * bevor die Suche beendet werden konnte
+		 */
+		BUDGET_EXCEEDED,
+		/**
+		 * Die Suche wurde abgebrochen, da ihr Ergebnis nicht mehr benoetigt wird
+		 */
+		CANCELLED
+	}
+
+	private final int     expansionCount;
+	private final Point[] path;
+	private final Status  status;
+
+	/**
+	 * Erstellt ein neues Suchergebnis
+	 * @param status Grund der Beendigung
+	 * @param path gefundener Pfad oder null
+	 * @param expansionCount Anzahl ueberpruefter Punkte
+	 */
+	PathResult(final Status status, final Point[] path, final int expansionCount)
+	{
+		this.status = status;
+		this.path = path;
+		this.expansionCount = expansionCount;
+	}
+
+	/**
+	 * Gibt die Anzahl der waehrend der Suche ueberprueften Punkte an
+	 * @return Anzahl ueberpruefter Punkte
+	 */
+	public int getExpansionCount()
+	{
+		return expansionCount;
+	}
+
+	/**
+	 * Gibt den gefundenen Pfad ohne Ausgangspunkt zurueck
+	 * @return Pfad oder null, wenn kein Pfad gefunden wurde
+	 */
+	public Point[] getPath()
+	{
+		return path;
+	}
+
+	/**
+	 * Gibt den Grund an, aus welchem die Suche beendet wurde
+	 * @return Grund der Beendigung
+	 */
+	public Status getStatus()
+	{
+		return status;
+	}
+
+	/**
+	 * Gibt an, ob ein Pfad gefunden wurde
+	 * @return true, wenn ein Pfad gefunden wurde, sonst false
+	 */
+	public boolean isFound()
+	{
+		return status == Status.FOUND;
+	}
+}
@@ -0,0 +1,157 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+import project.util.BitMask;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+/**
+ * Dienst zur Wahrnehmung des Spielers durch andere Aktoren eines Levels.
+ * <br>
+ * Die fuer die Darstellung berechneten, vom Spieler aus sichtbaren Punkte werden zusammen mit
+ * dem Sichtpunkt und der Version der Karte veroeffentlicht. Da die Sichtbarkeit symmetrisch ist,
+ * kann ein Aktor den Spieler genau dann sehen, wenn sein Mittelpunkt fuer den Spieler sichtbar
+ * ist. Eine Abfrage erfordert somit nur einen Zugriff auf die veroeffentlichten Punkte.
+ * <br>
+ * Hat sich der Spieler seit der letzten Veroeffentlichung bewegt oder wurde die Karte veraendert,
+ * werden die sichtbaren Punkte fuer den entsprechend verschobenen Bereich neu bestimmt, wobei
+ * die Karte das Ergebnis fuer die anschliessende Darstellung zwischenspeichert.
+ * Fuer Punkte ausserhalb des Bereichs wird die Sichtlinie geprueft.
+ */
+public class PerceptionService
+{
+	private final Level level;
+
+	/**
+	 * Zuletzt veroeffentlichte sichtbare Punkte
+	 */
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Erstellt einen neuen Wahrnehmungsdienst fuer das gegebene Level
+	 * @param level Level
+	 */
+	PerceptionService(Level level)
+	{
+		this.level = level;
+	}
+
+	/**
+	 * Gibt an, ob der Spieler vom gegebenen Punkt aus sichtbar ist
+	 * @param point Punkt, in der Regel der Mittelpunkt eines Aktors
+	 * @return true, wenn der Spieler sichtbar ist, sonst false
+	 */
+	public boolean canSeePlayer(Point point)
+	{
+		Point    playerCenter = level.getPlayer().getCenter();
+		Snapshot snapshot     = getSnapshot(playerCenter);
+		if (snapshot != null && snapshot.bounds.contains(point))
+			return snapshot.visiblePoints.get(point.x - snapshot.bounds.x, point.y - snapshot.bounds.y);
+		return level.getMap().canSee(point, playerCenter);
+	}
+
+	/**
+	 * Gibt fuer mehrere Punkte an, ob der Spieler von diesen aus sichtbar ist
+	 * @param points Punkte
+	 * @param visible Ausgabe: visible[i] = true, wenn der Spieler von points[i] aus sichtbar ist
+	 * @throws IllegalArgumentException wenn die Ausgabe weniger Elemente als Punkte hat
+	 */
+	public void canSeePlayer(Point[] points, boolean[] visible)
+	{
+		if (visible.length < points.length)
+			throw new IllegalArgumentException(
+					"Output has " + visible.length + " elements for " + points.length + " points.");
+		Point    playerCenter = level.getPlayer().getCenter();
+		Snapshot snapshot     = getSnapshot(playerCenter);
+		for (int i = 0; i < points.length; i++)
+		{
+			if (snapshot != null && snapshot.bounds.contains(points[i]))
+				visible[i] = snapshot.visiblePoints.get(
+						points[i].x - snapshot.bounds.x,
+						points[i].y - snapshot.bounds.y);
+			else
+				visible[i] = level.getMap().canSee(points[i], playerCenter);
+		}
+	}
+
+	/**
+	 * Veroeffentlicht die vom Spieler aus sichtbaren Punkte.
+	 * Die Maske wird nicht kopiert und darf anschliessend nicht veraendert werden.
+	 * @param pointOfVision Sichtpunkt, der Mittelpunkt des Spielers
+	 * @param bounds Begrenzungen der Maske in Kartenkoordinaten
+	 * @param visiblePoints sichtbare Punkte innerhalb der Begrenzungen
+	 * @param version Version der Karte, fuer welche die Punkte berechnet wurden
+	 */
+	public void publish(Point pointOfVision, Rectangle bounds, BitMask visiblePoints, int version)
+	{
+		snapshot = new Snapshot(new Point(pointOfVision), new Rectangle(bounds), visiblePoints, version);
+	}
+
+	/**
+	 * Gibt die sichtbaren Punkte fuer den gegebenen Sichtpunkt und die aktuelle Version der Karte
+	 * zurueck und bestimmt diese neu, falls die veroeffentlichten Punkte nicht mehr aktuell sind.
+	 * @return sichtbare Punkte oder null, wenn noch keine Punkte veroeffentlicht wurden
+	 */
+	private Snapshot getSnapshot(Point playerCenter)
+	{
+		Snapshot snapshot = this.snapshot;
+		if (snapshot == null)
+			return null;
+		Map map     = level.getMap();
+		int version = map.getVersion();
+		if (snapshot.version == version && snapshot.pointOfVision.equals(playerCenter))
+			return snapshot;
+
+		Rectangle bounds = new Rectangle(snapshot.bounds);
+		bounds.translate(playerCenter.x - snapshot.pointOfVision.x, playerCenter.y - snapshot.pointOfVision.y);
+		BitMask visiblePoints = map.getVisiblePoints(bounds, playerCenter);
+		snapshot = new Snapshot(new Point(playerCenter), bounds, visiblePoints, version);
+		this.snapshot = snapshot;
+		return snapshot;
+	}
+
+	/**
+	 * Veroeffentlichte sichtbare Punkte
+	 */
+	private static class Snapshot
+	{
+		private final Rectangle bounds;
+		private final Point     pointOfVision;
+		private final int       version;
+		private final BitMask   visiblePoints;
+
+		private Snapshot(Point pointOfVision, Rectangle bounds, BitMask visiblePoints, int version)
+		{
+			this.pointOfVision = pointOfVision;
+			this.bounds = bounds;
+			this.visiblePoints = visiblePoints;
+			this.version = version;
+		}
+	}
+}
@@ -226,13 +226,9 @@ public class Player extends GameActor implements Serializable
 	{
 		super.restore();
 		experience = SavedGameState.getPlayerState().getPlayerExperience();
-		skill1 = new SkillConfiguration();
-		skill1.load(properties, "skill_1_");
-		skill2 = new SkillConfiguration();
-		skill2.load(properties, "skill_2_");
-		skill3 = new SkillConfiguration();
-		skill3.load(properties, "skill_3_");
-		skill4 = new SkillConfiguration();
-		skill4.load(properties, "skill_4_");
+		skill1 = loadSkillConfiguration("skill_1_");
+		skill2 = loadSkillConfiguration("skill_2_");
+		skill3 = loadSkillConfiguration("skill_3_");
+		skill4 = loadSkillConfiguration("skill_4_");
 	}
 }
\ No newline at end of file
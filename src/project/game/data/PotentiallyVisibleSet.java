@@ -0,0 +1,314 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+import project.util.BitMask;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Menge potentiell sichtbarer Zellen (PVS) einer Karte.
+ * <br>
+ * Die Karte wird in Zellen der Groesse horizontale x vertikale Skalierung eingeteilt. Fuer jede
+ * Zelle wird gespeichert, welche Zellen im Umkreis von RADIUS Zellen von mindestens einem Punkt
+ * der Zelle aus sichtbar sind. Die Menge wird bei der ersten Abfrage einer Zelle aus den
+ * Sichtbereichen aller freien Punkte der Zelle im Hintergrund bestimmt und um eine Zelle
+ * erweitert, sodass auch Sichtlinien, welche Wandecken streifen, enthalten sind. Bis dahin wird
+ * die Zelle wie eine Zelle ohne Menge behandelt.
+ * <br>
+ * Erreicht kein Sichtbereich den Rand des Umkreises, ist die Menge abgeschlossen und alle Zellen
+ * ausserhalb des Umkreises sind durch Shadowcasting nicht sichtbar. Dies begrenzt die Bereiche,
+ * welche fuer den Sichtbereich eines Punktes abgetastet werden.
+ * <br>
+ * Sichtlinien nach Bresenham koennen Wandecken dagegen auch ausserhalb des Umkreises passieren
+ * und enden auch auf Waenden. Fuer die Abfrage einer Sichtlinie wird die Menge daher nur
+ * zwischen zwei freien Punkten verwendet, welche hoechstens RADIUS Zellen voneinander entfernt
+ * sind. In allen anderen Faellen muss die Sichtlinie exakt abgetastet werden.
+ * <br>
+ * Da die Sichtbarkeit symmetrisch ist, kann fuer die Abfrage einer Sichtlinie die Menge
+ * einer beliebigen der beiden Zellen verwendet werden. Wird ein Punkt zur Wand oder eine Wand
+ * entfernt, werden die Mengen aller Zellen im Umkreis verworfen und bei Bedarf neu bestimmt.
+ */
+class PotentiallyVisibleSet
+{
+	/**
+	 * Umkreis in Zellen, innerhalb dessen potentiell sichtbare Zellen gespeichert werden
+	 */
+	static final int RADIUS = 16;
+
+	private final int                                cellHeight;
+	private final int                                cellWidth;
+	private final int                                columns;
+	private final AtomicReferenceArray<CellVisibility> entries;
+	private final Map                                map;
+
+	/**
+	 * Zellen, deren Menge gerade im Hintergrund bestimmt wird
+	 */
+	private final Set<Integer>                       pending = ConcurrentHashMap.newKeySet();
+
+	private final int                                rows;
+
+	/**
+	 * Erstellt eine neue, leere Menge potentiell sichtbarer Zellen fuer die gegebene Karte
+	 * @param map Karte
+	 */
+	PotentiallyVisibleSet(Map map)
+	{
+		this.map = map;
+		cellWidth = max(map.getHorizontalScale(), 1);
+		cellHeight = max(map.getVerticalScale(), 1);
+		columns = (map.getWidth() + cellWidth - 1) / cellWidth;
+		rows = (map.getHeight() + cellHeight - 1) / cellHeight;
+		entries = new AtomicReferenceArray<>(columns * rows);
+	}
+
+	/**
+	 * Gibt an, ob zwischen einem freien Punkt der Zelle der gegebenen Menge und dem gegebenen
+	 * Punkt eine Sichtlinie bestehen kann
+	 * @param cell Menge einer Zelle
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 * @return false, wenn der Punkt frei ist, innerhalb des Umkreises liegt und von keinem Punkt
+	 * der Zelle aus sichtbar ist, sonst true
+	 */
+	boolean contains(CellVisibility cell, int x, int y)
+	{
+		return map.isOutOfBounds(x, y) || map.getPointUnchecked(x, y) > 0
+		       || cell.contains(x / cellWidth, y / cellHeight);
+	}
+
+	/**
+	 * Gibt die Begrenzungen aller potentiell vom gegebenen Punkt aus sichtbaren Punkte an.
+	 * Wurde die Menge der Zelle des Punktes noch nicht bestimmt, wird diese im Hintergrund bestimmt.
+	 * @param point Sichtpunkt
+	 * @return Begrenzungen in Kartenkoordinaten oder null, wenn die Menge noch nicht bestimmt wurde
+	 * oder nicht abgeschlossen ist
+	 */
+	Rectangle getBounds(Point point)
+	{
+		if (map.isOutOfBounds(point.x, point.y))
+			return null;
+		CellVisibility cell = peek(point.x, point.y);
+		if (cell == null)
+		{
+			prepare(point.x / cellWidth, point.y / cellHeight);
+			return null;
+		}
+		return cell.closed ? new Rectangle(cell.bounds) : null;
+	}
+
+	/**
+	 * Verwirft die Mengen aller Zellen, welche von einer Veraenderung des gegebenen Punktes
+	 * betroffen sein koennen.
+	 * @param x x-Koordinate des veraenderten Punktes
+	 * @param y y-Koordinate des veraenderten Punktes
+	 */
+	void invalidate(int x, int y)
+	{
+		int column = x / cellWidth;
+		int row    = y / cellHeight;
+		for (int r = max(row - RADIUS, 0); r <= min(row + RADIUS, rows - 1); r++)
+			for (int c = max(column - RADIUS, 0); c <= min(column + RADIUS, columns - 1); c++)
+				entries.set(r * columns + c, null);
+	}
+
+	/**
+	 * Gibt an, ob zwischen den gegebenen Punkten eine Sichtlinie bestehen kann.
+	 * Es werden nur bereits bestimmte Mengen verwendet.
+	 * @param fromX x-Koordinate des ersten Punktes
+	 * @param fromY y-Koordinate des ersten Punktes
+	 * @param toX x-Koordinate des zweiten Punktes
+	 * @param toY y-Koordinate des zweiten Punktes
+	 * @return false, wenn beide Punkte frei sind, hoechstens RADIUS Zellen voneinander entfernt
+	 * liegen und keine Sichtlinie zwischen ihnen besteht, sonst true
+	 */
+	boolean isPotentiallyVisible(int fromX, int fromY, int toX, int toY)
+	{
+		if (map.isOutOfBounds(fromX, fromY) || map.isOutOfBounds(toX, toY)
+		    || map.getPointUnchecked(fromX, fromY) > 0 || map.getPointUnchecked(toX, toY) > 0)
+			return true;
+		CellVisibility cell = peek(fromX, fromY);
+		if (cell != null)
+			return contains(cell, toX, toY);
+		cell = peek(toX, toY);
+		return cell == null || contains(cell, fromX, fromY);
+	}
+
+	/**
+	 * Gibt die bereits bestimmte Menge der Zelle des gegebenen Punktes zurueck
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 * @return Menge oder null, wenn der Punkt ausserhalb der Karte liegt oder die Menge
+	 * noch nicht bestimmt wurde
+	 */
+	CellVisibility peek(int x, int y)
+	{
+		if (map.isOutOfBounds(x, y))
+			return null;
+		return entries.get(y / cellHeight * columns + x / cellWidth);
+	}
+
+	/**
+	 * Bestimmt die Menge der gegebenen Zelle im Hintergrund, falls dies nicht bereits geschieht.
+	 * Wird die Karte waehrend der Berechnung veraendert, wird das Ergebnis verworfen.
+	 */
+	private void prepare(int column, int row)
+	{
+		int index = row * columns + column;
+		if (!pending.add(index))
+			return;
+		ForkJoinPool.commonPool().execute(() -> {
+			try
+			{
+				int            version = map.getVersion();
+				CellVisibility cell    = build(column, row);
+				if (version == map.getVersion())
+					entries.compareAndSet(index, null, cell);
+			}
+			finally
+			{
+				pending.remove(index);
+			}
+		});
+	}
+
+	/**
+	 * Bestimmt die Menge der gegebenen Zelle
+	 */
+	private CellVisibility build(int column, int row)
+	{
+		Rectangle window = new Rectangle(column - RADIUS, row - RADIUS, 2 * RADIUS + 1, 2 * RADIUS + 1)
+				.intersection(new Rectangle(0, 0, columns, rows));
+		Rectangle area = new Rectangle(
+				window.x * cellWidth,
+				window.y * cellHeight,
+				window.width * cellWidth,
+				window.height * cellHeight)
+				.intersection(new Rectangle(0, 0, map.getWidth(), map.getHeight()));
+
+		BitMask visible = new BitMask(area.width, area.height);
+		Point   point   = new Point();
+		for (int y = row * cellHeight; y < min((row + 1) * cellHeight, map.getHeight()); y++)
+			for (int x = column * cellWidth; x < min((column + 1) * cellWidth, map.getWidth()); x++)
+				if (map.getPointUnchecked(x, y) <= 0)
+				{
+					point.setLocation(x, y);
+					ShadowcastingVisibility.addVisiblePoints(map, area, point, visible);
+				}
+
+		/*
+		Die Menge ist abgeschlossen, wenn kein sichtbarer Punkt am Rand des Umkreises liegt.
+		Raender der Karte begrenzen die Sicht ohnehin.
+		 */
+		boolean closed = true;
+		BitMask cells  = new BitMask(window.width, window.height);
+		for (int y = 0; y < area.height; y++)
+			for (int x = visible.nextSetBit(0, y); x >= 0; x = visible.nextSetBit(x + 1, y))
+			{
+				int mapX = x + area.x;
+				int mapY = y + area.y;
+				cells.set(mapX / cellWidth - window.x, mapY / cellHeight - window.y);
+				if (x == 0 && area.x > 0
+				    || y == 0 && area.y > 0
+				    || x == area.width - 1 && area.x + area.width < map.getWidth()
+				    || y == area.height - 1 && area.y + area.height < map.getHeight())
+					closed = false;
+			}
+		cells = cells.dilate(1, 1);
+
+		Rectangle bounds = null;
+		for (int y = 0; y < cells.getHeight(); y++)
+			for (int x = cells.nextSetBit(0, y); x >= 0; x = cells.nextSetBit(x + 1, y))
+			{
+				Rectangle cellBounds = new Rectangle(
+						(x + window.x) * cellWidth,
+						(y + window.y) * cellHeight,
+						cellWidth,
+						cellHeight);
+				bounds = bounds == null ? cellBounds : bounds.union(cellBounds);
+			}
+		if (bounds == null)
+			bounds = new Rectangle(column * cellWidth, row * cellHeight, 0, 0);
+		return new CellVisibility(window, cells, bounds, closed);
+	}
+
+	/**
+	 * Potentiell sichtbare Zellen einer Zelle
+	 */
+	static class CellVisibility
+	{
+		/**
+		 * Begrenzungen aller potentiell sichtbaren Punkte in Kartenkoordinaten
+		 */
+		private final Rectangle bounds;
+
+		/**
+		 * Potentiell sichtbare Zellen innerhalb des Umkreises
+		 */
+		private final BitMask   cells;
+
+		/**
+		 * true, wenn alle Zellen ausserhalb des Umkreises durch Shadowcasting nicht sichtbar sind
+		 */
+		private final boolean   closed;
+
+		/**
+		 * Umkreis in Zellen
+		 */
+		private final Rectangle window;
+
+		private CellVisibility(Rectangle window, BitMask cells, Rectangle bounds, boolean closed)
+		{
+			this.window = window;
+			this.cells = cells;
+			this.bounds = bounds;
+			this.closed = closed;
+		}
+
+		/**
+		 * Gibt an, ob die gegebene Zelle potentiell sichtbar ist.
+		 * Ueber Zellen ausserhalb des Umkreises wird keine Aussage getroffen.
+		 * @param column Spalte der Zelle
+		 * @param row Zeile der Zelle
+		 * @return false, wenn die Zelle innerhalb des Umkreises liegt und von keinem freien
+		 * Punkt der Zelle aus sichtbar ist, sonst true
+		 */
+		boolean contains(int column, int row)
+		{
+			return !window.contains(column, row) || cells.get(column - window.x, row - window.y);
+		}
+	}
+}
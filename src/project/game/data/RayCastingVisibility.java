@@ -0,0 +1,113 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+import project.util.BitMask;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Sichtbarkeitsberechnung durch Strahlen vom Sichtpunkt zu jedem Punkt der Begrenzungen.
+ * <br>
+ * Punkte, welche auf einem Strahl liegen, werden zwischengespeichert, sodass diese
+ * nicht erneut berechnet werden muessen. Der Aufwand ist dennoch proportional zur
+ * Anzahl der Punkte multipliziert mit der Laenge der Strahlen.
+ */
+public class RayCastingVisibility implements VisibilityStrategy
+{
+	@Override
+	public BitMask getVisiblePoints(final Map map, final Rectangle bounds, final Point pointOfVision)
+	{
+		//0: not calculated, 1: invisible, 2: visible
+		byte[][]    visibilityData = new byte[bounds.width][bounds.height];
+		BitMask     output         = new BitMask(bounds.width, bounds.height);
+		for (int x = bounds.x; x < bounds.getMaxX(); x++)
+			for (int y = bounds.y; y < bounds.getMaxY(); y++)
+			{
+				int arrayX = x - bounds.x;
+				int arrayY = y - bounds.y;
+				if (visibilityData[arrayX][arrayY] == 0)
+				{
+					calculateVisibilty(map, bounds, pointOfVision, visibilityData, new Point(x, y));
+				}
+				if (visibilityData[arrayX][arrayY] == 2)
+					output.set(arrayX, arrayY);
+			}
+		return output;
+	}
+
+	/**
+	 * Berechnet die Sichtbarkeit zu gegebenem Punkt
+	 * gesehen von gegebenm Sichtbarkeitspunkt
+	 * @param toPoint zu pruefender Punkt
+	 */
+	private void calculateVisibilty(
+			Map map,
+			Rectangle calculationBounds,
+			Point pointOfVision,
+			byte[][] visibilityData,
+			Point toPoint)
+	{
+		/*
+		Generiere parametrische Gerade:
+		(OV: Ortsvektor Sichtpunkt; VP: Vektor von Sichtpunkt zu getestetem Punkt)
+		OX:=OV+VP*x
+		mit 0<=x<=1
+		 */
+		double dx   = toPoint.x - pointOfVision.x;
+		double dy   = toPoint.y - pointOfVision.y;
+		double dist = sqrt(dx * dx + dy * dy);
+
+		double unitDx = dx / dist;
+		double unitDy = dy / dist;
+
+		if (dist == 0)
+			visibilityData[pointOfVision.x - calculationBounds.x][pointOfVision.y - calculationBounds.y] = 2;
+
+		boolean interrupted = false;
+
+		for (int i = 0; i < dist; i++)
+		{
+			int x      = (int) (unitDx * i + pointOfVision.x);
+			int y      = (int) (unitDy * i + pointOfVision.y);
+			int arrayX = x - calculationBounds.x;
+			int arrayY = y - calculationBounds.y;
+			if (interrupted || map.getPoint(x, y) > 0)
+			{
+				visibilityData[arrayX][arrayY] = 1;
+				interrupted = true;
+			}
+			else
+				visibilityData[arrayX][arrayY] = 2;
+		}
+		visibilityData[toPoint.x - calculationBounds.x][toPoint.y - calculationBounds.y] = (byte) (interrupted ? 1 :
+				2);
+	}
+}
@@ -0,0 +1,400 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+package project.game.data;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Erreichbarkeitsindex fuer Aktoren einer festen Groesse.
+ * <br>
+ * Die Karte wird in Kacheln von TILE_SIZE x TILE_SIZE Punkten unterteilt. Innerhalb jeder Kachel
+ * werden die Punkte, an welchen sich der Mittelpunkt eines Aktors befinden kann, zu lokalen
+ * Zusammenhangskomponenten zusammengefasst, deren Nummer in einem Byte pro Punkt gespeichert
+ * wird. Jede lokale Komponente ist ein Knoten eines Union-Find-Waldes, in welchem die Knoten
+ * benachbarter Kacheln entlang der Kachelgrenzen vereinigt werden. Zwei Punkte sind genau dann
+ * durch einen Pfad verbunden, wenn ihre Knoten denselben Repraesentanten besitzen.
+ * <br>
+ * Kacheln ohne begehbare Punkte belegen keinen Speicher, Kacheln mit nur einer Komponente
+ * speichern lediglich deren Knoten.
+ * <br>
+ * Werden Punkte begehbar, werden die betroffenen Kacheln neu berechnet und ihre neuen Knoten
+ * entlang der Kachelgrenzen mit den Knoten der Nachbarkacheln vereinigt. Die bisherigen Knoten
+ * der Kacheln bleiben im Wald erhalten, da ueber diese Komponenten anderer Kacheln vereinigt
+ * sein koennen. Werden Punkte unbegehbar, bleiben die Komponenten unveraendert. Der Index meldet
+ * in diesem Fall hoechstens faelschlich eine Erreichbarkeit, welche von der anschliessenden
+ * Pfadsuche widerlegt wird, jedoch nie faelschlich eine Unerreichbarkeit.
+ * <br>
+ * Gibt es mehr nicht mehr verwendete als verwendete Knoten, wird der Wald kompaktiert: Die
+ * verwendeten Knoten werden neu nummeriert und jeweils direkt unter einen gemeinsamen
+ * Repraesentanten ihrer bisherigen Menge gehaengt.
+ */
+class ReachabilityIndex
+{
+	/**
+	 * Kantenlaenge einer Kachel als Zweierpotenz. Eine Kachel enthaelt hoechstens
+	 * TILE_SIZE * TILE_SIZE / 2 Komponenten, sodass deren Nummern in ein Byte passen.
+	 */
+	private static final int TILE_SHIFT = 4;
+	private static final int TILE_SIZE  = 1 << TILE_SHIFT;
+	private static final int TILE_MASK  = TILE_SIZE - 1;
+
+	/**
+	 * Markierung begehbarer Punkte ohne Komponente waehrend der Berechnung einer Kachel
+	 */
+	private static final byte UNLABELED = -1;
+
+	private final int      actorHeight;
+	private final int      actorWidth;
+	private final int      height;
+	private final Map      map;
+
+	/**
+	 * Vorgaenger jedes Knotens im Union-Find-Wald, Knoten 0 steht fuer unbegehbare Punkte
+	 */
+	private       int[]    parents;
+
+	private       int      nodeCount;
+
+	/**
+	 * Anzahl der Knoten, welche einer lokalen Komponente einer Kachel zugeordnet sind
+	 */
+	private       int      usedNodeCount;
+
+	/**
+	 * Zwischenspeicher zur Berechnung einer Kachel
+	 */
+	private final byte[]   scratch;
+	private       int[]    stack;
+
+	private final int      tileColumns;
+
+	/**
+	 * Lokale Komponente jedes Punktes einer Kachel beginnend bei 1, 0 fuer unbegehbare Punkte.
+	 * null fuer Kacheln mit hoechstens einer Komponente.
+	 */
+	private final byte[][] tileLabels;
+
+	/**
+	 * Knoten der lokalen Komponenten jeder Kachel, null fuer Kacheln ohne begehbare Punkte
+	 */
+	private final int[][]  tileNodes;
+
+	private final int      tileRows;
+	private final int      width;
+
+	/**
+	 * Erstellt den Erreichbarkeitsindex fuer Aktoren der gegebenen Groesse
+	 * @param map Karte
+	 * @param actorWidth Breite des Aktors
+	 * @param actorHeight Hoehe des Aktors
+	 */
+	ReachabilityIndex(Map map, int actorWidth, int actorHeight)
+	{
+		this.map = map;
+		this.actorWidth = max(actorWidth, 1);
+		this.actorHeight = max(actorHeight, 1);
+		width = map.getWidth();
+		height = map.getHeight();
+		tileColumns = (width + TILE_SIZE - 1) >> TILE_SHIFT;
+		tileRows = (height + TILE_SIZE - 1) >> TILE_SHIFT;
+		tileLabels = new byte[tileColumns * tileRows][];
+		tileNodes = new int[tileColumns * tileRows][];
+		parents = new int[64];
+		scratch = new byte[TILE_SIZE * TILE_SIZE];
+		stack = new int[64];
+
+		for (int tileY = 0; tileY < tileRows; tileY++)
+			for (int tileX = 0; tileX < tileColumns; tileX++)
+				buildTile(tileX, tileY);
+
+		/*
+		Vereinige die Komponenten entlang der rechten und unteren Kachelgrenzen
+		 */
+		for (int tileY = 0; tileY < tileRows; tileY++)
+			for (int tileX = 0; tileX < tileColumns; tileX++)
+			{
+				if (tileNodes[tileY * tileColumns + tileX] == null)
+					continue;
+				int left   = tileX << TILE_SHIFT;
+				int top    = tileY << TILE_SHIFT;
+				int right  = min(left + TILE_SIZE, width) - 1;
+				int bottom = min(top + TILE_SIZE, height) - 1;
+				if (right + 1 < width)
+					for (int y = top; y <= bottom; y++)
+						unionLabels(getLabel(right, y), getLabel(right + 1, y));
+				if (bottom + 1 < height)
+					for (int x = left; x <= right; x++)
+						unionLabels(getLabel(x, bottom), getLabel(x, bottom + 1));
+			}
+	}
+
+	/**
+	 * Gibt an, ob ein Aktor vom gegebenen Start- zum gegebenen Zielpunkt gelangen kann.
+	 * Der Startpunkt muss selbst nicht begehbar sein, es genuegt ein begehbarer Nachbarpunkt.
+	 * @param fromX x-Koordinate des Startpunktes
+	 * @param fromY y-Koordinate des Startpunktes
+	 * @param toX x-Koordinate des Zielpunktes
+	 * @param toY y-Koordinate des Zielpunktes
+	 * @return false, wenn der Zielpunkt sicher nicht erreicht werden kann, sonst true
+	 */
+	synchronized boolean isReachable(int fromX, int fromY, int toX, int toY)
+	{
+		if (!isPassable(toX, toY))
+			return false;
+		int target = find(getLabel(toX, toY));
+		if (target == 0)
+			return false;
+		if (fromX >= 0 && fromY >= 0 && fromX < width && fromY < height)
+		{
+			int label = getLabel(fromX, fromY);
+			if (label != 0 && find(label) == target)
+				return true;
+		}
+		for (int direction = 0; direction < 4; direction++)
+		{
+			int nx = fromX + Map.DIRECTION_X[direction];
+			int ny = fromY + Map.DIRECTION_Y[direction];
+			if (nx < 0 || ny < 0 || nx >= width || ny >= height)
+				continue;
+			int label = getLabel(nx, ny);
+			if (label != 0 && find(label) == target)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Aktualisiert den Index, nachdem der gegebene Punkt begehbar geworden ist.
+	 * Alle Kacheln, welche Mittelpunkte enthalten, deren Aktorbegrenzung den Punkt enthaelt,
+	 * werden neu berechnet und entlang ihrer Grenzen mit den Nachbarkacheln vereinigt.
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 */
+	synchronized void pointDidBecomePassable(int x, int y)
+	{
+		int minX = max(x - actorWidth + 1 + actorWidth / 2, 0);
+		int maxX = min(x + actorWidth / 2, width - 1);
+		int minY = max(y - actorHeight + 1 + actorHeight / 2, 0);
+		int maxY = min(y + actorHeight / 2, height - 1);
+
+		for (int tileY = minY >> TILE_SHIFT; tileY <= maxY >> TILE_SHIFT; tileY++)
+			for (int tileX = minX >> TILE_SHIFT; tileX <= maxX >> TILE_SHIFT; tileX++)
+			{
+				int left   = tileX << TILE_SHIFT;
+				int top    = tileY << TILE_SHIFT;
+				int right  = min(left + TILE_SIZE, width) - 1;
+				int bottom = min(top + TILE_SIZE, height) - 1;
+				buildTile(tileX, tileY);
+				if (tileNodes[tileY * tileColumns + tileX] == null)
+					continue;
+
+				for (int cy = top; cy <= bottom; cy++)
+					for (int cx = left; cx <= right; cx++)
+					{
+						int label = getLabel(cx, cy);
+						if (label == 0)
+							continue;
+						if (cx > left && cx < right && cy > top && cy < bottom)
+							continue;
+						for (int direction = 0; direction < 4; direction++)
+						{
+							int nx = cx + Map.DIRECTION_X[direction];
+							int ny = cy + Map.DIRECTION_Y[direction];
+							if (nx < left || ny < top || nx > right || ny > bottom)
+								if (nx >= 0 && ny >= 0 && nx < width && ny < height && isPassable(nx, ny))
+									unionLabels(label, getLabel(nx, ny));
+						}
+					}
+			}
+
+		if (nodeCount - usedNodeCount > usedNodeCount)
+			compact();
+	}
+
+	/**
+	 * Berechnet die lokalen Komponenten einer Kachel durch Flood Fill
+	 * und erstellt fuer jede Komponente einen neuen Knoten.
+	 */
+	private void buildTile(int tileX, int tileY)
+	{
+		int left    = tileX << TILE_SHIFT;
+		int top     = tileY << TILE_SHIFT;
+		int columns = min(TILE_SIZE, width - left);
+		int rows    = min(TILE_SIZE, height - top);
+		int count   = 0;
+
+		/*
+		Bestimme zunaechst die begehbaren Punkte der Kachel, welche noch keiner Komponente angehoeren
+		 */
+		for (int cell = 0; cell < scratch.length; cell++)
+		{
+			int column = cell & TILE_MASK;
+			int row    = cell >> TILE_SHIFT;
+			scratch[cell] = column < columns && row < rows && isPassable(left + column, top + row) ? UNLABELED : 0;
+		}
+
+		for (int cell = 0; cell < scratch.length; cell++)
+		{
+			if (scratch[cell] != UNLABELED)
+				continue;
+
+			byte label = (byte) ++count;
+			scratch[cell] = label;
+			int stackSize = 0;
+			stack[stackSize++] = cell;
+			while (stackSize > 0)
+			{
+				int current = stack[--stackSize];
+				int x       = current & TILE_MASK;
+				int y       = current >> TILE_SHIFT;
+				for (int direction = 0; direction < 4; direction++)
+				{
+					int nx = x + Map.DIRECTION_X[direction];
+					int ny = y + Map.DIRECTION_Y[direction];
+					if (nx < 0 || ny < 0 || nx >= TILE_SIZE || ny >= TILE_SIZE)
+						continue;
+					int neighbour = ny << TILE_SHIFT | nx;
+					if (scratch[neighbour] != UNLABELED)
+						continue;
+					scratch[neighbour] = label;
+					if (stackSize == stack.length)
+						stack = Arrays.copyOf(stack, stackSize * 2);
+					stack[stackSize++] = neighbour;
+				}
+			}
+		}
+
+		int tile = tileY * tileColumns + tileX;
+		if (tileNodes[tile] != null)
+			usedNodeCount -= tileNodes[tile].length;
+		usedNodeCount += count;
+		if (count == 0)
+		{
+			tileNodes[tile] = null;
+			tileLabels[tile] = null;
+			return;
+		}
+		int[] nodes = new int[count];
+		for (int i = 0; i < count; i++)
+			nodes[i] = newNode();
+		tileNodes[tile] = nodes;
+		tileLabels[tile] = count == 1 ? null : scratch.clone();
+	}
+
+	/**
+	 * Nummeriert die verwendeten Knoten neu und verwirft alle anderen Knoten.
+	 * Verwendete Knoten mit demselben Repraesentanten erhalten einen gemeinsamen neuen
+	 * Repraesentanten, sodass die Erreichbarkeit zwischen allen Punkten erhalten bleibt.
+	 */
+	private void compact()
+	{
+		int[] newRoots   = new int[nodeCount + 1];
+		int[] newParents = new int[max(Integer.highestOneBit(usedNodeCount) * 2, 64)];
+		int   count      = 0;
+		for (int[] nodes : tileNodes)
+		{
+			if (nodes == null)
+				continue;
+			for (int i = 0; i < nodes.length; i++)
+			{
+				int root = find(nodes[i]);
+				int node = ++count;
+				if (newRoots[root] == 0)
+					newRoots[root] = node;
+				newParents[node] = newRoots[root];
+				nodes[i] = node;
+			}
+		}
+		parents = newParents;
+		nodeCount = count;
+	}
+
+	/**
+	 * Gibt den Repraesentanten eines Knotens zurueck
+	 */
+	private int find(int node)
+	{
+		while (parents[node] != node)
+		{
+			parents[node] = parents[parents[node]];
+			node = parents[node];
+		}
+		return node;
+	}
+
+	/**
+	 * Gibt den Knoten des gegebenen Punktes zurueck, 0 fuer unbegehbare Punkte.
+	 * Punkte in Kacheln mit nur einer Komponente gehoeren dieser an, sofern sie begehbar sind.
+	 */
+	private int getLabel(int x, int y)
+	{
+		int   tile  = (y >> TILE_SHIFT) * tileColumns + (x >> TILE_SHIFT);
+		int[] nodes = tileNodes[tile];
+		if (nodes == null)
+			return 0;
+		byte[] labels = tileLabels[tile];
+		if (labels == null)
+			return isPassable(x, y) ? nodes[0] : 0;
+		int label = labels[(y & TILE_MASK) << TILE_SHIFT | x & TILE_MASK] & 0xFF;
+		return label == 0 ? 0 : nodes[label - 1];
+	}
+
+	/**
+	 * Gibt an, ob sich ein Aktor mit seinem Mittelpunkt am gegebenen Punkt befinden kann
+	 */
+	private boolean isPassable(int x, int y)
+	{
+		return map.fits(x - actorWidth / 2, y - actorHeight / 2, actorWidth, actorHeight);
+	}
+
+	/**
+	 * Erstellt einen neuen Knoten
+	 */
+	private int newNode()
+	{
+		int node = ++nodeCount;
+		if (node == parents.length)
+			parents = Arrays.copyOf(parents, parents.length * 2);
+		parents[node] = node;
+		return node;
+	}
+
+	/**
+	 * Vereinigt zwei Knoten, sofern beide begehbare Punkte darstellen
+	 */
+	private void unionLabels(int first, int second)
+	{
+		if (first == 0 || second == 0)
+			return;
+		first = find(first);
+		second = find(second);
+		if (first != second)
+			parents[max(first, second)] = min(first, second);
+	}
+}
@@ -0,0 +1,287 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+import project.util.BitMask;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static java.lang.Math.floorDiv;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Sichtbarkeitsberechnung durch symmetrisches rekursives Shadowcasting.
+ * <br>
+ * Die Umgebung des Sichtpunktes wird in vier Quadranten zeilenweise nach aussen abgetastet.
+ * Jede Zeile wird nur innerhalb des noch nicht verdeckten Winkelbereichs betrachtet, trifft
+ * die Abtastung auf eine Wand, wird der Bereich vor dieser Wand rekursiv weiter abgetastet.
+ * Jeder Punkt der Begrenzungen wird somit hoechstens einmal pro Quadrant betrachtet.
+ * <br>
+ * Ein Punkt ist genau dann sichtbar, wenn der Sichtpunkt von diesem Punkt aus sichtbar ist.
+ * Steigungen werden als Brueche ganzer Zahlen gespeichert, sodass keine Rundungsfehler auftreten.
+ * Da Sichtlinien bei einer Skalierung der Achsen erhalten bleiben, ist das Ergebnis unabhaengig
+ * von der horizontalen und vertikalen Skalierung der Karte.
+ * <br>
+ * Ab einer einstellbaren Groesse der Begrenzungen werden die Quadranten in je zwei Oktanten
+ * geteilt und parallel im gemeinsamen Fork-Join-Pool abgetastet. Jeder Oktant schreibt in eine
+ * eigene Bitmaske, welche anschliessend wortweise vereinigt werden.
+ */
+public class ShadowcastingVisibility implements VisibilityStrategy
+{
+	/**
+	 * Umrechnung von (Zeile, Spalte) eines Quadranten in Kartenkoordinaten:
+	 * x = Sichtpunkt.x + Zeile * ROW_X + Spalte * COLUMN_X, analog fuer y.
+	 * Reihenfolge: oben, rechts, unten, links
+	 */
+	private static final int[] COLUMN_X = {1, 0, 1, 0};
+	private static final int[] COLUMN_Y = {0, 1, 0, 1};
+	private static final int[] ROW_X    = {0, 1, 0, -1};
+	private static final int[] ROW_Y    = {-1, 0, 1, 0};
+
+	/**
+	 * Standardmaessige Anzahl an Punkten, ab welcher parallel berechnet wird
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 15;
+
+	/**
+	 * Anzahl an Punkten der Begrenzungen, ab welcher parallel berechnet wird
+	 */
+	private final int parallelThreshold;
+
+	/**
+	 * Erstellt eine neue Sichtbarkeitsberechnung, welche Begrenzungen ab
+	 * DEFAULT_PARALLEL_THRESHOLD Punkten parallel berechnet
+	 */
+	public ShadowcastingVisibility()
+	{
+		this(DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * Erstellt eine neue Sichtbarkeitsberechnung.
+	 * Begrenzungen mit weniger Punkten als parallelThreshold werden sequentiell berechnet,
+	 * Integer.MAX_VALUE deaktiviert die parallele Berechnung.
+	 * @param parallelThreshold Anzahl an Punkten, ab welcher parallel berechnet wird
+	 */
+	public ShadowcastingVisibility(int parallelThreshold)
+	{
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/**
+	 * Gibt die Anzahl an Punkten an, ab welcher parallel berechnet wird
+	 * @return Anzahl an Punkten
+	 */
+	public int getParallelThreshold()
+	{
+		return parallelThreshold;
+	}
+
+	@Override
+	public BitMask getVisiblePoints(final Map map, final Rectangle bounds, final Point pointOfVision)
+	{
+		BitMask output = new BitMask(bounds.width, bounds.height);
+		if (bounds.width == 0 || bounds.height == 0)
+			return output;
+		if ((long) bounds.width * bounds.height < parallelThreshold || ForkJoinPool.getCommonPoolParallelism() < 2)
+		{
+			addVisiblePoints(map, bounds, pointOfVision, output);
+			return output;
+		}
+
+		if (bounds.contains(pointOfVision) && map.getPoint(pointOfVision.x, pointOfVision.y) <= 0)
+			output.set(pointOfVision.x - bounds.x, pointOfVision.y - bounds.y);
+
+		/*
+		Jeder Quadrant wird an der Steigung 0 geteilt. Waende auf einer Seite verdecken nur
+		Steigungen jenseits dieser Grenze, die Oktanten sind somit unabhaengig voneinander.
+		 */
+		List<ForkJoinTask<BitMask>> tasks = new ArrayList<>(7);
+		for (int octant = 1; octant < 8; octant++)
+		{
+			int quadrant = octant / 2;
+			int start    = octant % 2 - 1;
+			tasks.add(ForkJoinTask.adapt(() -> {
+				BitMask mask = new BitMask(bounds.width, bounds.height);
+				new Scan(map, bounds, pointOfVision, mask).scanSector(quadrant, start, start + 1);
+				return mask;
+			}).fork());
+		}
+		new Scan(map, bounds, pointOfVision, output).scanSector(0, -1, 0);
+		for (ForkJoinTask<BitMask> task : tasks)
+			output.or(task.join());
+		return output;
+	}
+
+	/**
+	 * Berechnet die sichtbaren Punkte sequentiell und fuegt diese der gegebenen Maske hinzu.
+	 * Bereits gesetzte Punkte bleiben erhalten, sodass die Sichtbereiche mehrerer Sichtpunkte
+	 * ohne zusaetzliche Masken vereinigt werden koennen.
+	 * @param map Karte
+	 * @param bounds Begrenzungen der Berechnung
+	 * @param pointOfVision Sichtpunkt
+	 * @param output Maske mit der Groesse der Begrenzungen
+	 */
+	static void addVisiblePoints(Map map, Rectangle bounds, Point pointOfVision, BitMask output)
+	{
+		if (bounds.contains(pointOfVision) && map.getPoint(pointOfVision.x, pointOfVision.y) <= 0)
+			output.set(pointOfVision.x - bounds.x, pointOfVision.y - bounds.y);
+		Scan scan = new Scan(map, bounds, pointOfVision, output);
+		for (int quadrant = 0; quadrant < 4; quadrant++)
+			scan.scanSector(quadrant, -1, 1);
+	}
+
+	/**
+	 * Zustand einer Berechnung
+	 */
+	private static class Scan
+	{
+		private final Rectangle   bounds;
+		private final Map         map;
+		private final int         originX;
+		private final int         originY;
+		private final BitMask     output;
+
+		private int columnX;
+		private int columnY;
+
+		/**
+		 * Groesste und kleinste Spalte, welche innerhalb der Begrenzungen liegen kann
+		 */
+		private int maxColumn;
+		private int minColumn;
+
+		/**
+		 * Groesste Zeile, welche innerhalb der Begrenzungen liegen kann
+		 */
+		private int maxDepth;
+
+		private int rowX;
+		private int rowY;
+
+		private Scan(Map map, Rectangle bounds, Point pointOfVision, BitMask output)
+		{
+			this.map = map;
+			this.bounds = bounds;
+			this.output = output;
+			originX = pointOfVision.x;
+			originY = pointOfVision.y;
+		}
+
+		/**
+		 * Tastet einen Bereich eines Quadranten zwischen zwei ganzzahligen Steigungen ab
+		 * @param quadrant Index des Quadranten
+		 * @param startSlope Startsteigung, -1 oder 0
+		 * @param endSlope Endsteigung, 0 oder 1
+		 */
+		private void scanSector(int quadrant, int startSlope, int endSlope)
+		{
+			columnX = COLUMN_X[quadrant];
+			columnY = COLUMN_Y[quadrant];
+			rowX = ROW_X[quadrant];
+			rowY = ROW_Y[quadrant];
+
+			int left   = bounds.x - originX;
+			int right  = bounds.x + bounds.width - 1 - originX;
+			int top    = bounds.y - originY;
+			int bottom = bounds.y + bounds.height - 1 - originY;
+
+			maxDepth = rowX + rowY < 0 ? -(rowX != 0 ? left : top) : (rowX != 0 ? right : bottom);
+
+			/*
+			Liegt der Sichtpunkt innerhalb der Begrenzungen, koennen Punkte seitlich ausserhalb
+			der Begrenzungen nur Punkte ausserhalb der Begrenzungen verdecken.
+			 */
+			if (bounds.contains(originX, originY))
+			{
+				minColumn = columnX != 0 ? left : top;
+				maxColumn = columnX != 0 ? right : bottom;
+			}
+			else
+			{
+				minColumn = Integer.MIN_VALUE / 4;
+				maxColumn = Integer.MAX_VALUE / 4;
+			}
+			scan(1, startSlope, 1, endSlope, 1);
+		}
+
+		/**
+		 * Tastet die Zeilen ab der gegebenen Zeile innerhalb des Bereichs zwischen Start- und
+		 * Endsteigung ab. Die Steigungen sind als Spalte / Zeile angegeben.
+		 * @param depth Zeile
+		 * @param startNumerator Zaehler der Startsteigung
+		 * @param startDenominator Nenner der Startsteigung
+		 * @param endNumerator Zaehler der Endsteigung
+		 * @param endDenominator Nenner der Endsteigung
+		 */
+		private void scan(int depth, int startNumerator, int startDenominator, int endNumerator, int endDenominator)
+		{
+			for (; depth <= maxDepth; depth++)
+			{
+				/*
+				Erste und letzte Spalte der Zeile, wobei halbe Spalten zur Mitte gerundet werden
+				 */
+				int first = floorDiv(2 * depth * startNumerator + startDenominator, 2 * startDenominator);
+				int last  = -floorDiv(endDenominator - 2 * depth * endNumerator, 2 * endDenominator);
+				first = max(first, minColumn);
+				last = min(last, maxColumn);
+
+				int x = originX + depth * rowX + first * columnX;
+				int y = originY + depth * rowY + first * columnY;
+
+				// 0: kein Punkt, 1: Wand, 2: leer
+				int previous = 0;
+				for (int column = first; column <= last; column++, x += columnX, y += columnY)
+				{
+					boolean wall = map.isOutOfBounds(x, y) || map.getPointUnchecked(x, y) > 0;
+					if (!wall
+					    && (long) column * startDenominator >= (long) depth * startNumerator
+					    && (long) column * endDenominator <= (long) depth * endNumerator
+					    && bounds.contains(x, y))
+						output.set(x - bounds.x, y - bounds.y);
+
+					if (previous == 1 && !wall)
+					{
+						startNumerator = 2 * column - 1;
+						startDenominator = 2 * depth;
+					}
+					else if (previous == 2 && wall)
+						scan(depth + 1, startNumerator, startDenominator, 2 * column - 1, 2 * depth);
+					previous = wall ? 1 : 2;
+				}
+				if (previous != 2)
+					return;
+			}
+		}
+	}
+}
@@ -161,6 +161,48 @@ public class SkillConfiguration
 	 */
 	protected boolean useProjectiles;
 
+	/**
+	 * Erstellt eine neue, leere Skill-Konfiguration.
+	 * Die Werte werden mit load geladen.
+	 */
+	public SkillConfiguration()
+	{
+	}
+
+	/**
+	 * Erstellt eine Kopie der gegebenen Konfiguration mit einem eigenen SkillExecutor.
+	 * Die Felder der Ebenen werden gemeinsam verwendet, da diese nicht veraendert werden.
+	 * @param template bereits geladene Konfiguration
+	 * @param properties Quelle fuer zusaetzliche Properties des SkillExecutors
+	 * @param prefix Property-Prefix
+	 */
+	SkillConfiguration(SkillConfiguration template, Properties properties, String prefix)
+	{
+		attackDamageVariation = template.attackDamageVariation;
+		attackProjectileColor = template.attackProjectileColor;
+		attackRange = template.attackRange;
+		directionDependentProjectiles = template.directionDependentProjectiles;
+		icon = template.icon;
+		overlayAnimationTime = template.overlayAnimationTime;
+		overlayColor = template.overlayColor;
+		overlays = template.overlays;
+		projectileAnimationTime = template.projectileAnimationTime;
+		projectileDissolveDelay = template.projectileDissolveDelay;
+		projectiles = template.projectiles;
+		projectilesPerDirection = template.projectilesPerDirection;
+		rate = template.rate;
+		requiredLevel = template.requiredLevel;
+		requiresFocus = template.requiresFocus;
+		soundSource = template.soundSource;
+		targetDamage = template.targetDamage;
+		targetOverlayAnimationTime = template.targetOverlayAnimationTime;
+		targetOverlayColor = template.targetOverlayColor;
+		targetOverlays = template.targetOverlays;
+		useProjectiles = template.useProjectiles;
+		if (template.skillExecutor != null)
+			loadExecutor(template.skillExecutor.getClass(), properties, prefix);
+	}
+
 	/**
 	 * Gibt die Abweichung des Schadens des Aktors an.
 	 * Der tatsaechliche Schaden liegt zwischen targetDamage - attackDamageVariation / 2
@@ -483,14 +525,11 @@ public class SkillConfiguration
 
 		try
 		{
-			skillExecutor = (SkillExecutor) Class.forName(properties.getProperty(
+			loadExecutor(Class.forName(properties.getProperty(
 					prefix + "attack_class",
-					"project.game.data.skills.AttackSkillExecutor"))
-					.newInstance();
-			skillExecutor.setConfiguration(this);
-			skillExecutor.loadAdditionalProperties(properties, prefix);
+					"project.game.data.skills.AttackSkillExecutor")), properties, prefix);
 		}
-		catch (ClassNotFoundException | InstantiationException | IllegalAccessException e)
+		catch (ClassNotFoundException e)
 		{
 			e.printStackTrace();
 		}
@@ -514,4 +553,24 @@ public class SkillConfiguration
 	{
 		return useProjectiles;
 	}
-}
+
+	/**
+	 * Erstellt den SkillExecutor der gegebenen Klasse und laed dessen zusaetzliche Properties
+	 * @param executorClass Klasse des SkillExecutors
+	 * @param properties Quelle
+	 * @param prefix Property-Prefix
+	 */
+	private void loadExecutor(Class<?> executorClass, Properties properties, String prefix)
+	{
+		try
+		{
+			skillExecutor = (SkillExecutor) executorClass.newInstance();
+			skillExecutor.setConfiguration(this);
+			skillExecutor.loadAdditionalProperties(properties, prefix);
+		}
+		catch (InstantiationException | IllegalAccessException e)
+		{
+			e.printStackTrace();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,210 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+package project.game.data;
+
+import project.util.BitMask;
+
+import static java.lang.Math.min;
+
+/**
+ * Summentabelle (Integralbild) der unbegehbaren Punkte einer Karte.
+ * <br>
+ * Die Begehbarkeit wird als Bitmaske mit einem Bit pro Punkt gespeichert. Die Karte wird
+ * zusaetzlich in Kacheln von TILE_SIZE x TILE_SIZE Punkten unterteilt, fuer welche eine
+ * kleine Summentabelle die Anzahl unbegehbarer Punkte aller Kacheln im Bereich [0, x) x [0, y)
+ * des Kachelrasters enthaelt. Die Anzahl unbegehbarer Punkte in einem Rechteck ergibt sich
+ * somit aus den vollstaendig ueberdeckten Kacheln und den Randzeilen, welche wortweise
+ * mit Long.bitCount gezaehlt werden.
+ * <br>
+ * Wird ein Punkt begehbar oder unbegehbar, wird sein Bit gesetzt oder geloescht und die
+ * Eintraege des Kachelrasters rechts unterhalb seiner Kachel angepasst.
+ */
+class SummedAreaTable
+{
+	/**
+	 * Kantenlaenge einer Kachel als Zweierpotenz, entspricht der Wortbreite der Bitmaske
+	 */
+	private static final int TILE_SHIFT = 6;
+	private static final int TILE_SIZE  = 1 << TILE_SHIFT;
+
+	/**
+	 * Begehbare Punkte
+	 */
+	private final BitMask   free;
+
+	private final int       height;
+	private final Map       map;
+	private final int       tileColumns;
+	private final int       tileRows;
+
+	/**
+	 * Summentabelle der Anzahl unbegehbarer Punkte ueber das Kachelraster
+	 */
+	private final int[]     tileTable;
+
+	private final int       width;
+
+	/**
+	 * Erstellt die Summentabelle der gegebenen Karte
+	 * @param map Karte
+	 */
+	SummedAreaTable(Map map)
+	{
+		this.map = map;
+		width = map.getWidth();
+		height = map.getHeight();
+		tileColumns = (width + TILE_SIZE - 1) >> TILE_SHIFT;
+		tileRows = (height + TILE_SIZE - 1) >> TILE_SHIFT;
+		free = new BitMask(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				if (map.getPointUnchecked(x, y) == Map.EMPTY)
+					free.set(x, y);
+
+		tileTable = new int[(tileColumns + 1) * (tileRows + 1)];
+		for (int tileY = 0; tileY < tileRows; tileY++)
+		{
+			int rowSum = 0;
+			int offset = (tileY + 1) * (tileColumns + 1);
+			int top    = tileY << TILE_SHIFT;
+			int rows   = min(TILE_SIZE, height - top);
+			for (int tileX = 0; tileX < tileColumns; tileX++)
+			{
+				int left = tileX << TILE_SHIFT;
+				rowSum += countRows(left, top, min(TILE_SIZE, width - left), rows);
+				tileTable[offset + tileX + 1] = tileTable[offset - tileColumns - 1 + tileX + 1] + rowSum;
+			}
+		}
+	}
+
+	/**
+	 * Gibt die Anzahl unbegehbarer Punkte im gegebenen Bereich an.
+	 * Der Bereich muss innerhalb der Karte liegen.
+	 * @param x x-Koordinate der linken oberen Ecke
+	 * @param y y-Koordinate der linken oberen Ecke
+	 * @param width Breite des Bereichs
+	 * @param height Hoehe des Bereichs
+	 * @return Anzahl unbegehbarer Punkte
+	 */
+	int count(int x, int y, int width, int height)
+	{
+		if (width <= 0 || height <= 0)
+			return 0;
+		int right  = x + width;
+		int bottom = y + height;
+
+		/*
+		Vollstaendig ueberdeckte Kacheln [fullLeft, fullRight) x [fullTop, fullBottom)
+		 */
+		int fullLeft   = (x + TILE_SIZE - 1) >> TILE_SHIFT;
+		int fullRight  = right >> TILE_SHIFT;
+		int fullTop    = (y + TILE_SIZE - 1) >> TILE_SHIFT;
+		int fullBottom = bottom >> TILE_SHIFT;
+		if (fullLeft >= fullRight || fullTop >= fullBottom)
+			return countRows(x, y, width, height);
+
+		int rowLength = tileColumns + 1;
+		int count = tileTable[fullBottom * rowLength + fullRight] - tileTable[fullBottom * rowLength + fullLeft]
+		            - tileTable[fullTop * rowLength + fullRight] + tileTable[fullTop * rowLength + fullLeft];
+		int innerTop    = fullTop << TILE_SHIFT;
+		int innerBottom = fullBottom << TILE_SHIFT;
+		int innerLeft   = fullLeft << TILE_SHIFT;
+		int innerRight  = fullRight << TILE_SHIFT;
+		count += countRows(x, y, width, innerTop - y);
+		count += countRows(x, innerBottom, width, bottom - innerBottom);
+		count += countRows(x, innerTop, innerLeft - x, innerBottom - innerTop);
+		count += countRows(innerRight, innerTop, right - innerRight, innerBottom - innerTop);
+		return count;
+	}
+
+	/**
+	 * Gibt an, ob der gegebene Bereich vollstaendig innerhalb der Karte liegt
+	 * und keine unbegehbaren Punkte enthaelt.
+	 * @param x x-Koordinate der linken oberen Ecke
+	 * @param y y-Koordinate der linken oberen Ecke
+	 * @param width Breite des Bereichs
+	 * @param height Hoehe des Bereichs
+	 * @return true, wenn der Bereich begehbar ist, sonst false
+	 */
+	boolean isFree(int x, int y, int width, int height)
+	{
+		if (x < 0 || y < 0 || x + width > this.width || y + height > this.height)
+			return false;
+		return count(x, y, width, height) == 0;
+	}
+
+	/**
+	 * Passt die Tabelle an, nachdem sich die Begehbarkeit eines Punktes veraendert hat.
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 */
+	synchronized void update(int x, int y)
+	{
+		boolean isFree = map.getPointUnchecked(x, y) == Map.EMPTY;
+		if (free.get(x, y) == isFree)
+			return;
+		int delta;
+		if (isFree)
+		{
+			free.set(x, y);
+			delta = -1;
+		}
+		else
+		{
+			free.clear(x, y);
+			delta = 1;
+		}
+		int rowLength = tileColumns + 1;
+		for (int row = (y >> TILE_SHIFT) + 1; row <= tileRows; row++)
+		{
+			int offset = row * rowLength;
+			for (int column = (x >> TILE_SHIFT) + 1; column <= tileColumns; column++)
+				tileTable[offset + column] += delta;
+		}
+	}
+
+	/**
+	 * Zaehlt die unbegehbaren Punkte im gegebenen Bereich zeilenweise anhand der Bitmaske
+	 */
+	private int countRows(int x, int y, int width, int height)
+	{
+		if (width <= 0 || height <= 0)
+			return 0;
+		int freeCount = 0;
+		for (int row = y; row < y + height; row++)
+		{
+			for (int column = x; column < x + width; column += TILE_SIZE)
+			{
+				long bits   = free.getBits(column, row);
+				int  length = x + width - column;
+				if (length < TILE_SIZE)
+					bits &= (1L << length) - 1;
+				freeCount += Long.bitCount(bits);
+			}
+		}
+		return width * height - freeCount;
+	}
+}
@@ -0,0 +1,90 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+/**
+ * Speicher fuer die Werte der Punkte einer Karte.
+ * <br>
+ * Die Zugriffsmethoden ueberpruefen die Koordinaten nicht. Liegt ein Punkt ausserhalb
+ * des Speichers, ist das Ergebnis undefiniert. Bereichsgepruefte Zugriffe erfolgen ueber
+ * die Karte.
+ */
+public interface TerrainStorage
+{
+	/**
+	 * Gibt Speicher frei, welcher nach Veraenderungen nicht mehr benoetigt wird.
+	 */
+	default void compact()
+	{
+	}
+
+	/**
+	 * Setzt den Wert aller Punkte des gegebenen Bereichs.
+	 * Der Bereich muss innerhalb des Speichers liegen.
+	 * @param x x-Koordinate der linken oberen Ecke
+	 * @param y y-Koordinate der linken oberen Ecke
+	 * @param width Breite des Bereichs
+	 * @param height Hoehe des Bereichs
+	 * @param value neuer Wert
+	 * @throws IllegalArgumentException wenn der Wert nicht gespeichert werden kann
+	 */
+	default void fill(int x, int y, int width, int height, int value)
+	{
+		for (int row = y; row < y + height; row++)
+			for (int column = x; column < x + width; column++)
+				set(column, row, value);
+	}
+
+	/**
+	 * Gibt den Wert des Punktes (x, y) zurueck
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 * @return Wert des Punktes
+	 */
+	int get(int x, int y);
+
+	/**
+	 * Gibt die Hoehe des Speichers an
+	 * @return Hoehe in Punkten
+	 */
+	int getHeight();
+
+	/**
+	 * Gibt die Breite des Speichers an
+	 * @return Breite in Punkten
+	 */
+	int getWidth();
+
+	/**
+	 * Setzt den Wert des Punktes (x, y)
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 * @param value neuer Wert
+	 * @throws IllegalArgumentException wenn der Wert nicht gespeichert werden kann
+	 */
+	void set(int x, int y, int value);
+}
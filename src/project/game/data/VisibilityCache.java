@@ -0,0 +1,189 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+import project.util.BitMask;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.lang.Math.max;
+
+/**
+ * Zwischenspeicher fuer die Sichtbarkeitsberechnungen einer Karte.
+ * <br>
+ * Ergebnisse werden nach Sichtpunkt und Version der Karte gespeichert. Wird eine Berechnung
+ * fuer einen gespeicherten Sichtpunkt innerhalb des gespeicherten Bereichs bei unveraenderter
+ * Karte erneut angefordert, wird das gespeicherte Ergebnis ausgeschnitten.
+ * <br>
+ * Wird der Bereich bei gleichem Sichtpunkt verschoben, wird ein um einen Rand vergroesserter
+ * Bereich berechnet, sodass weitere kleine Verschiebungen keine Berechnung erfordern.
+ * Da das Ergebnis innerhalb eines Bereichs nicht von dessen Groesse abhaengt, ist dies
+ * gleichwertig zu einer Berechnung des angeforderten Bereichs.
+ * <br>
+ * Bei symmetrischem Shadowcasting wird nur der Bereich der potentiell sichtbaren Zellen des
+ * Sichtpunktes berechnet.
+ */
+class VisibilityCache
+{
+	/**
+	 * Anzahl gespeicherter Sichtpunkte
+	 */
+	private static final int CAPACITY = 8;
+
+	/**
+	 * Groesste Anzahl an Punkten eines gespeicherten Bereichs
+	 */
+	private static final int MAX_CELLS = 1 << 20;
+
+	/**
+	 * Gespeicherte Ergebnisse, zuletzt verwendete zuerst
+	 */
+	private final List<Entry> entries = new ArrayList<>(CAPACITY + 1);
+
+	private final Map map;
+
+	/**
+	 * Erstellt einen neuen Zwischenspeicher fuer die gegebene Karte
+	 * @param map Karte
+	 */
+	VisibilityCache(Map map)
+	{
+		this.map = map;
+	}
+
+	/**
+	 * Entfernt alle gespeicherten Ergebnisse
+	 */
+	synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * Gibt die sichtbaren Punkte innerhalb der gegebenen Begrenzungen zurueck und berechnet
+	 * diese mit dem gegebenen Verfahren, falls kein passendes Ergebnis gespeichert ist.
+	 * @param bounds Begrenzungen innerhalb der Karte
+	 * @param pointOfVision Sichtpunkt
+	 * @param strategy Verfahren zur Sichtbarkeitsberechnung
+	 * @return Bitmaske: (x, y) ist gesetzt, wenn der Punkt (bounds.x + x, bounds.y + y) sichtbar ist
+	 */
+	synchronized BitMask getVisiblePoints(Rectangle bounds, Point pointOfVision, VisibilityStrategy strategy)
+	{
+		if (bounds.isEmpty())
+			return new BitMask(max(bounds.width, 0), max(bounds.height, 0));
+
+		int   version  = map.getVersion();
+		Entry scrolled = null;
+		for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext(); )
+		{
+			Entry entry = iterator.next();
+			if (entry.version != version)
+			{
+				iterator.remove();
+				continue;
+			}
+			if (entry.visionX != pointOfVision.x || entry.visionY != pointOfVision.y)
+				continue;
+			if (entry.region.contains(bounds))
+			{
+				iterator.remove();
+				entries.add(0, entry);
+				return crop(entry, bounds);
+			}
+			scrolled = entry;
+		}
+
+		Rectangle region = new Rectangle(bounds);
+		if (scrolled != null)
+		{
+			entries.remove(scrolled);
+			region.grow(bounds.width / 4, bounds.height / 4);
+			region = region.intersection(new Rectangle(0, 0, map.getWidth(), map.getHeight())).union(bounds);
+		}
+
+		Entry entry = new Entry(pointOfVision, version, region, compute(region, pointOfVision, strategy));
+		if ((long) region.width * region.height <= MAX_CELLS)
+		{
+			entries.add(0, entry);
+			if (entries.size() > CAPACITY)
+				entries.remove(CAPACITY);
+		}
+		return crop(entry, bounds);
+	}
+
+	/**
+	 * Berechnet die sichtbaren Punkte innerhalb des gegebenen Bereichs.
+	 * Bei symmetrischem Shadowcasting wird der Bereich auf die potentiell sichtbaren Punkte
+	 * der Zelle des Sichtpunktes beschraenkt, da ausserhalb keine Punkte sichtbar sein koennen.
+	 */
+	private BitMask compute(Rectangle region, Point pointOfVision, VisibilityStrategy strategy)
+	{
+		if (!(strategy instanceof ShadowcastingVisibility))
+			return strategy.getVisiblePoints(map, region, pointOfVision);
+		Rectangle limit = map.getPotentiallyVisibleSet().getBounds(pointOfVision);
+		if (limit == null || limit.contains(region))
+			return strategy.getVisiblePoints(map, region, pointOfVision);
+		Rectangle area = region.intersection(limit);
+		if (area.isEmpty())
+			return new BitMask(region.width, region.height);
+		return strategy.getVisiblePoints(map, area, pointOfVision)
+				.crop(region.x - area.x, region.y - area.y, region.width, region.height);
+	}
+
+	/**
+	 * Schneidet die gegebenen Begrenzungen aus einem gespeicherten Ergebnis aus
+	 */
+	private BitMask crop(Entry entry, Rectangle bounds)
+	{
+		return entry.mask.crop(bounds.x - entry.region.x, bounds.y - entry.region.y, bounds.width, bounds.height);
+	}
+
+	/**
+	 * Gespeichertes Ergebnis einer Sichtbarkeitsberechnung
+	 */
+	private static class Entry
+	{
+		private final BitMask   mask;
+		private final Rectangle region;
+		private final int       version;
+		private final int       visionX;
+		private final int       visionY;
+
+		private Entry(Point pointOfVision, int version, Rectangle region, BitMask mask)
+		{
+			visionX = pointOfVision.x;
+			visionY = pointOfVision.y;
+			this.version = version;
+			this.region = region;
+			this.mask = mask;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.data;
+
+import project.util.BitMask;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+/**
+ * Verfahren zur Berechnung der von einem Sichtpunkt aus sichtbaren Punkte einer Karte.
+ * <br>
+ * Ein Punkt ist sichtbar, wenn er selbst keine Wand ist und die Sichtlinie vom Sichtpunkt
+ * nicht durch Waende unterbrochen wird. Waende sind nie sichtbar.
+ * @see Map#setVisibilityStrategy(VisibilityStrategy)
+ */
+public interface VisibilityStrategy
+{
+	/**
+	 * Berechnet die sichtbaren Punkte innerhalb der gegebenen Begrenzungen.
+	 * Die Begrenzungen liegen vollstaendig innerhalb der Karte.
+	 * @param map Karte
+	 * @param bounds Begrenzungen der Berechnung
+	 * @param pointOfVision Sichtpunkt
+	 * @return Bitmaske: (x, y) ist gesetzt, wenn der Punkt (bounds.x + x, bounds.y + y) sichtbar ist
+	 */
+	BitMask getVisiblePoints(Map map, Rectangle bounds, Point pointOfVision);
+}
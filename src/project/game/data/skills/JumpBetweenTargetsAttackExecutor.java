@@ -26,14 +26,17 @@
 package project.game.data.skills;
 
 import project.game.data.GameActor;
+import project.game.data.PathFindingService;
+import project.game.data.PathResult;
 import project.gui.dynamics.animation.Animation;
 import project.gui.dynamics.animation.AnimationHandler;
 
 import java.awt.Point;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 public class JumpBetweenTargetsAttackExecutor extends SkillExecutor
 {
@@ -44,55 +47,71 @@ public class JumpBetweenTargetsAttackExecutor extends SkillExecutor
 	@Override
 	public void executeSkill(final GameActor attackingActor, final GameActor attackTarget)
 	{
-		List<GameActor> targets = Arrays.stream(getPossibleTargets())
+		GameActor[] candidates = Arrays.stream(getPossibleTargets())
 				.filter(GameActor::isAlive)
 				.filter(target -> attackingActor.getCenter().distance(target.getCenter()) <=
 				                  getConfiguration().getAttackRange())
-				.filter(target -> getLevel().getMap().canSee(attackingActor.getCenter(), target.getCenter()))
-				.limit(jumpCount)
-				.collect(Collectors.toList());
+				.toArray(GameActor[]::new);
+
+		Point[]   centers = Arrays.stream(candidates).map(GameActor::getCenter).toArray(Point[]::new);
+		boolean[] visible = new boolean[candidates.length];
+		getLevel().getMap().canSee(attackingActor.getCenter(), centers, visible);
+
+		List<GameActor> targets = new ArrayList<>(jumpCount);
+		for (int i = 0; i < candidates.length && targets.size() < jumpCount; i++)
+			if (visible[i])
+				targets.add(candidates[i]);
 
 		if (targets.isEmpty())
 			return;
 
+		/*
+		Die Pfade aller Spruenge sind voneinander unabhaengig und werden gleichzeitig berechnet.
+		Die Spruenge werden erst ausgefuehrt, sobald alle Pfade vorliegen, sodass die Gameloop
+		nicht auf die Pfadsuche warten muss.
+		 */
+		List<CompletableFuture<PathResult>> paths = new ArrayList<>(jumpCount);
 		for (int i = 0; i < jumpCount; i++)
 		{
-			final Point[] path;
+			Point from = i == 0 ? attackingActor.getCenter() : targets.get((i - 1) % targets.size()).getCenter();
+			paths.add(PathFindingService.getDefault().findPath(
+					getLevel().getMap(),
+					from,
+					targets.get(i % targets.size()).getCenter(),
+					1,
+					1));
+		}
 
-			if (i == 0)
-				path = getLevel()
-						.getMap()
-						.findPath(
-								attackingActor.getCenter(),
-								targets.get(i % targets.size()).getCenter());
-			else
-				path = getLevel()
-						.getMap()
-						.findPath(
-								targets.get((i - 1) % targets.size()).getCenter(),
-								targets.get(i % targets.size()).getCenter());
+		CompletableFuture<?>[] pending = paths.toArray(new CompletableFuture<?>[paths.size()]);
+		CompletableFuture.allOf(pending).whenComplete((ignored, error) -> {
+			if (error != null)
+				return;
+			for (int i = 0; i < jumpCount; i++)
+			{
+				final Point[] path = paths.get(i).join().getPath();
 
-			if (path == null)
-				continue;
+				if (path == null)
+					continue;
 
-			Animation jumpAnimation = new Animation((AnimationHandler) value -> {
-				attackingActor.setCenter(path[(int) value]);
-			});
-			jumpAnimation.setDuration(jumpDuration);
-			jumpAnimation.setDelay(jumpDuration * i);
-			jumpAnimation.setFromValue(0);
-			jumpAnimation.setToValue(path.length - 1);
-			final int finalI = i;
-			jumpAnimation.setCompletionHandler(animation -> {
-				GameActor target = targets.get(finalI % targets.size());
-				if (!target.isAlive())
-					return;
-				target.decreaseHealth(getConfiguration().getRandomizedDamage());
-				if (!target.isAlive())
-					runKillAction(target);
-			});
-			getTarget().addAnimation(jumpAnimation);
-		}
+				Animation jumpAnimation = new Animation((AnimationHandler) value -> {
+					attackingActor.setCenter(path[(int) value]);
+				});
+				jumpAnimation.setDuration(jumpDuration);
+				jumpAnimation.setDelay(jumpDuration * i);
+				jumpAnimation.setFromValue(0);
+				jumpAnimation.setToValue(path.length - 1);
+				final int finalI = i;
+				jumpAnimation.setCompletionHandler(animation -> {
+					GameActor target = targets.get(finalI % targets.size());
+					if (!target.isAlive())
+						return;
+					target.decreaseHealth(getConfiguration().getRandomizedDamage());
+					if (!target.isAlive())
+						runKillAction(target);
+				});
+				getTarget().addAnimation(jumpAnimation);
+			}
+		});
 	}
 
 	@Override
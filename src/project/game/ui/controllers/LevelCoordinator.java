@@ -25,8 +25,13 @@
 
 package project.game.ui.controllers;
 
+import project.audio.AudioPlayer;
 import project.game.Underworld;
+import project.game.data.Enemy;
 import project.game.data.Level;
+import project.game.data.LevelLoadingDelegate;
+import project.game.data.Player;
+import project.game.data.SkillConfiguration;
 import project.game.data.state.LevelState;
 import project.game.data.state.SavedGameState;
 import project.gui.components.TComponent;
@@ -39,7 +44,11 @@ import project.gui.controller.dialog.MessageDialog;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import static project.game.localization.LocalizedString.LocalizedString;
 
@@ -74,6 +83,17 @@ public class LevelCoordinator extends PageController
 
 	private int     levelIndex;
 
+	/**
+	 * Laden des Levels, dessen Ladebalken gerade angezeigt wird
+	 */
+	private LevelLoadingViewController loadingLevel;
+
+	/**
+	 * Im Hintergrund geladenes Level und der Praefix seiner Konfiguration
+	 */
+	private LevelLoadingViewController preloadedLevel;
+	private String                     preloadedLevelPrefix;
+
 	private boolean shownLevel;
 
 	private boolean shownPostLevelText;
@@ -111,6 +131,13 @@ public class LevelCoordinator extends PageController
 	{
 		currentLevel = null;
 
+		if (loadingLevel != null)
+		{
+			LevelLoadingViewController loadedLevel = loadingLevel;
+			loadingLevel = null;
+			return showLevel(loadedLevel);
+		}
+
 		if (!SavedGameState.getPlayerState().playerClassChosen())
 		{
 			ClassChooserController classChooser = new ClassChooserController();
@@ -158,10 +185,12 @@ public class LevelCoordinator extends PageController
 
 		String propertiesPrefix = null;
 
-		Level nextLevel = SavedGameState.getLevelState().getSavedLevel();
-		if (nextLevel != null)
+		LevelLoadingViewController nextLevel;
+		Level savedLevel = SavedGameState.getLevelState().getSavedLevel();
+		if (savedLevel != null)
 		{
 			SavedGameState.getLevelState().setSavedLevel(null);
+			nextLevel = restoreLevel(savedLevel);
 			if (didPlayTutorial)
 			{
 				propertiesPrefix = "level_" + levelIndex + "_";
@@ -228,6 +257,11 @@ public class LevelCoordinator extends PageController
 				String preText = levelProperties.getProperty(propertiesPrefix + "pre_text");
 				if (preText != null)
 				{
+					/*
+					Lade das Level, waehrend der Text gelesen wird
+					 */
+					preloadLevel(propertiesPrefix);
+
 					PlainMessageViewController plainMessageController = new PlainMessageViewController();
 					plainMessageController.setMessage(LocalizedString(preText));
 					plainMessageController.setOnKeyPress(this::next);
@@ -256,57 +290,22 @@ public class LevelCoordinator extends PageController
 			shownPreLevelText = true;
 			shownLevel = true;
 
-			try
-			{
-				nextLevel = loadLevel(propertiesPrefix);
-			}
-			catch (Throwable e)
-			{
-				e.printStackTrace();
-				MessageDialog dialog = new MessageDialog();
-				dialog.setMessage(
-						LocalizedString("level_configuration_loading_fault") + "\n" + e.getLocalizedMessage());
-				dialog.setDelegate(new DialogDelegate()
-				{
-					@Override
-					public void dialogDidCancel(final Dialog dialog)
-					{
-						getNavigationController().pop();
-					}
-
-					@Override
-					public void dialogDidReturn(final Dialog dialog)
-					{
-						getNavigationController().pop();
-					}
-				});
-				dialog.setPopOnEnd(false);
-				return dialog;
-			}
+			nextLevel = loadLevel(propertiesPrefix);
 		}
 
-		currentLevel = nextLevel;
-
-		LevelViewController levelVC = new LevelViewController(nextLevel);
-//		levelVC.setAttacksEnabled(!Boolean.parseBoolean(levelProperties.getProperty(
-//				propertiesPrefix + "attacks_disabled", "false")));
-//		levelVC.setSkillsEnabled(!Boolean.parseBoolean(levelProperties.getProperty(
-//				propertiesPrefix + "skills_disabled", "false")));
-//		levelVC.setDamageEnabled(!Boolean.parseBoolean(levelProperties.getProperty(
-//				propertiesPrefix + "damage_disabled", "false")));
-		levelVC.setOnLevelCancel(() -> {
-			save();
-			getNavigationController().pop();
-			didExit = true;
-		});
-		levelVC.setOnLevelFailure(() -> {
-			currentLevel = null;
-			save();
-			getNavigationController().pop();
-		});
-		levelVC.setOnLevelFinish(this::next);
-		levelVC.setOnReachEntrance(this::previous);
-		return levelVC;
+		/*
+		Zeige waehrend des Ladens einen Ladebalken, bis das Level vollstaendig geladen wurde
+		 */
+		if (!nextLevel.isLoaded())
+		{
+			LevelLoadingViewController loadingController = nextLevel;
+			loadingController.setOnLevelLoad(() -> {
+				loadingLevel = loadingController;
+				next();
+			});
+			return loadingController;
+		}
+		return showLevel(nextLevel);
 	}
 
 	@Override
@@ -353,13 +352,15 @@ public class LevelCoordinator extends PageController
 	}
 
 	/**
-	 * Laed ein neues Level durch die Konfiguration mit dem angegebenen Praefix
+	 * Erstellt ein neues Level durch die Konfiguration mit dem angegebenen Praefix
 	 *
 	 * @param propertiesPrefix Praefix der Level-Properties
+	 * @param loadingDelegate Delegate fuer den Ladefortschritt
 	 * @return Geladenes Level
 	 * @throws IOException wenn das Level nicht existiert oder nicht geladen werden kann
 	 */
-	private Level loadLevel(String propertiesPrefix) throws IOException
+	private static Level createLevel(String propertiesPrefix, LevelLoadingDelegate loadingDelegate)
+			throws IOException
 	{
 		URL    levelURL           = Level.class.getResource(
 				"levels/" + levelProperties.getProperty(propertiesPrefix + "filename") + ".properties");
@@ -370,7 +371,118 @@ public class LevelCoordinator extends PageController
 				propertiesPrefix,
 				staticEnemySource,
 				dynamicEnemySource);
-		return new Level(levelURL, staticEnemySource, dynamicEnemySource);
+		return new Level(levelURL, staticEnemySource, dynamicEnemySource, loadingDelegate);
+	}
+
+	/**
+	 * Laed die Sounds aller Angriffe und Skills der Gegner und des Spielers des gegebenen Levels
+	 * in den Cache, sodass diese beim ersten Angriff nicht geladen werden muessen.
+	 * @param level Level
+	 */
+	private static void warmUpSounds(Level level)
+	{
+		List<SkillConfiguration> skills = new ArrayList<>();
+		for (Enemy enemy : level.getEnemies())
+			skills.add(enemy.getBaseAttack());
+		Player player = level.getPlayer();
+		if (player != null)
+		{
+			skills.add(player.getBaseAttack());
+			skills.add(player.getSkill1());
+			skills.add(player.getSkill2());
+			skills.add(player.getSkill3());
+			skills.add(player.getSkill4());
+		}
+
+		Set<String> soundSources = new HashSet<>();
+		for (SkillConfiguration skill : skills)
+			if (skill != null && skill.getSoundSource() != null)
+				soundSources.add(skill.getSoundSource());
+		for (String soundSource : soundSources)
+		{
+			URL soundURL = AudioPlayer.class.getResource(soundSource);
+			if (soundURL != null)
+				AudioPlayer.preload(soundURL);
+		}
+	}
+
+	/**
+	 * Gibt den Praefix der Konfiguration des Levels an, welches nach dem aktuellen Level gespielt wird.
+	 *
+	 * @return Praefix der Level-Properties oder null, wenn kein weiteres Level existiert
+	 */
+	private String getFollowingLevelPrefix()
+	{
+		if (!didPlayTutorial)
+		{
+			if (tutorialIndex + 1 <= Integer.parseInt(levelProperties.getProperty("tutorial_level_count")))
+				return "tutorial_level_" + (tutorialIndex + 1) + "_";
+			else
+				return "level_" + levelIndex + "_";
+		}
+		if (levelIndex + 1 > Integer.parseInt(levelProperties.getProperty("level_count")))
+			return null;
+		return "level_" + (levelIndex + 1) + "_";
+	}
+
+	/**
+	 * Laed ein neues Level durch die Konfiguration mit dem angegebenen Praefix im Hintergrund.
+	 * Wurde dieses bereits im Hintergrund vorgeladen, wird das vorgeladene Level verwendet.
+	 *
+	 * @param propertiesPrefix Praefix der Level-Properties
+	 * @return Laden des Levels
+	 */
+	private LevelLoadingViewController loadLevel(String propertiesPrefix)
+	{
+		if (preloadedLevel == null || !propertiesPrefix.equals(preloadedLevelPrefix))
+			preloadLevel(propertiesPrefix);
+
+		LevelLoadingViewController level = preloadedLevel;
+		preloadedLevel = null;
+		preloadedLevelPrefix = null;
+		return level;
+	}
+
+	/**
+	 * Beginnt das Laden des Levels mit dem angegebenen Praefix im Hintergrund.
+	 * Das Laden beginnt erst, nachdem das vorherige Level beendet wurde, sodass sich der
+	 * Zustand des Spielers, mit welchem das Level erstellt wird, nicht mehr aendert.
+	 *
+	 * @param propertiesPrefix Praefix der Level-Properties oder null
+	 */
+	private void preloadLevel(String propertiesPrefix)
+	{
+		if (propertiesPrefix == null || propertiesPrefix.equals(preloadedLevelPrefix))
+			return;
+		if (preloadedLevel != null)
+			preloadedLevel.cancel();
+		LevelLoadingViewController loadingController = new LevelLoadingViewController();
+		loadingController.load(() -> {
+			Level level = createLevel(propertiesPrefix, loadingController);
+			warmUpSounds(level);
+			return level;
+		});
+		preloadedLevelPrefix = propertiesPrefix;
+		preloadedLevel = loadingController;
+	}
+
+	/**
+	 * Laed die Karte und die Objekte eines gesicherten Levels im Hintergrund,
+	 * da diese nicht mit dem Spielstand gesichert werden.
+	 *
+	 * @param level gesichertes Level
+	 * @return Laden des Levels
+	 */
+	private LevelLoadingViewController restoreLevel(Level level)
+	{
+		LevelLoadingViewController loadingController = new LevelLoadingViewController();
+		loadingController.load(() -> {
+			level.setLoadingDelegate(loadingController);
+			level.getMap();
+			warmUpSounds(level);
+			return level;
+		});
+		return loadingController;
 	}
 
 	/**
@@ -391,4 +503,69 @@ public class LevelCoordinator extends PageController
 		levelState.setDidShowPostLevelText(shownPostLevelText);
 		SavedGameState.save();
 	}
+
+	/**
+	 * Erstellt die Darstellung eines geladenen Levels. Ist beim Laden ein Fehler aufgetreten,
+	 * wird stattdessen eine Fehlermeldung angezeigt.
+	 *
+	 * @param loadedLevel Laden des Levels
+	 * @return Darstellung des Levels oder Fehlermeldung
+	 */
+	private ViewController showLevel(LevelLoadingViewController loadedLevel)
+	{
+		Level nextLevel;
+		try
+		{
+			nextLevel = loadedLevel.getLevel();
+		}
+		catch (Throwable e)
+		{
+			e.printStackTrace();
+			MessageDialog dialog = new MessageDialog();
+			dialog.setMessage(
+					LocalizedString("level_configuration_loading_fault") + "\n" + e.getLocalizedMessage());
+			dialog.setDelegate(new DialogDelegate()
+			{
+				@Override
+				public void dialogDidCancel(final Dialog dialog)
+				{
+					getNavigationController().pop();
+				}
+
+				@Override
+				public void dialogDidReturn(final Dialog dialog)
+				{
+					getNavigationController().pop();
+				}
+			});
+			dialog.setPopOnEnd(false);
+			return dialog;
+		}
+
+		currentLevel = nextLevel;
+
+		LevelViewController levelVC = new LevelViewController(nextLevel);
+//		levelVC.setAttacksEnabled(!Boolean.parseBoolean(levelProperties.getProperty(
+//				propertiesPrefix + "attacks_disabled", "false")));
+//		levelVC.setSkillsEnabled(!Boolean.parseBoolean(levelProperties.getProperty(
+//				propertiesPrefix + "skills_disabled", "false")));
+//		levelVC.setDamageEnabled(!Boolean.parseBoolean(levelProperties.getProperty(
+//				propertiesPrefix + "damage_disabled", "false")));
+		levelVC.setOnLevelCancel(() -> {
+			save();
+			getNavigationController().pop();
+			didExit = true;
+		});
+		levelVC.setOnLevelFailure(() -> {
+			currentLevel = null;
+			save();
+			getNavigationController().pop();
+		});
+		levelVC.setOnLevelFinish(() -> {
+			preloadLevel(getFollowingLevelPrefix());
+			next();
+		});
+		levelVC.setOnReachEntrance(this::previous);
+		return levelVC;
+	}
 }
@@ -0,0 +1,191 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+package project.game.ui.controllers;
+
+import project.game.data.Level;
+import project.game.data.LevelLoadingDelegate;
+import project.gui.components.TLabel;
+import project.gui.components.TProgressBar;
+import project.gui.controller.ViewController;
+import project.gui.layout.VerticalFlowLayout;
+import project.util.StringUtils;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static project.game.localization.LocalizedString.LocalizedString;
+
+/**
+ * ViewController, welcher ein Level im Hintergrund laedt und
+ * den Fortschritt des Ladens mit einem Ladebalken anzeigt.
+ * Nachdem das Level geladen wurde, wird die Aktion onLevelLoad im Swing-Thread ausgefuehrt.
+ */
+public class LevelLoadingViewController extends ViewController implements LevelLoadingDelegate
+{
+	/**
+	 * Executor zum Laden von Leveln im Hintergrund
+	 */
+	private static final ExecutorService loadingExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Level Loader");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private          boolean       finished;
+	private volatile Future<Level> level;
+	private          Runnable      onLevelLoad;
+	private volatile double        progress;
+	private          TProgressBar  progressBar;
+
+	/**
+	 * Bricht das Laden ab, falls dieses noch nicht begonnen hat
+	 */
+	public void cancel()
+	{
+		Future<Level> level = this.level;
+		if (level != null)
+			level.cancel(false);
+	}
+
+	/**
+	 * Gibt das geladene Level zurueck und wartet gegebenenfalls auf die Fertigstellung des Ladens.
+	 * @return Geladenes Level
+	 * @throws IOException wenn das Level nicht existiert oder nicht geladen werden kann
+	 * @throws IllegalStateException wenn das Laden noch nicht begonnen wurde
+	 */
+	public Level getLevel() throws IOException
+	{
+		Future<Level> level = this.level;
+		if (level == null)
+			throw new IllegalStateException("Level loading has not been started.");
+		try
+		{
+			return level.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while loading level.");
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			else if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IOException("Level could not be loaded.", e.getCause());
+		}
+	}
+
+	/**
+	 * Aktion, welche nach dem Laden des Levels ausgefuehrt werden soll
+	 * @return Ladeaktion
+	 */
+	public Runnable getOnLevelLoad()
+	{
+		return onLevelLoad;
+	}
+
+	/**
+	 * Gibt an, ob das Laden abgeschlossen ist. Dies ist auch der Fall,
+	 * wenn beim Laden ein Fehler aufgetreten ist.
+	 * @return true, wenn das Laden abgeschlossen ist, sonst false
+	 */
+	public boolean isLoaded()
+	{
+		Future<Level> level = this.level;
+		return level != null && level.isDone();
+	}
+
+	@Override
+	public void levelLoadingDidProgress(final Level level, final double progress)
+	{
+		this.progress = progress;
+	}
+
+	/**
+	 * Beginnt das Laden eines Levels im Hintergrund.
+	 * Der Ladevorgang sollte diesen Controller als LevelLoadingDelegate verwenden.
+	 * @param loader Ladevorgang
+	 * @throws IllegalStateException wenn das Laden bereits begonnen wurde
+	 */
+	public void load(Callable<Level> loader)
+	{
+		if (level != null)
+			throw new IllegalStateException("Level loading has already been started.");
+		level = loadingExecutor.submit(loader);
+	}
+
+	/**
+	 * Setzt die Aktion, welche nach dem Laden des Levels im Swing-Thread ausgefuehrt werden soll.
+	 * Das Level kann daraufhin mit getLevel() abgefragt werden.
+	 * @param onLevelLoad Ladeaktion
+	 */
+	public void setOnLevelLoad(final Runnable onLevelLoad)
+	{
+		this.onLevelLoad = onLevelLoad;
+	}
+
+	@Override
+	protected void initializeView()
+	{
+		super.initializeView();
+
+		TLabel messageLabel = new TLabel();
+		messageLabel.setText(LocalizedString("level_loading_message"));
+		messageLabel.setSize(StringUtils.getStringDimensions(LocalizedString("level_loading_message")));
+		getView().add(messageLabel);
+
+		progressBar = new TProgressBar();
+		progressBar.setSize(40, 1);
+		progressBar.setValue(progress);
+		getView().add(progressBar);
+
+		VerticalFlowLayout layout = new VerticalFlowLayout();
+		layout.setSpacing(2);
+		getView().setLayoutManager(layout);
+	}
+
+	@Override
+	protected void updateViews(final double time)
+	{
+		super.updateViews(time);
+		progressBar.setValue(progress);
+		if (finished || !isLoaded())
+			return;
+		finished = true;
+		//Die Aktion kann den aktuellen Controller ersetzen und wird daher
+		//nicht waehrend der Aktualisierung der Animationen ausgefuehrt.
+		if (onLevelLoad != null)
+			SwingUtilities.invokeLater(onLevelLoad);
+	}
+}
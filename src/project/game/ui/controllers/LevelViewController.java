@@ -31,6 +31,7 @@ import project.game.data.Enemy;
 import project.game.data.Key;
 import project.game.data.Level;
 import project.game.data.state.SavedGameState;
+import project.game.ui.views.LightSource;
 import project.game.ui.views.MapView;
 import project.game.ui.views.PortalView;
 import project.gui.components.TComponent;
@@ -62,6 +63,11 @@ import static project.game.localization.LocalizedString.LocalizedString;
  */
 public class LevelViewController extends ViewController
 {
+	/**
+	 * Staerke der Lichtquellen an Ein- und Ausgaengen
+	 */
+	private static final float PORTAL_LIGHT_INTENSITY = 0.4f;
+
 	private boolean                        attacksEnabled;
 
 	private TLabel                         collectedKeys;
@@ -501,6 +507,9 @@ public class LevelViewController extends ViewController
 		entrance.setTimeFactor(-2);
 		entrance.setHueFactor(0.1f);
 		mapView.add(entrance);
+		mapView.getLightMap().add(new LightSource(
+				new Point((int) entranceBounds.getCenterX(), (int) entranceBounds.getCenterY()),
+				PORTAL_LIGHT_INTENSITY));
 
 		Rectangle[] exitBounds = level.getExitBounds();
 		for (Rectangle bounds : exitBounds)
@@ -511,6 +520,9 @@ public class LevelViewController extends ViewController
 			finishView.setTimeFactor(2);
 			finishView.setHueFactor(0.05f);
 			mapView.add(finishView);
+			mapView.getLightMap().add(new LightSource(
+					new Point((int) bounds.getCenterX(), (int) bounds.getCenterY()),
+					PORTAL_LIGHT_INTENSITY));
 		}
 
 		Key[] keys = level.getKeys();
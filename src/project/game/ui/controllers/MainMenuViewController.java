@@ -41,7 +41,6 @@ import java.awt.Color;
 import java.awt.FileDialog;
 import java.awt.Frame;
 import java.io.File;
-import java.net.URL;
 
 import static project.game.localization.LocalizedString.LocalizedString;
 
@@ -140,24 +139,33 @@ public class MainMenuViewController extends ViewController
 			if (filename == null)
 				return;
 
-			File file = new File(directory + filename);
-			try
-			{
-				URL                 url                 = file.toURI().toURL();
-				Level               level               = new Level(url, "CarnivorousPlant", "PossessedKnight");
-				LevelViewController levelViewController = new LevelViewController(level);
-				levelViewController.setOnLevelFinish(() -> getNavigationController().pop());
-				levelViewController.setOnLevelFailure(() -> getNavigationController().pop());
-				levelViewController.setOnLevelCancel(() -> getNavigationController().pop());
-				getNavigationController().push(levelViewController);
-			}
-			catch (Throwable e)
-			{
-				e.printStackTrace();
-				MessageDialog messageDialog = new MessageDialog();
-				messageDialog.setMessage(
-						LocalizedString("message_level_loading_error") + "\n" + e.getLocalizedMessage());
-			}
+			File                       file              = new File(directory + filename);
+			LevelLoadingViewController loadingController = new LevelLoadingViewController();
+			loadingController.load(() -> new Level(
+					file.toURI().toURL(),
+					"CarnivorousPlant",
+					"PossessedKnight",
+					loadingController));
+			loadingController.setOnLevelLoad(() -> {
+				getNavigationController().pop();
+				try
+				{
+					Level               level               = loadingController.getLevel();
+					LevelViewController levelViewController = new LevelViewController(level);
+					levelViewController.setOnLevelFinish(() -> getNavigationController().pop());
+					levelViewController.setOnLevelFailure(() -> getNavigationController().pop());
+					levelViewController.setOnLevelCancel(() -> getNavigationController().pop());
+					getNavigationController().push(levelViewController);
+				}
+				catch (Throwable e)
+				{
+					e.printStackTrace();
+					MessageDialog messageDialog = new MessageDialog();
+					messageDialog.setMessage(
+							LocalizedString("message_level_loading_error") + "\n" + e.getLocalizedMessage());
+				}
+			});
+			getNavigationController().push(loadingController);
 		});
 		getView().add(loadLevel);
 
@@ -0,0 +1,330 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.ui.views;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Lichtkarte fuer die Schattierung einer Karte.
+ * <br>
+ * Fuer jeden Punkt wird der Helligkeitsverlust zur hellsten Lichtquelle fuer einen steilen
+ * (6 pro Entfernungseinheit) und einen flachen (4 pro Entfernungseinheit) Abfall gespeichert,
+ * jeweils begrenzt auf DARK. Boeden und Wasser werden mit dem steilen, Waende mit dem flachen
+ * Abfall schattiert, sodass die Darstellung einer Zeichenoperation pro Punkt entspricht.
+ * <br>
+ * Die Entfernungen jeder Staerke werden einmalig als Tabelle berechnet. Wird eine Lichtquelle
+ * bewegt, hinzugefuegt oder entfernt, werden nur die Punkte in ihrem Umkreis neu bestimmt.
+ * Die Werte werden in Kacheln gespeichert, welche erst belegt werden, wenn ein Punkt der Kachel
+ * beleuchtet wird.
+ * <br>
+ * Lichtquellen koennen aus beliebigen Threads veraendert werden, waehrend die Karte gezeichnet
+ * wird. Veraenderungen werden in einer Kopie der betroffenen Kacheln berechnet, welche erst
+ * anschliessend die bisherige Kachel ersetzt, sodass beim Zeichnen nie ein teilweise
+ * berechneter Zustand gelesen wird.
+ */
+public class LightMap
+{
+	/**
+	 * Helligkeitsverlust eines unbeleuchteten Punktes
+	 */
+	public static final int DARK = 255;
+
+	private static final int TILE_HEIGHT = 32;
+	private static final int TILE_WIDTH  = 64;
+
+	/**
+	 * Beginn des flachen Helligkeitsverlusts innerhalb einer Kachel
+	 */
+	private static final int SHALLOW_OFFSET = TILE_WIDTH * TILE_HEIGHT;
+
+	/**
+	 * Entfernungstabellen nach Staerke der Lichtquelle
+	 */
+	private static final java.util.Map<Float, Kernel> kernels = new ConcurrentHashMap<>();
+
+	private final int               height;
+
+	/**
+	 * Lichtquellen der Karte, Zugriff nur mit Sperre der Lichtkarte
+	 */
+	private final List<LightSource> lights = new ArrayList<>();
+
+	private final int               tileColumns;
+
+	/**
+	 * Kacheln mit dem steilen Helligkeitsverlust ab 0 und dem flachen Helligkeitsverlust
+	 * ab SHALLOW_OFFSET, null fuer unbeleuchtete Kacheln
+	 */
+	private final AtomicReferenceArray<byte[]> tiles;
+
+	private final int               width;
+
+	/**
+	 * Erstellt eine neue, unbeleuchtete Lichtkarte
+	 * @param width Breite der Karte
+	 * @param height Hoehe der Karte
+	 */
+	public LightMap(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		tileColumns = (width + TILE_WIDTH - 1) / TILE_WIDTH;
+		int tileRows = (height + TILE_HEIGHT - 1) / TILE_HEIGHT;
+		tiles = new AtomicReferenceArray<>(tileColumns * tileRows);
+	}
+
+	/**
+	 * Gibt die Entfernungstabelle fuer Lichtquellen der gegebenen Staerke zurueck
+	 * @param intensity Staerke
+	 * @return Entfernungstabelle
+	 */
+	static Kernel getKernel(float intensity)
+	{
+		return kernels.computeIfAbsent(intensity, Kernel::new);
+	}
+
+	/**
+	 * Fuegt eine Lichtquelle hinzu.
+	 * Ist die Lichtquelle bereits Teil dieser Lichtkarte, geschieht nichts.
+	 * @param light Lichtquelle
+	 * @throws IllegalArgumentException wenn die Lichtquelle Teil einer anderen Lichtkarte ist
+	 */
+	public synchronized void add(LightSource light)
+	{
+		if (light.lightMap == this)
+			return;
+		if (light.lightMap != null)
+			throw new IllegalArgumentException("Light source is already part of another light map.");
+		light.lightMap = this;
+		lights.add(light);
+		update(light.kernel.getBounds(light.getPosition()));
+	}
+
+	/**
+	 * Gibt die Lichtquellen der Karte zurueck
+	 * @return Lichtquellen
+	 */
+	public synchronized LightSource[] getLights()
+	{
+		return lights.toArray(new LightSource[lights.size()]);
+	}
+
+	/**
+	 * Gibt den Helligkeitsverlust eines Punktes fuer einen flachen Abfall an:
+	 * min(4 * Entfernung zur hellsten Lichtquelle, DARK)
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 * @return Helligkeitsverlust zwischen 0 und DARK
+	 */
+	public int getShallowFalloff(int x, int y)
+	{
+		return get(SHALLOW_OFFSET, x, y);
+	}
+
+	/**
+	 * Gibt den Helligkeitsverlust eines Punktes fuer einen steilen Abfall an:
+	 * min(6 * Entfernung zur hellsten Lichtquelle, DARK)
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 * @return Helligkeitsverlust zwischen 0 und DARK
+	 */
+	public int getSteepFalloff(int x, int y)
+	{
+		return get(0, x, y);
+	}
+
+	/**
+	 * Entfernt eine Lichtquelle
+	 * @param light Lichtquelle
+	 */
+	public synchronized void remove(LightSource light)
+	{
+		if (light.lightMap != this)
+			return;
+		light.lightMap = null;
+		lights.remove(light);
+		update(light.kernel.getBounds(light.getPosition()));
+	}
+
+	/**
+	 * Wird aufgerufen, wenn eine Lichtquelle bewegt wurde
+	 * @param light Lichtquelle
+	 * @param previousPosition vorherige Position der Lichtquelle
+	 */
+	synchronized void lightDidMove(LightSource light, Point previousPosition)
+	{
+		if (light.lightMap != this)
+			return;
+		Rectangle previous = light.kernel.getBounds(previousPosition);
+		Rectangle current  = light.kernel.getBounds(light.getPosition());
+		if (previous.intersects(current))
+			update(previous.union(current));
+		else
+		{
+			update(previous);
+			update(current);
+		}
+	}
+
+	/**
+	 * Gibt einen Wert des steilen oder flachen Helligkeitsverlusts zurueck
+	 */
+	private int get(int offset, int x, int y)
+	{
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return DARK;
+		byte[] tile = tiles.get(y / TILE_HEIGHT * tileColumns + x / TILE_WIDTH);
+		if (tile == null)
+			return DARK;
+		return tile[offset + (y % TILE_HEIGHT) * TILE_WIDTH + x % TILE_WIDTH] & 0xFF;
+	}
+
+	/**
+	 * Bestimmt alle Punkte des gegebenen Bereichs aus den Lichtquellen, deren Umkreis
+	 * den Bereich schneidet, neu
+	 */
+	private void update(Rectangle region)
+	{
+		region = region.intersection(new Rectangle(0, 0, width, height));
+		if (region.isEmpty())
+			return;
+
+		List<LightSource> affecting = new ArrayList<>();
+		for (LightSource light : lights)
+			if (light.kernel.getBounds(light.getPosition()).intersects(region))
+				affecting.add(light);
+
+		for (int tileY = region.y / TILE_HEIGHT; tileY <= (region.y + region.height - 1) / TILE_HEIGHT; tileY++)
+			for (int tileX = region.x / TILE_WIDTH; tileX <= (region.x + region.width - 1) / TILE_WIDTH; tileX++)
+			{
+				Rectangle tileRegion = new Rectangle(tileX * TILE_WIDTH, tileY * TILE_HEIGHT, TILE_WIDTH, TILE_HEIGHT)
+						.intersection(region);
+				int    index    = tileY * tileColumns + tileX;
+				byte[] previous = tiles.get(index);
+				byte[] tile;
+				if (previous == null)
+				{
+					if (affecting.isEmpty())
+						continue;
+					tile = new byte[2 * SHALLOW_OFFSET];
+					Arrays.fill(tile, (byte) DARK);
+				}
+				else
+					tile = previous.clone();
+				for (int y = tileRegion.y; y < tileRegion.y + tileRegion.height; y++)
+				{
+					int from = (y % TILE_HEIGHT) * TILE_WIDTH + tileRegion.x - tileX * TILE_WIDTH;
+					Arrays.fill(tile, from, from + tileRegion.width, (byte) DARK);
+					Arrays.fill(tile, SHALLOW_OFFSET + from, SHALLOW_OFFSET + from + tileRegion.width, (byte) DARK);
+				}
+				for (LightSource light : affecting)
+					light.kernel.apply(light.getPosition(), tileRegion, tile, tileX * TILE_WIDTH, tileY * TILE_HEIGHT);
+				tiles.set(index, tile);
+			}
+	}
+
+	/**
+	 * Tabelle der Helligkeitsverluste um eine Lichtquelle einer Staerke
+	 */
+	static class Kernel
+	{
+		private final int    radiusX;
+		private final int    radiusY;
+		private final byte[] shallow;
+		private final byte[] steep;
+
+		/**
+		 * Berechnet die Tabelle fuer die gegebene Staerke
+		 * @param intensity Staerke
+		 */
+		private Kernel(float intensity)
+		{
+			/*
+			Ab einer Entfernung von DARK / 4 ist jeder Punkt unbeleuchtet:
+			dx * dx / 2 < (DARK / 4 * intensity)^2 und dy * dy * 9 < (DARK / 4 * intensity)^2
+			 */
+			double range = DARK / 4.0 * intensity;
+			radiusX = (int) Math.ceil(Math.sqrt(2 * range * range + 1));
+			radiusY = (int) Math.ceil(range / 3);
+			int size = 2 * radiusX + 1;
+			steep = new byte[size * (2 * radiusY + 1)];
+			shallow = new byte[steep.length];
+			for (int dy = -radiusY; dy <= radiusY; dy++)
+				for (int dx = -radiusX; dx <= radiusX; dx++)
+				{
+					double distance = Math.sqrt(dx * dx / 2 + dy * dy * 9) / intensity;
+					int    index    = (dy + radiusY) * size + dx + radiusX;
+					steep[index] = (byte) min((int) (distance * 6), DARK);
+					shallow[index] = (byte) min((int) (distance * 4), DARK);
+				}
+		}
+
+		/**
+		 * Verrechnet die Tabelle mit den Werten einer Kachel innerhalb des gegebenen Bereichs,
+		 * wobei jeweils der kleinere Helligkeitsverlust uebernommen wird
+		 */
+		private void apply(Point center, Rectangle region, byte[] tile, int tileX, int tileY)
+		{
+			int minX = max(region.x, center.x - radiusX);
+			int maxX = min(region.x + region.width, center.x + radiusX + 1);
+			int minY = max(region.y, center.y - radiusY);
+			int maxY = min(region.y + region.height, center.y + radiusY + 1);
+			int size = 2 * radiusX + 1;
+			for (int y = minY; y < maxY; y++)
+			{
+				int kernelOffset = (y - center.y + radiusY) * size - center.x + radiusX;
+				int tileOffset   = (y - tileY) * TILE_WIDTH - tileX;
+				for (int x = minX; x < maxX; x++)
+				{
+					int steepValue = steep[kernelOffset + x] & 0xFF;
+					if (steepValue < (tile[tileOffset + x] & 0xFF))
+						tile[tileOffset + x] = (byte) steepValue;
+					int shallowValue = shallow[kernelOffset + x] & 0xFF;
+					if (shallowValue < (tile[SHALLOW_OFFSET + tileOffset + x] & 0xFF))
+						tile[SHALLOW_OFFSET + tileOffset + x] = (byte) shallowValue;
+				}
+			}
+		}
+
+		/**
+		 * Gibt den Umkreis einer Lichtquelle an der gegebenen Position an
+		 */
+		private Rectangle getBounds(Point center)
+		{
+			return new Rectangle(center.x - radiusX, center.y - radiusY, 2 * radiusX + 1, 2 * radiusY + 1);
+		}
+	}
+}
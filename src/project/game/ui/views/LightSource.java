@@ -0,0 +1,105 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.game.ui.views;
+
+import java.awt.Point;
+
+/**
+ * Lichtquelle einer Lichtkarte.
+ * <br>
+ * Die Helligkeit eines Punktes nimmt mit der gewichteten Entfernung
+ * sqrt(dx * dx / 2 + dy * dy * 9) zur Lichtquelle ab. Die Staerke der Lichtquelle skaliert
+ * diese Entfernung, eine Lichtquelle der Staerke 0.5 leuchtet nur halb so weit wie eine
+ * Lichtquelle der Staerke 1.
+ * @see LightMap
+ */
+public class LightSource
+{
+	/**
+	 * Entfernungen dieser Lichtquelle
+	 */
+	final LightMap.Kernel kernel;
+
+	private final float intensity;
+
+	/**
+	 * Lichtkarte, zu welcher die Lichtquelle hinzugefuegt wurde, oder null
+	 */
+	volatile LightMap lightMap;
+
+	private volatile Point position;
+
+	/**
+	 * Erstellt eine neue Lichtquelle
+	 * @param position Position der Lichtquelle in Kartenkoordinaten
+	 * @param intensity Staerke der Lichtquelle, 1 entspricht dem Licht des Spielers
+	 * @throws IllegalArgumentException wenn die Staerke nicht positiv ist
+	 */
+	public LightSource(Point position, float intensity)
+	{
+		if (!(intensity > 0))
+			throw new IllegalArgumentException("Light intensity must be positive: " + intensity);
+		this.position = new Point(position);
+		this.intensity = intensity;
+		kernel = LightMap.getKernel(intensity);
+	}
+
+	/**
+	 * Gibt die Staerke der Lichtquelle an
+	 * @return Staerke der Lichtquelle
+	 */
+	public float getIntensity()
+	{
+		return intensity;
+	}
+
+	/**
+	 * Gibt die Position der Lichtquelle an
+	 * @return Position in Kartenkoordinaten
+	 */
+	public Point getPosition()
+	{
+		return new Point(position);
+	}
+
+	/**
+	 * Setzt die Position der Lichtquelle.
+	 * Ist die Lichtquelle einer Lichtkarte hinzugefuegt, werden nur die Punkte im Umkreis
+	 * der alten und der neuen Position aktualisiert.
+	 * @param position neue Position in Kartenkoordinaten
+	 */
+	public void setPosition(Point position)
+	{
+		if (this.position.equals(position))
+			return;
+		Point previousPosition = this.position;
+		this.position = new Point(position);
+		LightMap lightMap = this.lightMap;
+		if (lightMap != null)
+			lightMap.lightDidMove(this, previousPosition);
+	}
+}
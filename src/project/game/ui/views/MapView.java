@@ -29,6 +29,7 @@ import project.game.data.Level;
 import project.game.data.Map;
 import project.gui.components.TScrollView;
 import project.gui.graphics.TGraphics;
+import project.util.BitMask;
 
 import java.awt.Color;
 import java.awt.Point;
@@ -38,14 +39,52 @@ import java.awt.Rectangle;
  * Levelansicht fuer das Spiel
  * Stellt die Karte mit Waenden und Sichtbarkeitsbereichen dar.
  * Aktoren und andere Objekte koennen als TComponent-Objekte hinzugefuegt werden.
- * Die Verschiebung der Karte kann mit setOffset(Point) gesetzt werden
+ * Die Verschiebung der Karte kann mit setOffset(Point) gesetzt werden.
+ * Die Helligkeit jedes Punktes wird der Lichtkarte entnommen.
+ * Bereits gesehene, aktuell nicht sichtbare Punkte werden abgedunkelt dargestellt.
  */
 public class MapView extends TScrollView
 {
+	/**
+	 * Anzahl der Farbtoene, zwischen welchen Wasser schwankt
+	 */
+	private static final int WATER_HUES = 8;
+
+	/**
+	 * Feste Helligkeit, mit welcher bereits gesehene, nicht sichtbare Boden- und Wandpunkte
+	 * unabhaengig von der Lichtkarte gezeichnet werden, sodass Lichtquellen hinter Waenden
+	 * nichts preisgeben
+	 */
+	private static final int REMEMBERED_FLOOR_BRIGHTNESS = 16;
+	private static final int REMEMBERED_WALL_BRIGHTNESS  = 40;
+
+	/**
+	 * Farben nach Helligkeit
+	 */
+	private static final Color[]   FLOOR_COLORS = createColorTable(0.1f, 0.5f);
+	private static final Color[]   WALL_COLORS  = createColorTable(0.08f, 0.3f);
+	private static final Color[][] WATER_COLORS = new Color[WATER_HUES][];
+	private static final Color     REMEMBERED_FLOOR_COLOR = new Color(
+			REMEMBERED_FLOOR_BRIGHTNESS, REMEMBERED_FLOOR_BRIGHTNESS, REMEMBERED_FLOOR_BRIGHTNESS);
+	private static final Color     REMEMBERED_WALL_COLOR  = new Color(
+			REMEMBERED_WALL_BRIGHTNESS, REMEMBERED_WALL_BRIGHTNESS, REMEMBERED_WALL_BRIGHTNESS);
+
+	static
+	{
+		for (int i = 0; i < WATER_HUES; i++)
+			WATER_COLORS[i] = createColorTable(0.5f + (i + 0.5f) / WATER_HUES * 0.02f, 0.8f);
+	}
+
 	private Level       level;
-	private boolean[][] visibility;
+	private LightMap    lightMap;
+	private BitMask     visibility;
 	private Point visionPoint;
 
+	/**
+	 * Lichtquelle am Sichtpunkt
+	 */
+	private LightSource visionLight;
+
 	/**
 	 * Gibt das dargestellte Level an
 	 *
@@ -57,16 +96,31 @@ public class MapView extends TScrollView
 	}
 
 	/**
-	 * Setzt die Sichtbarkeitsdaten zurueck und erzwingt eine Neuberechnung
+	 * Gibt die Lichtkarte der Ansicht zurueck.
+	 * Der Sichtpunkt ist automatisch eine Lichtquelle, weitere Lichtquellen koennen hinzugefuegt werden.
+	 * @return Lichtkarte oder null, wenn kein Level gesetzt wurde
+	 */
+	public LightMap getLightMap()
+	{
+		return lightMap;
+	}
+
+	/**
+	 * Setzt die Sichtbarkeitsdaten zurueck und erzwingt eine Neuberechnung.
+	 * Wurde die Karte seit der letzten Berechnung fuer denselben Sichtpunkt nicht veraendert,
+	 * werden die von der Karte zwischengespeicherten Daten verwendet.
+	 * Die sichtbaren Punkte werden dem Wahrnehmungsdienst des Levels mitgeteilt
+	 * und dem erkundeten Bereich des Levels hinzugefuegt.
 	 */
 	public void invalidateVisiblity()
 	{
 		if (visionPoint == null)
 			return;
-		visibility = level.getMap()
-				.getVisiblePoints(
-						new Rectangle(getOffset().x, getOffset().y, getWidth(), getHeight()),
-						visionPoint);
+		Rectangle bounds  = new Rectangle(getOffset().x, getOffset().y, getWidth(), getHeight());
+		int       version = level.getMap().getVersion();
+		visibility = level.getMap().getVisiblePoints(bounds, visionPoint);
+		level.getPerception().publish(visionPoint, bounds, visibility, version);
+		level.getExploredArea().or(visibility, bounds.x, bounds.y);
 		setNeedsDisplay();
 	}
 
@@ -84,6 +138,9 @@ public class MapView extends TScrollView
 	public void setLevel(final Level level)
 	{
 		this.level = level;
+		lightMap = new LightMap(level.getMap().getWidth(), level.getMap().getHeight());
+		visionLight = null;
+		visionPoint = null;
 		setNeedsDisplay();
 	}
 
@@ -97,6 +154,13 @@ public class MapView extends TScrollView
 		if (point != null && (visionPoint == null || !visionPoint.equals(point)))
 		{
 			visionPoint = point;
+			if (visionLight == null)
+			{
+				visionLight = new LightSource(point, 1);
+				lightMap.add(visionLight);
+			}
+			else
+				visionLight.setPosition(point);
 			invalidateVisiblity();
 		}
 	}
@@ -113,131 +177,123 @@ public class MapView extends TScrollView
 	{
 		boolean showPaths = System.getProperty("com.palleklewitz.underworld.map.showpaths", "false").equalsIgnoreCase("true");
 		super.paintComponent(graphics, dirtyRect);
-		for (int x = 0; x < getWidth(); x++)
-			for (int y = 0; y < getHeight(); y++)
+		Rectangle area = dirtyRect.intersection(new Rectangle(0, 0, getWidth(), getHeight()));
+		if (area.isEmpty())
+			return;
+		if (visibility == null)
+		{
+			for (int x = area.x; x < area.x + area.width; x++)
+				for (int y = area.y; y < area.y + area.height; y++)
+					paintPoint(graphics, x, y, true, true, showPaths);
+			return;
+		}
+
+		/*
+		Nicht sichtbare Punkte werden als Wandkante gezeichnet, wenn ein bis zu zwei Punkte
+		horizontal oder einen Punkt vertikal entfernter Punkt sichtbar ist oder gesehen wurde.
+		Da sichtbare Punkte nie Waende sind, ergeben sich alle zu zeichnenden Punkte aus einer
+		kreuzfoermigen Erweiterung der Sichtbarkeitsmaske und des erkundeten Bereichs.
+		Nur Kanten sichtbarer Punkte werden beleuchtet, alle uebrigen Punkte werden als
+		bereits gesehen gezeichnet. Leere Bereiche der Maske werden wortweise uebersprungen.
+		 */
+		BitMask edges = visibility.dilate(2, 1);
+		BitMask drawn = level.getExploredArea()
+				.getMask(getOffset().x, getOffset().y, visibility.getWidth(), visibility.getHeight())
+				.dilate(2, 1);
+		drawn.or(edges);
+		drawn.intersect(area);
+		for (int y = area.y; y < area.y + area.height; y++)
+			for (int x = drawn.nextSetBit(area.x, y); x >= 0; x = drawn.nextSetBit(x + 1, y))
+				paintPoint(graphics, x, y, visibility.get(x, y), edges.get(x, y), showPaths);
+	}
+
+	/**
+	 * Zeichnet einen Punkt der Karte
+	 * @param graphics Grafikkontext
+	 * @param x x-Koordinate in der Ansicht
+	 * @param y y-Koordinate in der Ansicht
+	 * @param visible true, wenn der Punkt sichtbar ist, false, wenn er als Wandkante
+	 *                oder bereits gesehener Punkt abgedunkelt gezeichnet wird
+	 * @param lit true, wenn der Punkt sichtbar oder eine Kante eines sichtbaren Punktes ist
+	 *            und somit aus der Lichtkarte schattiert wird, false, wenn er nur bereits
+	 *            gesehen wurde und mit fester Helligkeit gezeichnet wird
+	 * @param showPaths true, wenn Wege hervorgehoben werden sollen
+	 */
+	private void paintPoint(final TGraphics graphics, int x, int y, boolean visible, boolean lit, boolean showPaths)
+	{
+		int offsetX = x + getOffset().x;
+		int offsetY = y + getOffset().y;
+		if (level.getMap().isOutOfBounds(new Point(offsetX, offsetY)))
+			return;
+		int pixel = level.getPixel(offsetX, offsetY);
+		if (visible)
+		{
+			if (pixel <= 0)
 			{
-				int offsetX = x + getOffset().x;
-				int offsetY = y + getOffset().y;
-				if (!level.getMap().isOutOfBounds(new Point(offsetX, offsetY)))
+				Color color = null;
+				if (showPaths && pixel == -1)
+					graphics.setPoint(x, y, null, Color.GREEN, ' ');
+				else if (pixel == Map.EMPTY)
 				{
-					int pixel = level.getPixel(offsetX, offsetY);
-					if (visibility == null
-					    || (visibility.length > x
-					        && visibility[x].length > y))
-					{
-						if (visibility == null || visibility[x][y])
-						{
-							if (pixel <= 0)
-							{
-								Color color = null;
-								if (showPaths && pixel == -1)
-									graphics.setPoint(x, y, null, Color.GREEN, ' ');
-								else if (pixel == Map.EMPTY)
-								{
-									if (visionPoint != null)
-									{
-										int dx = visionPoint.x - (offsetX);
-										int dy = visionPoint.y - (offsetY);
-										int value = Math.max(
-												255 - (int) (Math.sqrt(dx * dx / 2 + dy * dy * 9) * 6),
-												20);
-										color = Color.getHSBColor(0.1f, 0.5f, value / 255.0f);
-									}
-									else
-									{
-										color = Color.BLACK;
-									}
-
-								}
-								else if (pixel == Map.WATER)
-								{
-									if (visionPoint != null)
-									{
-										int dx = visionPoint.x - (offsetX);
-										int dy = visionPoint.y - (offsetY);
-										int value = Math.max(
-												255 - (int) (Math.sqrt(dx * dx / 2 + dy * dy * 9) * 6),
-												20);
-										color = Color.getHSBColor(
-												0.5f + (float) Math.random() * 0.02f,
-												0.8f,
-												value / 255.0f);
-									}
-									else
-									{
-										color = Color.BLACK;
-									}
-								}
-								graphics.setPoint(x, y, null, color, ' ');
-							}
-							else if (visionPoint != null)
-							{
-								int   dx = visionPoint.x - offsetX;
-								int   dy = visionPoint.y - offsetY;
-								int   value = Math.max(255 - (int) (Math.sqrt(dx * dx / 2 + dy * dy * 9) * 4), 0);
-								Color color = Color.getHSBColor(0.08f, 0.3f, value / 255.0f);
-								graphics.setPoint(x, y, null, color, ' ');
-							}
-						}
-						else if (visibility != null)
-						{
-							boolean visible = false;
-							visible |= offsetX > 0
-							           && x > 0
-							           && level.getPixel(offsetX - 1, offsetY) <= 0
-							           && visibility[x - 1][y];
-							visible |= offsetX > 1
-							           && x > 1
-							           && level.getPixel(offsetX - 2, offsetY) <= 0
-							           && visibility[x - 2][y];
-							visible |= offsetY > 0
-							           && y > 0
-							           && level.getPixel(offsetX, offsetY - 1) <= 0
-							           && visibility[x][y - 1];
-							visible |= offsetX < level.getWidth()-2
-							           && x < visibility.length - 1
-							           && level.getPixel(offsetX + 1, offsetY) <= 0
-							           && visibility[x + 1][y];
-							visible |= offsetX < level.getWidth() - 3
-							           && x < visibility.length - 2
-							           && level.getPixel(offsetX + 2, offsetY) <= 0
-							           && visibility[x + 2][y];
-							visible |= offsetY < level.getHeight()-2
-							           && y < visibility[x].length - 1
-							           && level.getPixel(offsetX, offsetY + 1) <= 0
-							           && visibility[x][y + 1];
-
-							if (visible)
-							{
-								int dx = visionPoint.x - offsetX;
-								int dy = visionPoint.y - offsetY;
-								Color color;
-								if (pixel == Map.EMPTY)
-								{
-									int value = Math.max(220 - (int) (Math.sqrt(dx * dx / 2 + dy * dy * 9) * 6), 10);
-									color = Color.getHSBColor(0.1f, 0.5f, value / 255.0f);
-								}
-								else if (pixel == Map.WATER)
-								{
-									int value = Math.max(
-											220 - (int) (Math.sqrt(dx * dx / 2 + dy * dy * 9) * 6),
-											10);
-									color = Color.getHSBColor(
-											0.5f + (float) Math.random() * 0.02f,
-											0.8f,
-											value / 255.0f);
-								}
-								else
-								{
-									int value = Math.max(255 - (int) (Math.sqrt(dx * dx / 2 + dy * dy * 9) * 4), 0);
-									color = Color.getHSBColor(0.08f, 0.3f, value / 255.0f);
-								}
-								graphics.setPoint(x, y, null, color, ' ');
-							}
-
-						}
-					}
+					if (visionPoint != null)
+						color = FLOOR_COLORS[Math.max(255 - lightMap.getSteepFalloff(offsetX, offsetY), 20)];
+					else
+						color = Color.BLACK;
 				}
+				else if (pixel == Map.WATER)
+				{
+					if (visionPoint != null)
+						color = waterColor(Math.max(255 - lightMap.getSteepFalloff(offsetX, offsetY), 20));
+					else
+						color = Color.BLACK;
+				}
+				graphics.setPoint(x, y, null, color, ' ');
+			}
+			else if (visionPoint != null)
+			{
+				Color color = WALL_COLORS[Math.max(255 - lightMap.getShallowFalloff(offsetX, offsetY), 0)];
+				graphics.setPoint(x, y, null, color, ' ');
 			}
+		}
+		else if (lit)
+		{
+			Color color;
+			if (pixel == Map.EMPTY)
+				color = FLOOR_COLORS[Math.max(220 - lightMap.getSteepFalloff(offsetX, offsetY), 10)];
+			else if (pixel == Map.WATER)
+				color = waterColor(Math.max(220 - lightMap.getSteepFalloff(offsetX, offsetY), 10));
+			else
+				color = WALL_COLORS[Math.max(255 - lightMap.getShallowFalloff(offsetX, offsetY), 0)];
+			graphics.setPoint(x, y, null, color, ' ');
+		}
+		else
+		{
+			Color color = pixel <= 0 ? REMEMBERED_FLOOR_COLOR : REMEMBERED_WALL_COLOR;
+			graphics.setPoint(x, y, null, color, ' ');
+		}
+	}
+
+	/**
+	 * Gibt eine Wasserfarbe der gegebenen Helligkeit mit zufaellig schwankendem Farbton zurueck
+	 * @param brightness Helligkeit zwischen 0 und 255
+	 * @return Wasserfarbe
+	 */
+	private static Color waterColor(int brightness)
+	{
+		return WATER_COLORS[(int) (Math.random() * WATER_HUES)][brightness];
+	}
+
+	/**
+	 * Erstellt eine Farbtabelle mit allen Helligkeiten zwischen 0 und 255
+	 * @param hue Farbton
+	 * @param saturation Saettigung
+	 * @return Farben nach Helligkeit
+	 */
+	private static Color[] createColorTable(float hue, float saturation)
+	{
+		Color[] colors = new Color[256];
+		for (int brightness = 0; brightness < colors.length; brightness++)
+			colors[brightness] = Color.getHSBColor(hue, saturation, brightness / 255.0f);
+		return colors;
 	}
 }
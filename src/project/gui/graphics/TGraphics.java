@@ -28,6 +28,7 @@ package project.gui.graphics;
 import com.googlecode.lanterna.terminal.Terminal;
 import project.gui.components.TBufferedView;
 import project.gui.components.TComponent;
+import project.util.BitMask;
 
 import java.awt.Color;
 import java.awt.Point;
@@ -97,7 +98,7 @@ public class TGraphics
 	private TGraphicsState          currentState;
 	private Rectangle               dirtyRect;
 	private int                     height;
-	private boolean[][]             mask;
+	private BitMask                 mask;
 	private boolean                 maskToBounds;
 	private int                     offsetX;
 	private int                     offsetY;
@@ -261,7 +262,7 @@ public class TGraphics
 		return currentState.fillColor;
 	}
 
-	public boolean[][] getMask()
+	public BitMask getMask()
 	{
 		return mask;
 	}
@@ -357,7 +358,7 @@ public class TGraphics
 		this.currentState.fillColor = fillColor;
 	}
 
-	public void setMask(final boolean[][] mask)
+	public void setMask(final BitMask mask)
 	{
 		this.mask = mask;
 	}
@@ -589,6 +590,6 @@ public class TGraphics
 	private boolean canDrawAtPoint(int x, int y)
 	{
 		return !(dirtyRect != null && !dirtyRect.contains(x, y)) &&
-		       (!maskToBounds || x >= 0 && x < width && y >= 0 && y < height) && (mask == null || (mask.length > x && mask[x].length > y && mask[x][y]));
+		       (!maskToBounds || x >= 0 && x < width && y >= 0 && y < height) && (mask == null || mask.get(x, y));
 	}
 }
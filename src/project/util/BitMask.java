@@ -0,0 +1,430 @@
+/******************************************************************************
+ * Copyright (c) 2016 Palle Klewitz.                                          *
+ *                                                                            *
+ * Permission is hereby granted, free of charge, to any person obtaining      *
+ * a copy of this software and associated documentation files                 *
+ * (the "Software"), to deal in the Software without restriction,             *
+ *  including without limitation the rights to use, copy, modify,             *
+ *  merge, publish, distribute, sublicense, and/or sell copies of             *
+ *  the Software, and to permit persons to whom the Software                  *
+ *  is furnished to do so, subject to the following conditions:               *
+ *                                                                            *
+ * The above copyright notice and this permission notice shall                *
+ * be included in all copies or substantial portions of the Software.         *
+ *                                                                            *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY                         *
+ *  OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT                        *
+ *  LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS                     *
+ *  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.                             *
+ *  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS                        *
+ *  BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,                      *
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,                      *
+ *  ARISING FROM, OUT OF OR IN CONNECTION WITH THE                            *
+ *  SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.                    *
+ ******************************************************************************/
+
+
+package project.util;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import static java.lang.Math.floorDiv;
+import static java.lang.Math.floorMod;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Zweidimensionale Bitmaske fester Groesse.
+ * <br>
+ * Jede Zeile wird in aufeinanderfolgenden long-Werten gespeichert, wobei das Bit x % 64 des
+ * Wortes x / 64 den Punkt x der Zeile darstellt. Vereinigung, Schnitt und Dilatation werden
+ * wortweise ausgefuehrt und bearbeiten somit 64 Punkte gleichzeitig.
+ * <br>
+ * Punkte ausserhalb der Maske gelten als nicht gesetzt.
+ */
+public class BitMask
+{
+	private final int    height;
+	private final int    width;
+	private final long[] words;
+	private final int    wordsPerRow;
+
+	/**
+	 * Erstellt eine neue, leere Bitmaske
+	 * @param width Breite der Maske
+	 * @param height Hoehe der Maske
+	 * @throws IllegalArgumentException wenn die Breite oder Hoehe negativ ist
+	 */
+	public BitMask(int width, int height)
+	{
+		if (width < 0 || height < 0)
+			throw new IllegalArgumentException("Mask size must not be negative: " + width + "x" + height);
+		this.width = width;
+		this.height = height;
+		wordsPerRow = (width + 63) >>> 6;
+		words = new long[wordsPerRow * height];
+	}
+
+	/**
+	 * Erstellt eine Kopie der gegebenen Bitmaske
+	 * @param mask zu kopierende Maske
+	 */
+	public BitMask(BitMask mask)
+	{
+		width = mask.width;
+		height = mask.height;
+		wordsPerRow = mask.wordsPerRow;
+		words = mask.words.clone();
+	}
+
+	/**
+	 * Schneidet die Maske mit der gegebenen Maske gleicher Groesse
+	 * @param mask Maske
+	 */
+	public void and(BitMask mask)
+	{
+		requireSameSize(mask);
+		for (int i = 0; i < words.length; i++)
+			words[i] &= mask.words[i];
+	}
+
+	/**
+	 * Entfernt alle Punkte, welche in der gegebenen Maske gleicher Groesse gesetzt sind
+	 * @param mask Maske
+	 */
+	public void andNot(BitMask mask)
+	{
+		requireSameSize(mask);
+		for (int i = 0; i < words.length; i++)
+			words[i] &= ~mask.words[i];
+	}
+
+	/**
+	 * Gibt die Anzahl gesetzter Punkte an
+	 * @return Anzahl gesetzter Punkte
+	 */
+	public int cardinality()
+	{
+		int count = 0;
+		for (long word : words)
+			count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * Entfernt den gegebenen Punkt aus der Maske
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 */
+	public void clear(int x, int y)
+	{
+		if (contains(x, y))
+			words[y * wordsPerRow + (x >>> 6)] &= ~(1L << x);
+	}
+
+	/**
+	 * Gibt einen Ausschnitt der Maske zurueck.
+	 * Der Ausschnitt darf ueber die Maske hinausgehen, Punkte ausserhalb sind nicht gesetzt.
+	 * @param x x-Koordinate der linken oberen Ecke des Ausschnitts
+	 * @param y y-Koordinate der linken oberen Ecke des Ausschnitts
+	 * @param width Breite des Ausschnitts
+	 * @param height Hoehe des Ausschnitts
+	 * @return neue Maske: Punkt (i, j) ist gesetzt, wenn (x + i, y + j) in dieser Maske gesetzt ist
+	 */
+	public BitMask crop(int x, int y, int width, int height)
+	{
+		BitMask output = new BitMask(width, height);
+		for (int row = max(-y, 0); row < min(height, this.height - y); row++)
+		{
+			int source = (y + row) * wordsPerRow;
+			int target = row * output.wordsPerRow;
+			for (int word = 0; word < output.wordsPerRow; word++)
+				output.words[target + word] = extract(source, x + (word << 6));
+			output.clearTail(target);
+		}
+		return output;
+	}
+
+	/**
+	 * Erweitert die Maske kreuzfoermig: Ein Punkt ist im Ergebnis gesetzt, wenn ein Punkt mit
+	 * einem horizontalen Abstand von hoechstens horizontal oder ein Punkt mit einem vertikalen
+	 * Abstand von hoechstens vertical gesetzt ist.
+	 * @param horizontal horizontale Erweiterung
+	 * @param vertical vertikale Erweiterung
+	 * @return neue, erweiterte Maske
+	 */
+	public BitMask dilate(int horizontal, int vertical)
+	{
+		BitMask output = new BitMask(this);
+		for (int row = 0; row < height; row++)
+		{
+			int offset = row * wordsPerRow;
+			for (int shift = 1; shift <= horizontal; shift++)
+			{
+				output.orShifted(this, offset, offset, shift);
+				output.orShifted(this, offset, offset, -shift);
+			}
+			for (int distance = 1; distance <= vertical; distance++)
+			{
+				if (row >= distance)
+					output.orRow(this, offset - distance * wordsPerRow, offset);
+				if (row + distance < height)
+					output.orRow(this, offset + distance * wordsPerRow, offset);
+			}
+		}
+		return output;
+	}
+
+	@Override
+	public boolean equals(final Object o)
+	{
+		if (this == o)
+			return true;
+		if (!(o instanceof BitMask))
+			return false;
+		BitMask mask = (BitMask) o;
+		return width == mask.width && height == mask.height && Arrays.equals(words, mask.words);
+	}
+
+	/**
+	 * Gibt an, ob der gegebene Punkt gesetzt ist
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 * @return true, wenn der Punkt innerhalb der Maske liegt und gesetzt ist, sonst false
+	 */
+	public boolean get(int x, int y)
+	{
+		return contains(x, y) && (words[y * wordsPerRow + (x >>> 6)] & 1L << x) != 0;
+	}
+
+	/**
+	 * Gibt 64 Punkte einer Zeile ab der gegebenen x-Koordinate zurueck.
+	 * Punkte ausserhalb der Maske sind nicht gesetzt.
+	 * @param x x-Koordinate des ersten Punktes
+	 * @param y Zeile
+	 * @return Wort, dessen Bit i angibt, ob der Punkt (x + i, y) gesetzt ist
+	 */
+	public long getBits(int x, int y)
+	{
+		if (y < 0 || y >= height)
+			return 0L;
+		return extract(y * wordsPerRow, x);
+	}
+
+	/**
+	 * Gibt die Hoehe der Maske an
+	 * @return Hoehe der Maske
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Gibt die Breite der Maske an
+	 * @return Breite der Maske
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * (31 * width + height) + Arrays.hashCode(words);
+	}
+
+	/**
+	 * Entfernt alle Punkte ausserhalb des gegebenen Rechtecks
+	 * @param rect Rechteck in Koordinaten der Maske
+	 */
+	public void intersect(Rectangle rect)
+	{
+		int minX = max(rect.x, 0);
+		int maxX = min(rect.x + rect.width, width);
+		int minY = max(rect.y, 0);
+		int maxY = min(rect.y + rect.height, height);
+		if (minX >= maxX || minY >= maxY)
+		{
+			Arrays.fill(words, 0L);
+			return;
+		}
+		Arrays.fill(words, 0, minY * wordsPerRow, 0L);
+		Arrays.fill(words, maxY * wordsPerRow, words.length, 0L);
+		for (int word = 0; word < wordsPerRow; word++)
+		{
+			int  start = word << 6;
+			long range = rangeMask(minX - start, maxX - start);
+			for (int row = minY; row < maxY; row++)
+				words[row * wordsPerRow + word] &= range;
+		}
+	}
+
+	/**
+	 * Gibt an, ob kein Punkt der Maske gesetzt ist
+	 * @return true, wenn die Maske leer ist, sonst false
+	 */
+	public boolean isEmpty()
+	{
+		for (long word : words)
+			if (word != 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Gibt die x-Koordinate des ersten gesetzten Punktes der gegebenen Zeile ab der
+	 * gegebenen x-Koordinate an. Nicht gesetzte Woerter werden uebersprungen.
+	 * @param x erste zu pruefende x-Koordinate
+	 * @param y Zeile
+	 * @return x-Koordinate des naechsten gesetzten Punktes oder -1, wenn kein weiterer Punkt gesetzt ist
+	 */
+	public int nextSetBit(int x, int y)
+	{
+		if (y < 0 || y >= height || x >= width)
+			return -1;
+		x = max(x, 0);
+		int  offset = y * wordsPerRow;
+		int  word   = x >>> 6;
+		long bits   = words[offset + word] & -1L << x;
+		while (bits == 0)
+		{
+			if (++word == wordsPerRow)
+				return -1;
+			bits = words[offset + word];
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * Vereinigt die Maske mit der gegebenen Maske gleicher Groesse
+	 * @param mask Maske
+	 */
+	public void or(BitMask mask)
+	{
+		requireSameSize(mask);
+		for (int i = 0; i < words.length; i++)
+			words[i] |= mask.words[i];
+	}
+
+	/**
+	 * Setzt 64 Punkte einer Zeile ab der gegebenen x-Koordinate.
+	 * Punkte ausserhalb der Maske werden ignoriert.
+	 * @param x x-Koordinate des ersten Punktes
+	 * @param y Zeile
+	 * @param bits Wort, dessen Bit i angibt, ob der Punkt (x + i, y) gesetzt werden soll
+	 */
+	public void orBits(int x, int y, long bits)
+	{
+		if (y < 0 || y >= height || bits == 0)
+			return;
+		int offset = y * wordsPerRow;
+		int word   = floorDiv(x, 64);
+		int bit    = floorMod(x, 64);
+		if (word >= 0 && word < wordsPerRow)
+			words[offset + word] |= bits << bit;
+		if (bit != 0 && word + 1 >= 0 && word + 1 < wordsPerRow)
+			words[offset + word + 1] |= bits >>> (64 - bit);
+		clearTail(offset);
+	}
+
+	/**
+	 * Setzt den gegebenen Punkt
+	 * @param x x-Koordinate
+	 * @param y y-Koordinate
+	 */
+	public void set(int x, int y)
+	{
+		if (contains(x, y))
+			words[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "BitMask[" + width + "x" + height + ", " + cardinality() + " set]";
+	}
+
+	/**
+	 * Setzt alle Bits oberhalb der Breite im letzten Wort einer Zeile zurueck
+	 */
+	private void clearTail(int offset)
+	{
+		if ((width & 63) != 0)
+			words[offset + wordsPerRow - 1] &= (1L << width) - 1;
+	}
+
+	/**
+	 * Gibt an, ob der gegebene Punkt innerhalb der Maske liegt
+	 */
+	private boolean contains(int x, int y)
+	{
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+
+	/**
+	 * Gibt 64 Punkte einer Zeile ab der gegebenen, beliebigen x-Koordinate zurueck
+	 * @param offset Index des ersten Wortes der Zeile
+	 * @param x x-Koordinate des ersten Punktes
+	 */
+	private long extract(int offset, int x)
+	{
+		int word = floorDiv(x, 64);
+		int bit  = floorMod(x, 64);
+		long low = word(offset, word) >>> bit;
+		return bit == 0 ? low : low | word(offset, word + 1) << (64 - bit);
+	}
+
+	/**
+	 * Vereinigt eine Zeile der gegebenen Maske mit einer Zeile dieser Maske
+	 */
+	private void orRow(BitMask mask, int source, int target)
+	{
+		for (int word = 0; word < wordsPerRow; word++)
+			words[target + word] |= mask.words[source + word];
+	}
+
+	/**
+	 * Vereinigt eine um shift Punkte nach rechts verschobene Zeile der gegebenen Maske
+	 * mit einer Zeile dieser Maske
+	 */
+	private void orShifted(BitMask mask, int source, int target, int shift)
+	{
+		for (int word = 0; word < wordsPerRow; word++)
+			words[target + word] |= mask.extract(source, (word << 6) - shift);
+		clearTail(target);
+	}
+
+	/**
+	 * Gibt ein Wort zurueck, in welchem die Bits [from, to) gesetzt sind
+	 */
+	private static long rangeMask(int from, int to)
+	{
+		from = max(from, 0);
+		to = min(to, 64);
+		if (from >= to)
+			return 0L;
+		long upper = to == 64 ? -1L : (1L << to) - 1;
+		return upper & -1L << from;
+	}
+
+	/**
+	 * Stellt sicher, dass die gegebene Maske dieselbe Groesse hat
+	 */
+	private void requireSameSize(BitMask mask)
+	{
+		if (mask.width != width || mask.height != height)
+			throw new IllegalArgumentException(
+					"Mask size " + mask.width + "x" + mask.height + " does not match " + width + "x" + height);
+	}
+
+	/**
+	 * Gibt ein Wort einer Zeile zurueck, ausserhalb der Zeile 0
+	 */
+	private long word(int offset, int word)
+	{
+		return word < 0 || word >= wordsPerRow ? 0L : words[offset + word];
+	}
+}